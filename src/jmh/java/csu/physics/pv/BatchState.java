@@ -0,0 +1,108 @@
+package csu.physics.pv;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static java.util.Arrays.copyOfRange;
+
+/**
+ * A synthetic batch of J-V files written to a temporary directory, with the intermediate results of each pipeline
+ * stage prepared so every stage can be timed on its own.
+ *
+ * The batch parameter is files x points per curve. The defaults cover the realistic shapes; others can be given on the
+ * command line, eg. -p batch=1000x100000.
+ */
+@State(Scope.Benchmark)
+public class BatchState {
+
+    @Param({"physics", "engr"})
+    public String format;
+
+    @Param({"10x100", "10x100000", "1000x1000", "10000x100"})
+    public String batch;
+
+    File dir;
+    File[] files;
+    String[] names;
+
+    ArrayList<String> fileData;         // contents of each file, as read by JVReader.read(File[])
+    ArrayList<String> headers;          // header text of each file, as passed to sortParams
+    ArrayList<String> curveText;        // curve text of each file, as passed to sortCurves
+    JVData legacy;                      // data holding fileData, for isValidData and the sort methods
+    JVData parsed;                      // fully parsed data, for makeParamsTable and JVWriter
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        int numFiles = Integer.parseInt(batch.substring(0, batch.indexOf('x')));
+        int points = Integer.parseInt(batch.substring(batch.indexOf('x') + 1));
+
+        // write the batch
+        dir = Files.createTempDirectory("jv-bench").toFile();
+        files = new File[numFiles];
+        names = new String[numFiles];
+        String contents = format.equals("physics") ? SampleFiles.physics(true, points) : SampleFiles.engr(points);
+        for (int i = 0; i < numFiles; i++) {
+            names[i] = "cell" + i + "_jvl.txt";
+            files[i] = SampleFiles.write(dir, names[i], contents);
+        }
+
+        // contents as the legacy path sees them
+        JVReader reader = new JVReader();
+        reader.read(files);
+        fileData = reader.getFileData();
+        legacy = newData(fileData);
+        legacy.setFileNames(names);
+
+        // split header and curve text the way extractData does
+        headers = new ArrayList<>();
+        curveText = new ArrayList<>();
+        for (String file : fileData) {
+            String[] lines = file.split("\n");
+            int index = 0;
+            while (!lines[index].contains(format.equals("physics") ? "Voltage [V]" : "V(V)\tJ(A/cm^2)"))
+                index++;
+            int curveStart = format.equals("physics") ? 12 : index + 1;
+            headers.add(String.join("\n", copyOfRange(lines, 0, curveStart == 12 ? 12 : index)) + "\n");
+            curveText.add(String.join("\n", copyOfRange(lines, curveStart, lines.length)) + "\n");
+        }
+
+        parsed = newData(null);
+        parsed.setFileNames(names);
+        new JVReader().read(files, parsed);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (File file : files)
+            file.delete();
+        dir.delete();
+    }
+
+    /**
+     * Creates a {@link JVData} of the benchmarked format, for the legacy path if file data is given.
+     */
+    JVData newData(ArrayList<String> data) {
+        if (format.equals("physics"))
+            return data == null ? new PhysicsData() : new PhysicsData(data);
+        return data == null ? new EngrData() : new EngrData(data);
+    }
+
+    /**
+     * A writer that discards everything, so only formatting is timed.
+     */
+    static Writer nullWriter() {
+        return new Writer() {
+            public void write(char[] cbuf, int off, int len) { }
+            public void write(String str, int off, int len) { }
+            public void write(int c) { }
+            public void flush() { }
+            public void close() { }
+        };
+    }
+}
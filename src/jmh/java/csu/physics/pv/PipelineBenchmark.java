@@ -0,0 +1,101 @@
+package csu.physics.pv;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times each stage of the import pipeline on a whole batch, for both {@link PhysicsData} and {@link EngrData}.
+ *
+ * Run with: mvn -P benchmark test-compile exec:exec -Djmh.args="PipelineBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Benchmark
+    public ArrayList<String> read(BatchState state) throws IOException {
+        JVReader reader = new JVReader();
+        reader.read(state.files);
+        return reader.getFileData();
+    }
+
+    @Benchmark
+    public boolean isValidData(BatchState state) {
+        return state.legacy.isValidData();
+    }
+
+    @Benchmark
+    public JVData extractData(BatchState state) {
+        JVData data = state.newData(state.fileData);
+        data.setFileNames(state.names);
+        data.extractData();
+        return data;
+    }
+
+    @Benchmark
+    public CurveStore sortCurves(BatchState state) {
+        return state.legacy.sortCurves(state.curveText);
+    }
+
+    @Benchmark
+    public Object sortParams(BatchState state) {
+        return state.legacy.sortParams(state.headers);
+    }
+
+    @Benchmark
+    public ArrayList<String> makeParamsTable(BatchState state) {
+        return state.parsed.makeParamsTable();
+    }
+
+    @Benchmark
+    public double[][] analyze(BatchState state) {
+        JVAnalyzer analyzer = new JVAnalyzer();
+        analyzer.setThreads(Runtime.getRuntime().availableProcessors());
+        return analyzer.analyze(state.parsed.getCurves());
+    }
+
+    @Benchmark
+    public double[][] resample(BatchState state) {
+        JVResampler resampler = JVResampler.parse("-0.2:1.0:0.005");
+        resampler.setThreads(Runtime.getRuntime().availableProcessors());
+        return resampler.resample(state.parsed.getCurves());
+    }
+
+    @Benchmark
+    public JVData streamingRead(BatchState state) throws IOException {
+        JVData data = state.newData(null);
+        data.setFileNames(state.names);
+        new JVReader().read(state.files, data);
+        return data;
+    }
+
+    @Benchmark
+    public JVData parallelRead(BatchState state) throws IOException {
+        JVData data = state.newData(null);
+        data.setFileNames(state.names);
+        JVReader reader = new JVReader();
+        reader.setThreads(Runtime.getRuntime().availableProcessors());
+        reader.read(state.files, data);
+        return data;
+    }
+
+    @Benchmark
+    public void write(BatchState state) throws IOException {
+        ArrayList<Boolean> options = new ArrayList<>();
+        options.add(true);
+        options.add(true);
+        JVWriter writer = new JVWriter(state.parsed);
+        writer.setPrintOptions(options);
+        try (Writer out = new BufferedWriter(BatchState.nullWriter())) {
+            writer.write(out);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package csu.physics.pv;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Points per second of the substring/BigDecimal curve parsing the sort methods used to do, against
+ * {@link JVTokenizer}, on an ERC curve (current converted to mA/cm^2).
+ *
+ * Run with: mvn -P benchmark test-compile exec:exec -Djmh.args="TokenizerBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    private static final int POINTS = 100000;
+    private static final String MARKER = "J(A/cm^2)\n";
+
+    private String[] lines;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        String file = SampleFiles.engr(POINTS);
+        String data = file.substring(file.indexOf(MARKER) + MARKER.length());
+        lines = data.split("\n");
+        bytes = data.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void bigDecimal(Blackhole bh) {
+        for (String line : lines) {
+            String voltage = line.substring(0, line.lastIndexOf('\t'));
+            String current = line.substring(line.lastIndexOf('\t') + 1);
+            bh.consume(new BigDecimal(voltage));
+            bh.consume(new BigDecimal(current).multiply(new BigDecimal(1000)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void tokenizer(Blackhole bh) throws IOException {
+        JVTokenizer in = new JVTokenizer(bytes, bytes.length);
+        while (in.nextPoint(3)) {
+            bh.consume(in.getVoltage());
+            bh.consume(in.getCurrent());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package csu.physics.pv;
+
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+/**
+ * Runs a task over a range of items split into chunks, on a pool of worker threads, for the tables computed from the
+ * curves and parameters ({@link JVAnalyzer}, {@link JVResampler} and {@link GroupStats}). A range that fits in one
+ * chunk, or a single thread, runs on the calling thread. The pool is either given, eg. kept by a server for all its
+ * requests, or started for the call and shut down after it.
+ */
+final class Chunks {
+
+    /**
+     * The work done on one chunk of items.
+     */
+    interface Task {
+
+        /**
+         * Processes the items of a chunk.
+         *
+         * @param from  The first item.
+         * @param to    The item after the last one.
+         */
+        void run(int from, int to);
+    }
+
+    private Chunks() {
+    }
+
+    /**
+     * Starts a pool of daemon worker threads.
+     *
+     * @param threads   The number of threads.
+     * @param name      The name of the threads.
+     * @return          The pool.
+     */
+    static ThreadPoolExecutor newPool(int threads, final String name) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * Runs a task over items 0 to n in chunks, returning once every chunk is done.
+     *
+     * @param pool      The pool the chunks run on, or null to start one of the given number of threads.
+     * @param threads   The number of threads, 1 to run on the calling thread.
+     * @param name      The name of the threads of a pool started for the call.
+     * @param n         The number of items.
+     * @param chunk     The number of items per chunk.
+     * @param task      The task.
+     * @throws CancellationException    If the calling thread is interrupted.
+     */
+    static void run(ExecutorService pool, int threads, String name, int n, int chunk, final Task task) {
+
+        if (threads <= 1 || n <= chunk) {
+            task.run(0, n);
+            return;
+        }
+
+        ExecutorService workers = pool != null ? pool : newPool(threads, name);
+
+        ArrayList<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int start = 0; start < n; start += chunk) {
+                final int from = start;
+                final int to = Math.min(start + chunk, n);
+                tasks.add(workers.submit(new Runnable() {
+                    public void run() {
+                        task.run(from, to);
+                    }
+                }));
+            }
+            for (Future<?> future : tasks)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Computation was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            // a shared pool keeps running, so drop the chunks of a failed run that are still queued on it
+            for (Future<?> future : tasks)
+                future.cancel(true);
+            if (workers != pool)
+                workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package csu.physics.pv;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Comma separated layout (RFC 4180), for spreadsheets and data frame readers. Named tables get a "file" first column,
+ * names are quoted when needed, and tables are separated by a blank line.
+ */
+class CsvTableWriter extends TableWriter {
+
+    private boolean first;      // no separator before the first cell of a row
+    private int tables;
+
+    CsvTableWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    void startTable(Table table, String[] columns) throws IOException {
+
+        if (tables++ > 0)
+            out.write('\n');
+
+        startRow(table.named ? "file" : null);
+        for (String column : columns) {
+            separate();
+            text(column);
+        }
+        endRow();
+    }
+
+    @Override
+    void startRow(String name) throws IOException {
+        first = true;
+        if (name != null) {
+            separate();
+            text(name);
+        }
+    }
+
+    @Override
+    void number(char[] chars, int length) throws IOException {
+        separate();
+        out.write(chars, 0, length);
+    }
+
+    @Override
+    void empty() throws IOException {
+        separate();
+    }
+
+    @Override
+    void endRow() throws IOException {
+        out.write('\n');
+    }
+
+    @Override
+    void endTable() {
+        // tables are separated when the next one starts
+    }
+
+    private void separate() throws IOException {
+        if (!first)
+            out.write(',');
+        first = false;
+    }
+
+    /*
+    Writes a text cell, quoted when it holds a separator, a quote or a line break.
+     */
+    private void text(String value) throws IOException {
+
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
@@ -0,0 +1,348 @@
+package csu.physics.pv;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import static java.util.Arrays.copyOf;
+
+/**
+ * Columnar storage for the J-V curves of a batch of files. Voltage and current are kept in separate primitive columns
+ * holding the points of all files back to back, with an index of the offset at which each file's points begin. The
+ * number of decimal places each value was printed with is kept next to it, so values are written back exactly as they
+ * were read.
+ *
+ * Values are fixed point: an unscaled long and its scale, value = unscaled * 10^-scale, like a {@link BigDecimal}
+ * without the objects. The 18 significant digits a long holds cover anything an instrument prints, so the text as
+ * read is kept exactly, and doubles are only made on demand for the analysis.
+ */
+public class CurveStore {
+
+    /**
+     * Most significant digits a value keeps, the most a long always holds.
+     */
+    static final int MAX_DIGITS = 18;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // powers of ten that are exact in a double
+    private static final double[] POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private long[] voltage;           // unscaled voltage of every point, all files back to back
+    private long[] current;           // unscaled current density of every point, all files back to back
+    private byte[] voltageScale;      // decimal places of each voltage as read
+    private byte[] currentScale;      // decimal places of each current as read
+
+    private int[] offsets;            // index of the first point of each file, offsets[numCurves] is the open curve
+    private int numCurves;
+    private int numPoints;
+
+    /**
+     * Constructor.
+     */
+    CurveStore() {
+        voltage = new long[INITIAL_CAPACITY];
+        current = new long[INITIAL_CAPACITY];
+        voltageScale = new byte[INITIAL_CAPACITY];
+        currentScale = new byte[INITIAL_CAPACITY];
+        offsets = new int[16];
+    }
+
+    /**
+     * Appends a point to the curve currently being built.
+     *
+     * @param v         The unscaled voltage, the voltage times 10^vScale.
+     * @param vScale    The number of decimal places of the voltage as read, -128 to 127 as checked by
+     *                  {@link JVTokenizer}.
+     * @param j         The unscaled current density, the current density times 10^jScale.
+     * @param jScale    The number of decimal places of the current density as read, -128 to 127.
+     */
+    void addPoint(long v, int vScale, long j, int jScale) {
+
+        if (numPoints == voltage.length) {
+            int capacity = voltage.length * 2;
+            voltage = copyOf(voltage, capacity);
+            current = copyOf(current, capacity);
+            voltageScale = copyOf(voltageScale, capacity);
+            currentScale = copyOf(currentScale, capacity);
+        }
+
+        voltage[numPoints] = v;
+        voltageScale[numPoints] = (byte) vScale;
+        current[numPoints] = j;
+        currentScale[numPoints] = (byte) jScale;
+        numPoints++;
+    }
+
+    /**
+     * Appends all curves of another store after the curves of this one, in order.
+     *
+     * @param other The store to append.
+     */
+    void append(CurveStore other) {
+
+        int points = numPoints + other.numPoints;
+        if (points > voltage.length) {
+            int capacity = Math.max(points, voltage.length * 2);
+            voltage = copyOf(voltage, capacity);
+            current = copyOf(current, capacity);
+            voltageScale = copyOf(voltageScale, capacity);
+            currentScale = copyOf(currentScale, capacity);
+        }
+
+        System.arraycopy(other.voltage, 0, voltage, numPoints, other.numPoints);
+        System.arraycopy(other.current, 0, current, numPoints, other.numPoints);
+        System.arraycopy(other.voltageScale, 0, voltageScale, numPoints, other.numPoints);
+        System.arraycopy(other.currentScale, 0, currentScale, numPoints, other.numPoints);
+
+        if (numCurves + other.numCurves + 1 > offsets.length)
+            offsets = copyOf(offsets, Math.max(numCurves + other.numCurves + 1, offsets.length * 2));
+
+        for (int i = 1; i <= other.numCurves; i++)
+            offsets[numCurves + i] = numPoints + other.offsets[i];
+
+        numCurves += other.numCurves;
+        numPoints = points;
+    }
+
+    /**
+     * Closes the curve currently being built, so that the following points belong to the next file.
+     */
+    void endCurve() {
+
+        if (numCurves + 2 > offsets.length)
+            offsets = copyOf(offsets, offsets.length * 2);
+
+        numCurves++;
+        offsets[numCurves] = numPoints;
+    }
+
+    /**
+     * Returns the number of curves, ie. the number of files.
+     *
+     * @return  The number of curves.
+     */
+    public int getNumCurves() {
+        return numCurves;
+    }
+
+    /**
+     * Returns the number of J-V points of all curves together.
+     *
+     * @return  The number of points.
+     */
+    public int getTotalPoints() {
+        return numPoints;
+    }
+
+    /**
+     * Returns the number of J-V points of a curve.
+     *
+     * @param curve The curve number, in the same order as the file names.
+     * @return      The number of points.
+     */
+    public int getNumPoints(int curve) {
+        return offsets[curve + 1] - offsets[curve];
+    }
+
+    /**
+     * Returns the largest number of J-V points of any curve.
+     *
+     * @return  The largest number of points.
+     */
+    public int getMaxPoints() {
+
+        int biggest = 0;
+        for (int i = 0; i < numCurves; i++)
+            biggest = Math.max(biggest, getNumPoints(i));
+
+        return biggest;
+    }
+
+    /**
+     * Returns the voltage of a point.
+     *
+     * @param curve The curve number.
+     * @param point The point number within the curve.
+     * @return      The voltage.
+     */
+    public double getVoltage(int curve, int point) {
+        int i = offsets[curve] + point;
+        return toDouble(voltage[i], voltageScale[i]);
+    }
+
+    /**
+     * Returns the current density of a point.
+     *
+     * @param curve The curve number.
+     * @param point The point number within the curve.
+     * @return      The current density.
+     */
+    public double getCurrent(int curve, int point) {
+        int i = offsets[curve] + point;
+        return toDouble(current[i], currentScale[i]);
+    }
+
+    /**
+     * Returns the voltage of a point as text, exactly as it was read.
+     *
+     * @param curve The curve number.
+     * @param point The point number within the curve.
+     * @return      The voltage as text.
+     */
+    public String formatVoltage(int curve, int point) {
+        int i = offsets[curve] + point;
+        return BigDecimal.valueOf(voltage[i], voltageScale[i]).toString();
+    }
+
+    /**
+     * Returns the current density of a point as text, exactly as it was read.
+     *
+     * @param curve The curve number.
+     * @param point The point number within the curve.
+     * @return      The current density as text.
+     */
+    public String formatCurrent(int curve, int point) {
+        int i = offsets[curve] + point;
+        return BigDecimal.valueOf(current[i], currentScale[i]).toString();
+    }
+
+    /**
+     * Returns the unscaled voltage of a point, the voltage times 10^{@link CurveStore#getVoltageScale(int, int)}.
+     *
+     * @param curve The curve number.
+     * @param point The point number within the curve.
+     * @return      The unscaled voltage.
+     */
+    long getUnscaledVoltage(int curve, int point) {
+        return voltage[offsets[curve] + point];
+    }
+
+    /**
+     * Returns the unscaled current density of a point, the current density times
+     * 10^{@link CurveStore#getCurrentScale(int, int)}.
+     *
+     * @param curve The curve number.
+     * @param point The point number within the curve.
+     * @return      The unscaled current density.
+     */
+    long getUnscaledCurrent(int curve, int point) {
+        return current[offsets[curve] + point];
+    }
+
+    /**
+     * Returns the number of decimal places a voltage was read with.
+     *
+     * @param curve The curve number.
+     * @param point The point number within the curve.
+     * @return      The number of decimal places.
+     */
+    int getVoltageScale(int curve, int point) {
+        return voltageScale[offsets[curve] + point];
+    }
+
+    /**
+     * Returns the number of decimal places a current density was read with.
+     *
+     * @param curve The curve number.
+     * @param point The point number within the curve.
+     * @return      The number of decimal places.
+     */
+    int getCurrentScale(int curve, int point) {
+        return currentScale[offsets[curve] + point];
+    }
+
+    /**
+     * Writes one point as a record of {@link SpilledCurves}: the unscaled voltage and its scale, then the unscaled
+     * current density and its scale.
+     *
+     * @param curve The curve number.
+     * @param point The point number within the curve.
+     * @param out   The buffer to write to.
+     */
+    void putPoint(int curve, int point, ByteBuffer out) {
+        int i = offsets[curve] + point;
+        out.putLong(voltage[i]).put(voltageScale[i]).putLong(current[i]).put(currentScale[i]);
+    }
+
+    /**
+     * Returns the number of bytes {@link CurveStore#writeTo(ByteBuffer)} writes.
+     *
+     * @return  The size in bytes.
+     */
+    int serializedSize() {
+        return 8 + 4 * numCurves + 18 * numPoints;
+    }
+
+    /**
+     * Writes the curves in a compact binary form: the curve and point counts, the points of each curve, then the
+     * unscaled voltage, unscaled current and scale columns.
+     *
+     * @param out   The buffer to write to.
+     */
+    void writeTo(ByteBuffer out) {
+
+        out.putInt(numCurves);
+        out.putInt(numPoints);
+        for (int i = 0; i < numCurves; i++)
+            out.putInt(getNumPoints(i));
+
+        out.asLongBuffer().put(voltage, 0, numPoints);
+        out.position(out.position() + 8 * numPoints);
+        out.asLongBuffer().put(current, 0, numPoints);
+        out.position(out.position() + 8 * numPoints);
+        out.put(voltageScale, 0, numPoints);
+        out.put(currentScale, 0, numPoints);
+    }
+
+    /**
+     * Reads curves written by {@link CurveStore#writeTo(ByteBuffer)}.
+     *
+     * @param in    The buffer to read from.
+     * @return      The curves.
+     */
+    static CurveStore readFrom(ByteBuffer in) {
+
+        CurveStore store = new CurveStore();
+        int curves = in.getInt();
+        int points = in.getInt();
+
+        store.voltage = new long[Math.max(points, 1)];
+        store.current = new long[Math.max(points, 1)];
+        store.voltageScale = new byte[Math.max(points, 1)];
+        store.currentScale = new byte[Math.max(points, 1)];
+        store.offsets = new int[curves + 1];
+        for (int i = 0; i < curves; i++)
+            store.offsets[i + 1] = store.offsets[i] + in.getInt();
+
+        in.asLongBuffer().get(store.voltage, 0, points);
+        in.position(in.position() + 8 * points);
+        in.asLongBuffer().get(store.current, 0, points);
+        in.position(in.position() + 8 * points);
+        in.get(store.voltageScale, 0, points);
+        in.get(store.currentScale, 0, points);
+
+        store.numCurves = curves;
+        store.numPoints = points;
+
+        return store;
+    }
+
+    /**
+     * Converts a fixed point value to the nearest double.
+     *
+     * @param unscaled  The value times 10^scale.
+     * @param scale     The number of decimal places.
+     * @return          The correctly rounded double.
+     */
+    static double toDouble(long unscaled, int scale) {
+
+        // exact fast path: the unscaled value and the power of ten are both exact doubles
+        if (unscaled > -(1L << 53) && unscaled < (1L << 53) && scale >= -22 && scale <= 22)
+            return scale >= 0 ? unscaled / POWERS[scale] : unscaled * POWERS[-scale];
+
+        return BigDecimal.valueOf(unscaled, scale).doubleValue();
+    }
+}
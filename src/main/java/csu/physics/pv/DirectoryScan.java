@@ -0,0 +1,296 @@
+package csu.physics.pv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.*;
+
+/**
+ * Recursive scan of folder trees, eg. an archive of dated station folders, as a source of files for {@link JVReader}
+ * that hands out files while the scan is still running, so parsing starts with the first folder listed.
+ *
+ * Folders are listed in parallel, each subfolder being listed as soon as its parent is, while files are handed out in
+ * a fixed order: the files of a folder sorted by name, then each subfolder in name order. The same tree therefore
+ * always gives the same output however the listing threads are scheduled.
+ *
+ * Files are kept by include and exclude globs and by modification time. A glob with a / is matched against the path
+ * below the root, eg. 2018-05-&#42;/&#42;_jvl.txt, otherwise against the file name, eg. &#42;_jvl.txt. Excluded
+ * folders are not entered. Without include globs, .txt files and the archives {@link JVInput} reads are kept.
+ * Symbolic links to folders are not followed, and subfolders that cannot be opened are skipped.
+ */
+class DirectoryScan implements JVInput.FileSource, Closeable {
+
+    private final File[] roots;
+    private final ExecutorService pool;
+    private final ArrayList<Glob> includes = new ArrayList<>();
+    private final ArrayList<Glob> excludes = new ArrayList<>();
+    private long modifiedAfter = Long.MIN_VALUE;
+    private long modifiedBefore = Long.MAX_VALUE;
+
+    private final ArrayDeque<Position> stack = new ArrayDeque<>();     // the folders being handed out, deepest first
+    private boolean started;
+
+    /**
+     * Constructor. Filters are set before the scan is started by the first call of {@link DirectoryScan#next()}.
+     *
+     * @param roots     The folders to scan, in order.
+     * @param threads   The number of folders listed at the same time.
+     */
+    DirectoryScan(File[] roots, int threads) {
+
+        this.roots = roots.clone();
+        pool = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "jv-scan");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Adds a glob files are kept by. A file is kept if it matches any of them.
+     *
+     * @param glob  The glob.
+     * @throws IllegalArgumentException If the glob is malformed.
+     */
+    void include(String glob) {
+        includes.add(new Glob(glob));
+    }
+
+    /**
+     * Adds a glob files and folders are left out by. Anything matching one of them is left out.
+     *
+     * @param glob  The glob.
+     * @throws IllegalArgumentException If the glob is malformed.
+     */
+    void exclude(String glob) {
+        excludes.add(new Glob(glob));
+    }
+
+    /**
+     * Keeps only files modified at or after a time.
+     *
+     * @param millis    The time, in milliseconds since the epoch.
+     */
+    void setModifiedAfter(long millis) {
+        modifiedAfter = millis;
+    }
+
+    /**
+     * Keeps only files modified before a time.
+     *
+     * @param millis    The time, in milliseconds since the epoch.
+     */
+    void setModifiedBefore(long millis) {
+        modifiedBefore = millis;
+    }
+
+    /**
+     * Parses a time given as a date, eg. 2018-05-01 for the start of the day, or a date and time, eg.
+     * 2018-05-01T13:30, in the local time zone.
+     *
+     * @param text  The time.
+     * @return      The time in milliseconds since the epoch.
+     * @throws IllegalArgumentException If the time is malformed.
+     */
+    static long parseTime(String text) {
+
+        try {
+            LocalDateTime time = text.contains("T") ? LocalDateTime.parse(text)
+                    : LocalDate.parse(text).atStartOfDay();
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Bad time " + text + ", expected YYYY-MM-DD or YYYY-MM-DDTHH:MM");
+        }
+    }
+
+    /**
+     * Returns the next file found, waiting for its folder to be listed.
+     *
+     * @return  The file, or null when the whole tree was handed out.
+     * @throws IOException  If a folder cannot be listed.
+     */
+    public synchronized File next() throws IOException {
+
+        if (!started) {
+            started = true;
+            for (int i = roots.length - 1; i >= 0; i--)
+                stack.push(new Position(submit(roots[i].toPath(), roots[i].toPath())));
+        }
+
+        while (!stack.isEmpty()) {
+            Position top = stack.peek();
+            Folder folder = top.get();
+            if (top.file < folder.files.size())
+                return folder.files.get(top.file++);
+
+            stack.pop();
+            for (int i = folder.children.size() - 1; i >= 0; i--)
+                stack.push(new Position(folder.children.get(i)));
+        }
+
+        return null;
+    }
+
+    /**
+     * Stops the scan.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /*
+    Submits the listing of a folder, which submits the listings of its subfolders in turn.
+     */
+    private Future<Folder> submit(final Path dir, final Path root) {
+        return pool.submit(new Callable<Folder>() {
+            public Folder call() throws IOException {
+                return list(dir, root);
+            }
+        });
+    }
+
+    /*
+    Lists one folder, keeping the files that pass the filters, and submits the listings of its subfolders. A subfolder
+    that cannot be opened, eg. of another user on a shared drive, is skipped with a warning rather than failing the
+    scan.
+     */
+    private Folder list(Path dir, Path root) throws IOException {
+
+        ArrayList<Path> files = new ArrayList<>();
+        ArrayList<Path> dirs = new ArrayList<>();
+
+        DirectoryStream<Path> stream;
+        try {
+            stream = Files.newDirectoryStream(dir);
+        } catch (AccessDeniedException e) {
+            if (dir.equals(root))
+                throw e;
+            System.err.println("Skipped " + dir + ", access denied");
+            return new Folder();
+        }
+
+        try (DirectoryStream<Path> entries = stream) {
+            for (Path entry : entries) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isSymbolicLink() && !Files.isDirectory(entry))
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;   // deleted since listed, or a broken link
+                }
+
+                Path relative = root.relativize(entry);
+                if (matches(excludes, relative))
+                    continue;
+                if (attributes.isDirectory()) {
+                    dirs.add(entry);
+                } else if (attributes.isRegularFile() && included(relative)) {
+                    long modified = attributes.lastModifiedTime().toMillis();
+                    if (modified >= modifiedAfter && modified < modifiedBefore)
+                        files.add(entry);
+                }
+            }
+        }
+
+        Collections.sort(files);
+        Collections.sort(dirs);
+
+        Folder folder = new Folder();
+        for (Path file : files)
+            folder.files.add(file.toFile());
+        for (Path sub : dirs)
+            folder.children.add(submit(sub, root));
+
+        return folder;
+    }
+
+    private boolean included(Path relative) {
+        if (includes.isEmpty()) {
+            File file = relative.toFile();
+            return file.getName().endsWith(".txt") || JVInput.isArchive(file);
+        }
+        return matches(includes, relative);
+    }
+
+    private static boolean matches(ArrayList<Glob> globs, Path relative) {
+        for (Glob glob : globs)
+            if (glob.matches(relative))
+                return true;
+        return false;
+    }
+
+    /*
+    A glob, matched against the path below the root if it has a /, otherwise against the file name only.
+     */
+    private static final class Glob {
+
+        private final PathMatcher matcher;
+        private final boolean path;
+
+        Glob(String glob) {
+            try {
+                matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Bad glob " + glob);
+            }
+            path = glob.contains("/");
+        }
+
+        boolean matches(Path relative) {
+            return matcher.matches(path ? relative : relative.getFileName());
+        }
+    }
+
+    /*
+    The files kept in a folder, sorted, and the listings of its subfolders, in name order.
+     */
+    private static final class Folder {
+        final ArrayList<File> files = new ArrayList<>();
+        final ArrayList<Future<Folder>> children = new ArrayList<>();
+    }
+
+    /*
+    A folder being handed out and the index of its next file.
+     */
+    private static final class Position {
+
+        private final Future<Folder> listing;
+        private int file;
+
+        Position(Future<Folder> listing) {
+            this.listing = listing;
+        }
+
+        Folder get() throws IOException {
+            try {
+                return listing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Scan was interrupted");
+            } catch (CancellationException e) {
+                throw new InterruptedIOException("Scan was stopped");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                    throw (IOException) cause;
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                throw new IOException(cause);
+            }
+        }
+    }
+}
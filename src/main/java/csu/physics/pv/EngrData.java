@@ -1,6 +1,9 @@
 package csu.physics.pv;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 import static java.util.Arrays.copyOfRange;
@@ -22,10 +25,43 @@ Inner list: each element corresponds to a parameter, defined by the order:
 
 public class EngrData extends JVData {
 
+    private static final String MARKER = "V(V)\tJ(A/cm^2)";
+
+    // header fields, in the order of the params, with their lines in the original layout
+    private static final JVHeader HEADER = new JVHeader(MARKER,
+            new String[]{"Area", "Jsc", "Voc", "FF", "Eff", "Jmp", "Vmp"},
+            new int[]{8, 6, 4, 5, 7, 11, 10});
+
+    // names of the params, with units
+    private static final String[] PARAM_NAMES = {
+            "Area [cm^2]", "Jsc [mA/cm^2]", "Voc [mV]", "FF [%]", "Eff [%]", "Jmp [mA/cm^2]", "Vmp [mV]"
+    };
+
+    /**
+     * Constructor for the streaming parse path, see {@link JVData#parse(String, JVTokenizer)}.
+     */
+    EngrData() { }
+
     EngrData(ArrayList<String> data) {
         fileData = data;
     }
 
+    /**
+     * See {@link JVData#getFormatName()} for more information.
+     */
+    @Override
+    public String getFormatName() {
+        return "engr";
+    }
+
+    /**
+     * See {@link JVData#sniff(byte[], int, int)} for more information.
+     */
+    @Override
+    public boolean sniff(byte[] head, int offset, int length) {
+        return contains(head, offset, length, MARKER);
+    }
+
     /**
      * Verifies the data is of the correct format.
      *
@@ -34,10 +70,11 @@ public class EngrData extends JVData {
     @Override
     public boolean isValidData() {
 
+        JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.VALIDATE, null);
         boolean isValid = false;
 
         for (String file : fileData) {
-            if (file.contains("V(V)\tJ(A/cm^2)")) {
+            if (file.contains(MARKER)) {
                 isValid = true;
             } else {
                 isValid = false;
@@ -45,6 +82,7 @@ public class EngrData extends JVData {
             }
         }
 
+        timer.stop(length(fileData), 0);
         return isValid;
     }
 
@@ -54,6 +92,7 @@ public class EngrData extends JVData {
     @Override
     public void extractData() {
 
+        JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.EXTRACT, null);
         ArrayList<String> extractedCurves = new ArrayList<>();
         ArrayList<String> extractedParams = new ArrayList<>();
 
@@ -66,7 +105,9 @@ public class EngrData extends JVData {
             lines = str.split("\n");
 
             String[] par, cur;
-            int index = getIndex(lines);
+            int index = HEADER.indexOf(lines);
+            if (index < 0)
+                throw new IllegalArgumentException("Malformed file " + fileNames[i] + ", no column header");
 
             // Copy the sub-array of parameter and curve data
             par = copyOfRange(lines, 0, index);
@@ -90,128 +131,116 @@ public class EngrData extends JVData {
 
         }
 
-        curves = sortCurves(extractedCurves);
+        curves = readCurves ? sortCurves(extractedCurves) : emptyCurves(extractedCurves.size());
         params = sortParams(extractedParams);
 
+        timer.stop(length(fileData), curves.getTotalPoints());
+
     }
 
-    private int getIndex(String[] lines) {
+    /**
+     * See {@link JVData#parse(String, JVTokenizer)} for more information.
+     */
+    @Override
+    public boolean parse(String fileName, JVTokenizer in) throws IOException {
 
-        String currLine;
-        int index = 0;
+        // read header lines up to the column header
+        String[] header = HEADER.read(in);
 
-        for (int i = 0; i < lines.length; i++) {
+        // no column header, not an ERC file
+        if (header == null)
+            return false;
 
-            currLine = lines[i];
-            if (currLine.contains("V(V)\tJ(A/cm^2)")) {
-                index = i;
-            }
+        params.add(HEADER.parse(header));
+        lightFileNames.add(fileName);
 
-        }
+        // the rest of the stream is the J-V curve, left unread when only the header is wanted
+        if (readCurves)
+            parseCurve(in, curves);
+        else
+            curves.endCurve();
 
+        return true;
+    }
 
-        return index;
+    /**
+     * See {@link JVData#newInstance()} for more information.
+     */
+    @Override
+    public JVData newInstance() {
+        return new EngrData();
     }
 
     @Override
     public ArrayList<ArrayList<BigDecimal>> sortParams(ArrayList<String> p) {
 
-        ArrayList<BigDecimal> currFile;
+        JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.SORT_PARAMS, null);
         ArrayList<ArrayList<BigDecimal>> sorted = new ArrayList<>();
 
-        String Jsc, Voc, FF, eff, Jmp, Vmp, area;
-        String [] lines;
-
-        for (String aP : p) {
-
-            currFile = new ArrayList<>();
-
-            // split into lines
-            lines = aP.split("\n");
-
-            // area
-            area = (lines[8]).substring(lines[8].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(area));
-
-            // Jsc
-            Jsc = (lines[6]).substring(lines[6].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(Jsc));
-
-            // Voc
-            Voc = (lines[4]).substring(lines[4].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(Voc));
-
-            // fill factor
-            FF = (lines[5]).substring(lines[5].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(FF));
-
-            // efficiency
-            eff = (lines[7]).substring(lines[7].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(eff));
-
-            // Jmp
-            Jmp = (lines[11]).substring(lines[11].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(Jmp));
-
-            // Vmp
-            Vmp = (lines[10]).substring(lines[10].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(Vmp));
-
-            // add to final list
-            sorted.add(currFile);
-        }
+        // split each file into lines and add to final list
+        for (String aP : p)
+            sorted.add(HEADER.parse(aP.split("\n")));
 
+        timer.stop(length(p), 0);
         return sorted;
     }
 
     @Override
-    public ArrayList<ArrayList<BigDecimal>> sortCurves(ArrayList<String> c) {
+    public CurveStore sortCurves(ArrayList<String> c) {
 
-        ArrayList<BigDecimal> currFile;
-        ArrayList<ArrayList<BigDecimal>> sorted = new ArrayList<>();
+        JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.SORT_CURVES, null);
+        CurveStore sorted = new CurveStore();
 
-        String [] lines;
-        String voltage, current;
+        byte[] bytes;
         for (int i = 0; i < fileData.size(); i++) {
 
-            currFile = new ArrayList<>();
-
-            // split into lines
-            lines = (c.get(i)).split("\n");
-
-            for (String line : lines) {
-
-                // get voltage from line
-                voltage = line.substring(0, line.lastIndexOf('\t'));
-                currFile.add(new BigDecimal(voltage));
-
-                // get current from line
-                current = line.substring(line.lastIndexOf('\t')+1);
-                currFile.add(new BigDecimal(current).multiply(new BigDecimal(1000)));    // convert to mA/cm^2
-
+            // tokenize the curve text of this file
+            bytes = c.get(i).getBytes(StandardCharsets.ISO_8859_1);
+            try {
+                parseCurve(new JVTokenizer(bytes, bytes.length), sorted);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);     // not thrown for in-memory input
             }
 
-            // add to final list
-            sorted.add(currFile);
-
         }
 
+        timer.stop(length(c), sorted.getTotalPoints());
         return sorted;
     }
 
+    /**
+     * Tokenizes curve lines until the end of the input, appending the points to the store as one curve.
+     *
+     * @param in    The tokenizer positioned at the first curve line.
+     * @param store The store the curve is appended to.
+     * @throws IOException  If the input could not be read.
+     */
+    private static void parseCurve(JVTokenizer in, CurveStore store) throws IOException {
+
+        while (in.nextPoint(3))    // convert to mA/cm^2
+            store.addPoint(in.getUnscaledVoltage(), in.getVoltageScale(), in.getUnscaledCurrent(),
+                    in.getCurrentScale());
+        store.endCurve();
+    }
+
+    /**
+     * See {@link JVData#getParamNames()} for more information.
+     */
+    @Override
+    public String[] getParamNames() {
+        return PARAM_NAMES.clone();
+    }
+
     @Override
     public ArrayList<String> makeParamsTable() {
 
         ArrayList<String> table = new ArrayList<>();
 
         // write the table header
-        table.add("" + '\t' + "Area [cm^2]" + '\t'
-                            + "Jsc [mA/cm^2]" + '\t'
-                            + "Voc [mV]" + '\t'
-                            + "FF [%]" + '\t'
-                            + "Eff [%]" + '\t'
-                            + "Jmp [mA/cm^2]" + '\t'
-                            + "Vmp [mV]");
+        StringBuilder header = new StringBuilder();
+        for (String name : PARAM_NAMES)
+            header.append('\t').append(name);
+        table.add(header.toString());
 
         // write the table lines
         ArrayList<BigDecimal> p;
@@ -223,9 +252,7 @@ public class EngrData extends JVData {
 
             // list cell name first
             sb = new StringBuilder();
-            String fileName = lightFileNames.get(i);
-            String name = fileName.substring(0, fileName.lastIndexOf(".txt"));
-            sb.append(name).append('\t');
+            sb.append(stripTxt(lightFileNames.get(i))).append('\t');
 
             // build a line of the parameters,
             for (BigDecimal aP : p)
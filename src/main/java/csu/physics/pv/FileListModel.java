@@ -0,0 +1,172 @@
+package csu.physics.pv;
+
+import javax.swing.AbstractListModel;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * List model of the files selected in {@link Window}, backed by the selected paths themselves. Names are only made
+ * for the rows the list paints, files are added and removed in place with one event per change, and the file count and
+ * total size are kept up to date as files come and go, so selecting, removing or summarizing stays instant however
+ * many files there are.
+ *
+ * Sizes are looked up off the event thread and handed in with {@link FileListModel#setLengths(File[], long[])}, files
+ * whose size is not known yet are counted as sizing in the summary.
+ */
+class FileListModel extends AbstractListModel<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<File> files = new ArrayList<>();
+    private final HashMap<File, Long> lengths = new HashMap<>();      // every selected file, -1 while not sized
+    private long totalBytes;
+    private int unsized;
+
+    @Override
+    public int getSize() {
+        return files.size();
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return files.get(index).getName();
+    }
+
+    /**
+     * Returns a selected file.
+     *
+     * @param index The row.
+     * @return      The file.
+     */
+    File getFile(int index) {
+        return files.get(index);
+    }
+
+    /**
+     * Returns the selected files, in order.
+     *
+     * @return  A copy of the files.
+     */
+    File[] getFiles() {
+        return files.toArray(new File[files.size()]);
+    }
+
+    /**
+     * Adds files after the selected ones, leaving out files already selected.
+     *
+     * @param added The files.
+     * @return      The files that were not selected yet, which should be sized.
+     */
+    File[] addAll(File[] added) {
+
+        int first = files.size();
+        for (File file : added) {
+            if (!lengths.containsKey(file)) {
+                lengths.put(file, -1L);
+                files.add(file);
+                unsized++;
+            }
+        }
+
+        if (files.size() > first)
+            fireIntervalAdded(this, first, files.size() - 1);
+        return files.subList(first, files.size()).toArray(new File[files.size() - first]);
+    }
+
+    /**
+     * Removes the files of some rows, in one pass over the selection.
+     *
+     * @param rows  The rows, in any order.
+     */
+    void remove(int[] rows) {
+
+        if (rows.length == 0)
+            return;
+        rows = rows.clone();
+        Arrays.sort(rows);
+
+        // compact the files left, skipping the removed rows
+        int write = rows[0];
+        int r = 0;
+        for (int read = rows[0]; read < files.size(); read++) {
+            if (r < rows.length && rows[r] == read) {
+                forget(files.get(read));
+                r++;
+            } else {
+                files.set(write++, files.get(read));
+            }
+        }
+        files.subList(write, files.size()).clear();
+
+        // one event per run of removed rows, last first so the earlier rows keep their index
+        int end = rows.length - 1;
+        for (int i = rows.length - 1; i >= 0; i--) {
+            if (i == 0 || rows[i - 1] != rows[i] - 1) {
+                fireIntervalRemoved(this, rows[i], rows[end]);
+                end = i - 1;
+            }
+        }
+    }
+
+    /**
+     * Removes every file.
+     */
+    void clear() {
+
+        int size = files.size();
+        files.clear();
+        lengths.clear();
+        totalBytes = 0;
+        unsized = 0;
+        if (size > 0)
+            fireIntervalRemoved(this, 0, size - 1);
+    }
+
+    /**
+     * Records the sizes of files, ignoring files that were removed since.
+     *
+     * @param sized         The files.
+     * @param fileLengths   The size of each file in bytes.
+     */
+    void setLengths(File[] sized, long[] fileLengths) {
+
+        for (int i = 0; i < sized.length; i++) {
+            Long known = lengths.get(sized[i]);
+            if (known != null && known < 0) {
+                lengths.put(sized[i], fileLengths[i]);
+                totalBytes += fileLengths[i];
+                unsized--;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of files and their total size, eg. "1,204 files, 38.2 MB".
+     *
+     * @return  The summary.
+     */
+    String getSummary() {
+
+        String size;
+        if (totalBytes >= 1L << 30)
+            size = String.format(Locale.US, "%.1f GB", totalBytes / (double) (1L << 30));
+        else if (totalBytes >= 1L << 20)
+            size = String.format(Locale.US, "%.1f MB", totalBytes / (double) (1L << 20));
+        else
+            size = String.format(Locale.US, "%.1f kB", totalBytes / 1024.0);
+
+        return String.format(Locale.US, "%,d %s, %s%s", files.size(), files.size() == 1 ? "file" : "files", size,
+                unsized > 0 ? ", sizing..." : "");
+    }
+
+    private void forget(File file) {
+        long length = lengths.remove(file);
+        if (length < 0)
+            unsized--;
+        else
+            totalBytes -= length;
+    }
+}
@@ -0,0 +1,284 @@
+package csu.physics.pv;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Statistics of the cell parameters per sample, the files being grouped by a pattern of their names. For each group the
+ * number of files and the mean, standard deviation, minimum, maximum and median of Jsc, Voc, FF and Eff are kept, as
+ * printed after the parameters table by {@link JVWriter}.
+ *
+ * The statistics are running ones, so memory depends on the number of groups only: the moments are updated with
+ * Welford's method and the median comes from a {@link QuantileSketch}, exact for groups of up to
+ * {@link QuantileSketch#CAPACITY} files. Statistics of parts of the files, eg. kept by different threads, are combined
+ * with {@link GroupStats#merge(GroupStats)}.
+ */
+class GroupStats {
+
+    /**
+     * The default grouping: the name up to the cell number at its end, before an optional _jvl or _jvd suffix, eg.
+     * S12-3_jvl is in group S12.
+     */
+    static final String DEFAULT_PATTERN = "^(.+?)[_-]?\\d+(?:_jv[ld])?$";
+
+    /**
+     * The parameters summarized, matched against the start of the parameter names of each format.
+     */
+    static final String[] PARAMS = {"Jsc", "Voc", "FF", "Eff"};
+
+    /**
+     * The statistics of each parameter, in column order.
+     */
+    static final String[] STATS = {"mean", "std", "min", "max", "median"};
+
+    private static final int CHUNK = 4096;          // files per parallel task
+
+    private final Pattern pattern;
+    private final String[] paramNames;
+    private final int[] columns;                    // index of each summarized parameter, or -1 if missing
+    private final LinkedHashMap<String, Group> groups = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param pattern       The grouping pattern. Its first capturing group, or the whole match if it has none, found
+     *                      in a file name without .txt is the group of the file. Files it is not found in are
+     *                      grouped by their full name.
+     * @param paramNames    The parameter names of the format, see {@link JVData#getParamNames()}.
+     */
+    GroupStats(Pattern pattern, String[] paramNames) {
+
+        this.pattern = pattern;
+        this.paramNames = paramNames;
+        columns = new int[PARAMS.length];
+        for (int p = 0; p < PARAMS.length; p++) {
+            columns[p] = -1;
+            for (int i = 0; i < paramNames.length && columns[p] < 0; i++) {
+                if (paramNames[i].startsWith(PARAMS[p]))
+                    columns[p] = i;
+            }
+        }
+    }
+
+    /**
+     * Computes the statistics of the parameters table of a {@link JVData}, in chunks of files on a number of threads
+     * whose partial results are merged in file order.
+     *
+     * @param data      The data.
+     * @param pattern   The grouping pattern, see {@link GroupStats#GroupStats(Pattern, String[])}.
+     * @param threads   The number of threads, 1 to compute on the calling thread.
+     * @param pool      A pool of worker threads not shut down here, eg. kept by a server, or null to start one.
+     * @return          The statistics.
+     */
+    static GroupStats of(final JVData data, final Pattern pattern, int threads, ExecutorService pool) {
+
+        // the statistics of each chunk, merged in file order
+        final int numFiles = data.params.size();
+        final GroupStats[] parts = new GroupStats[Math.max(1, (numFiles + CHUNK - 1) / CHUNK)];
+        Chunks.run(pool, threads, "jv-stats", numFiles, CHUNK, new Chunks.Task() {
+            public void run(int from, int to) {
+                GroupStats part = new GroupStats(pattern, data.getParamNames());
+                part.addAll(data, from, to);
+                parts[from / CHUNK] = part;
+            }
+        });
+
+        GroupStats stats = parts[0];
+        for (int i = 1; i < parts.length; i++)
+            stats.merge(parts[i]);
+        return stats;
+    }
+
+    /**
+     * Returns the group of a file.
+     *
+     * @param name  The file name, without .txt.
+     * @return      The group.
+     */
+    String group(String name) {
+
+        Matcher matcher = pattern.matcher(name);
+        if (!matcher.find())
+            return name;
+        String group = matcher.groupCount() > 0 ? matcher.group(1) : matcher.group();
+        return group != null ? group : name;
+    }
+
+    /**
+     * Adds the parameters of one file.
+     *
+     * @param name      The file name, without .txt.
+     * @param params    The parameters of the file, in the order of the parameter names.
+     */
+    void add(String name, List<BigDecimal> params) {
+
+        Group group = stats(group(name));
+        group.files++;
+        for (int p = 0; p < columns.length; p++) {
+            if (columns[p] < 0)
+                continue;
+            BigDecimal value = columns[p] < params.size() ? params.get(columns[p]) : null;
+            if (value != null)
+                group.params[p].add(value.doubleValue());
+        }
+    }
+
+    /**
+     * Adds the statistics of another part of the files, which are left unchanged. Groups new to this part are added
+     * after its own, so parts merged in file order list the groups as if the files were added one by one.
+     *
+     * @param other The statistics to merge, kept with the same parameter names.
+     */
+    void merge(GroupStats other) {
+
+        for (Map.Entry<String, Group> entry : other.groups.entrySet()) {
+            Group group = stats(entry.getKey());
+            group.files += entry.getValue().files;
+            for (int p = 0; p < PARAMS.length; p++)
+                group.params[p].merge(entry.getValue().params[p]);
+        }
+    }
+
+    /**
+     * Returns the column names of the statistics table: the number of files, then each statistic of each parameter
+     * found in the format, eg. "FF [%] mean".
+     *
+     * @return  The column names.
+     */
+    String[] getHeaders() {
+
+        ArrayList<String> headers = new ArrayList<>();
+        headers.add("Files");
+        for (int column : columns) {
+            if (column < 0)
+                continue;
+            for (String stat : STATS)
+                headers.add(paramNames[column] + " " + stat);
+        }
+
+        return headers.toArray(new String[headers.size()]);
+    }
+
+    /**
+     * Returns the groups, in the order their first file was added.
+     *
+     * @return  The group names.
+     */
+    String[] getGroups() {
+        return groups.keySet().toArray(new String[groups.size()]);
+    }
+
+    /**
+     * Returns the number of files of a group.
+     *
+     * @param group The group.
+     * @return      The number of files.
+     */
+    long getCount(String group) {
+        return groups.get(group).files;
+    }
+
+    /**
+     * Returns the statistics of a group, in the order of {@link GroupStats#getHeaders()} after the file count.
+     * Statistics of parameters no file of the group had are NaN, as is the standard deviation of a single value.
+     *
+     * @param group The group.
+     * @return      The statistics.
+     */
+    double[] getStats(String group) {
+
+        Summary[] summaries = groups.get(group).params;
+        ArrayList<Double> stats = new ArrayList<>();
+        for (int p = 0; p < columns.length; p++) {
+            if (columns[p] < 0)
+                continue;
+            Summary s = summaries[p];
+            stats.add(s.count > 0 ? s.mean : Double.NaN);
+            stats.add(s.count > 1 ? Math.sqrt(s.m2 / (s.count - 1)) : Double.NaN);
+            stats.add(s.count > 0 ? s.min : Double.NaN);
+            stats.add(s.count > 0 ? s.max : Double.NaN);
+            stats.add(s.median.getMedian());
+        }
+
+        double[] values = new double[stats.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = stats.get(i);
+        return values;
+    }
+
+    private void addAll(JVData data, int from, int to) {
+        for (int i = from; i < to; i++)
+            add(JVData.stripTxt(data.lightFileNames.get(i)), data.params.get(i));
+    }
+
+    /*
+    Returns the statistics of a group, made on first use.
+     */
+    private Group stats(String name) {
+
+        Group group = groups.get(name);
+        if (group == null) {
+            group = new Group();
+            groups.put(name, group);
+        }
+
+        return group;
+    }
+
+    /*
+    The number of files of a group and the statistics of each summarized parameter.
+     */
+    private static final class Group {
+
+        long files;
+        final Summary[] params = new Summary[PARAMS.length];
+
+        Group() {
+            for (int p = 0; p < params.length; p++)
+                params[p] = new Summary();
+        }
+    }
+
+    /*
+    Running moments of one parameter of one group, updated with Welford's method and merged with Chan's, and a sketch
+    of its median.
+     */
+    private static final class Summary {
+
+        long count;
+        double mean;
+        double m2;          // sum of squared differences from the mean
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        final QuantileSketch median = new QuantileSketch();
+
+        void add(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            median.add(value);
+        }
+
+        void merge(Summary other) {
+            if (other.count == 0)
+                return;
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * count / total * other.count;
+            count = total;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            median.merge(other.median);
+        }
+    }
+}
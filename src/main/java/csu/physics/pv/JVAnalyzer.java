@@ -0,0 +1,278 @@
+package csu.physics.pv;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Computes the cell parameters of every curve straight from its J-V points, rather than trusting the values printed in
+ * the file headers. Unlike the header parameters these are available for every file of every format, dark files
+ * included, in which case only the parameters that exist for a dark curve are set.
+ *
+ * Curves are expected in V and mA/cm^2, as stored by every format. Either sign convention is accepted: a curve whose
+ * current is negative at 0 V is flipped, so the generated current is positive in the results. Values in between
+ * points are linearly interpolated, and parameters that do not exist for a curve (eg. Voc of a dark curve) are NaN.
+ */
+class JVAnalyzer {
+
+    /**
+     * Incident power density used for the efficiency, in mW/cm^2 (AM1.5G, one sun).
+     */
+    static final double INPUT_POWER = 100.0;
+
+    // result columns
+    static final int JSC = 0;       // short circuit current density [mA/cm^2]
+    static final int VOC = 1;       // open circuit voltage [V]
+    static final int PMAX = 2;      // maximum power density [mW/cm^2]
+    static final int JMP = 3;       // current density at maximum power [mA/cm^2]
+    static final int VMP = 4;       // voltage at maximum power [V]
+    static final int FF = 5;        // fill factor [%]
+    static final int EFF = 6;       // efficiency [%]
+    static final int RS = 7;        // series resistance, from the slope at Voc [Ohm cm^2]
+    static final int RSH = 8;       // shunt resistance, from the slope at 0 V [Ohm cm^2]
+    static final int NUM_PARAMS = 9;
+
+    static final String[] HEADERS = {
+            "Jsc [mA/cm^2]", "Voc [V]", "Pmax [mW/cm^2]", "Jmp [mA/cm^2]", "Vmp [V]",
+            "FF [%]", "Eff [%]", "Rs [Ohm cm^2]", "Rsh [Ohm cm^2]"
+    };
+
+    private static final int SLOPE_POINTS = 5;      // points fitted for the resistances
+    private static final int CHUNK = 256;           // curves per parallel task
+
+    private int threads;
+    private ExecutorService pool;
+
+    /**
+     * Constructor.
+     */
+    JVAnalyzer() {
+        threads = 1;
+    }
+
+    /**
+     * Sets the number of threads curves are analyzed on.
+     *
+     * @param threads   The number of threads, 1 to analyze on the calling thread.
+     */
+    void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets a pool of worker threads kept running between analyses, eg. by a server, or null to start a pool for each
+     * call. The pool is not shut down by the analyzer.
+     *
+     * @param pool  The pool, or null.
+     */
+    void setPool(ExecutorService pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Analyzes every curve of a store.
+     *
+     * @param curves    The curves.
+     * @return          The parameters of each curve, indexed by curve and then by the column constants.
+     */
+    double[][] analyze(final CurveStore curves) {
+
+        final int numCurves = curves.getNumCurves();
+        final double[][] results = new double[numCurves][];
+
+        Chunks.run(pool, threads, "jv-analyzer", numCurves, CHUNK, new Chunks.Task() {
+            public void run(int from, int to) {
+                analyze(curves, results, from, to);
+            }
+        });
+
+        return results;
+    }
+
+    /*
+    Analyzes a range of curves, reusing one pair of scratch arrays for all of them.
+     */
+    private static void analyze(CurveStore curves, double[][] results, int from, int to) {
+
+        int biggest = 0;
+        for (int i = from; i < to; i++)
+            biggest = Math.max(biggest, curves.getNumPoints(i));
+
+        double[] v = new double[biggest];
+        double[] j = new double[biggest];
+
+        for (int i = from; i < to; i++) {
+            int n = curves.getNumPoints(i);
+            for (int k = 0; k < n; k++) {
+                v[k] = curves.getVoltage(i, k);
+                j[k] = curves.getCurrent(i, k);
+            }
+            results[i] = analyze(v, j, n);
+        }
+    }
+
+    /**
+     * Analyzes one curve. The arrays are reordered in place.
+     *
+     * @param v The voltages.
+     * @param j The current densities.
+     * @param n The number of points.
+     * @return  The parameters, indexed by the column constants.
+     */
+    static double[] analyze(double[] v, double[] j, int n) {
+
+        double[] r = new double[NUM_PARAMS];
+        java.util.Arrays.fill(r, Double.NaN);
+        if (n < 2)
+            return r;
+
+        sortByVoltage(v, j, n);
+
+        // short circuit current, flipping the curve to positive generated current
+        double jsc = interpolate(v, j, n, 0.0);
+        if (jsc < 0) {
+            for (int k = 0; k < n; k++)
+                j[k] = -j[k];
+            jsc = -jsc;
+        }
+        r[JSC] = jsc;
+        r[RSH] = resistance(v, j, n, 0.0);
+
+        // open circuit voltage, the first crossing from generating to consuming above 0 V
+        int cross = -1;
+        for (int k = 0; k < n - 1; k++) {
+            if (v[k + 1] > 0 && j[k] > 0 && j[k + 1] <= 0) {
+                cross = k;
+                break;
+            }
+        }
+        if (cross < 0 || Double.isNaN(jsc))
+            return r;
+
+        double voc = v[cross] + (v[cross + 1] - v[cross]) * j[cross] / (j[cross] - j[cross + 1]);
+        r[VOC] = voc;
+        r[RS] = resistance(v, j, n, voc);
+
+        // maximum power, which within a segment is a quadratic of the linear interpolation
+        double pmax = 0, vmp = 0, jmp = 0;
+        for (int k = 0; k <= cross; k++) {
+            double v0 = Math.max(v[k], 0), v1 = Math.min(v[k + 1], voc);
+            if (v1 <= v0)
+                continue;
+            double j0 = interpolate(v, j, n, v0), j1 = k == cross ? 0 : interpolate(v, j, n, v1);
+            double dv = v1 - v0, dj = j1 - j0;
+
+            double t = dj != 0 ? -(dv * j0 + v0 * dj) / (2 * dv * dj) : -1;
+            double[] candidates = {0, 1, t};
+            for (double c : candidates) {
+                if (c < 0 || c > 1)
+                    continue;
+                double pv = v0 + c * dv, pj = j0 + c * dj;
+                if (pv * pj > pmax) {
+                    pmax = pv * pj;
+                    vmp = pv;
+                    jmp = pj;
+                }
+            }
+        }
+
+        r[PMAX] = pmax;
+        r[JMP] = jmp;
+        r[VMP] = vmp;
+        r[FF] = 100 * pmax / (jsc * voc);
+        r[EFF] = 100 * pmax / INPUT_POWER;
+
+        return r;
+    }
+
+    /*
+    Puts the points in ascending order of voltage. Sweeps are either ascending or descending, so those are handled
+    without sorting.
+     */
+    static void sortByVoltage(double[] v, double[] j, int n) {
+
+        boolean ascending = true, descending = true;
+        for (int k = 1; k < n; k++) {
+            ascending &= v[k] >= v[k - 1];
+            descending &= v[k] <= v[k - 1];
+        }
+
+        if (ascending)
+            return;
+
+        if (descending) {
+            for (int a = 0, b = n - 1; a < b; a++, b--) {
+                double t = v[a]; v[a] = v[b]; v[b] = t;
+                t = j[a]; j[a] = j[b]; j[b] = t;
+            }
+            return;
+        }
+
+        // insertion sort, the points of a hysteresis sweep are already in runs
+        for (int k = 1; k < n; k++) {
+            double vk = v[k], jk = j[k];
+            int m = k - 1;
+            while (m >= 0 && v[m] > vk) {
+                v[m + 1] = v[m];
+                j[m + 1] = j[m];
+                m--;
+            }
+            v[m + 1] = vk;
+            j[m + 1] = jk;
+        }
+    }
+
+    /*
+    Returns the index of the last point at or below the voltage, or -1 if all points are above it.
+     */
+    private static int floor(double[] v, int n, double x) {
+
+        int lo = 0, hi = n - 1, found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (v[mid] <= x) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /*
+    Returns the current density at a voltage by linear interpolation, or NaN outside the measured range.
+     */
+    private static double interpolate(double[] v, double[] j, int n, double x) {
+
+        if (x < v[0] || x > v[n - 1])
+            return Double.NaN;
+
+        int k = Math.min(floor(v, n, x), n - 2);
+        double dv = v[k + 1] - v[k];
+        return dv == 0 ? j[k] : j[k] + (j[k + 1] - j[k]) * (x - v[k]) / dv;
+    }
+
+    /*
+    Returns -dV/dJ near a voltage in Ohm cm^2, from a least squares line through the nearest points.
+     */
+    private static double resistance(double[] v, double[] j, int n, double x) {
+
+        if (x < v[0] || x > v[n - 1])
+            return Double.NaN;
+
+        int k = Math.max(floor(v, n, x), 0);
+        int from = Math.max(0, Math.min(k - SLOPE_POINTS / 2, n - SLOPE_POINTS));
+        int to = Math.min(n, from + SLOPE_POINTS);
+
+        double sv = 0, sj = 0, svv = 0, svj = 0;
+        int m = to - from;
+        for (int i = from; i < to; i++) {
+            sv += v[i];
+            sj += j[i];
+            svv += v[i] * v[i];
+            svj += v[i] * j[i];
+        }
+
+        double slope = (m * svj - sv * sj) / (m * svv - sv * sv);      // dJ/dV in mA/cm^2 per V
+        return slope == 0 ? Double.POSITIVE_INFINITY : -1000.0 / slope;
+    }
+}
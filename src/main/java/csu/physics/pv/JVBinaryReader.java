@@ -0,0 +1,203 @@
+package csu.physics.pv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the binary columnar format written by {@link JVBinaryWriter}. The sections of the file are memory mapped, and
+ * curves are returned as views of the mapped columns, so opening a file costs the same however many points it holds
+ * and no value is copied or parsed until it is used.
+ *
+ * Each column section is mapped on its own, which limits a file to about 268 million points.
+ */
+public class JVBinaryReader {
+
+    private final int numCurves;
+    private final LongBuffer index;
+    private final DoubleBuffer voltage;
+    private final DoubleBuffer current;
+    private final DoubleBuffer params;
+
+    private final String formatName;
+    private final String[] curveNames;
+    private final String[] paramNames;
+    private final String[] rowNames;
+
+    /**
+     * Opens a file.
+     *
+     * @param file  The file to read.
+     * @throws IOException  If the file cannot be read or is not in the binary format.
+     */
+    public JVBinaryReader(File file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            if (channel.size() < JVBinaryWriter.HEADER_SIZE)
+                throw new IOException(file + " is not a J-V binary file");
+
+            ByteBuffer header = map(channel, 0, JVBinaryWriter.HEADER_SIZE);
+            if (header.getInt(0) != JVBinaryWriter.MAGIC)
+                throw new IOException(file + " is not a J-V binary file");
+            if (header.getInt(4) != JVBinaryWriter.VERSION)
+                throw new IOException(file + " has unsupported version " + header.getInt(4));
+
+            numCurves = header.getInt(8);
+            int rows = header.getInt(12);
+            int columns = header.getInt(16);
+            long points = header.getLong(24);
+            long indexOffset = header.getLong(32);
+            long voltageOffset = header.getLong(40);
+            long currentOffset = header.getLong(48);
+            long paramsOffset = header.getLong(56);
+            long schemaOffset = header.getLong(64);
+
+            index = map(channel, indexOffset, 8L * (numCurves + 1)).asLongBuffer();
+            voltage = map(channel, voltageOffset, 8 * points).asDoubleBuffer();
+            current = map(channel, currentOffset, 8 * points).asDoubleBuffer();
+            params = map(channel, paramsOffset, 8L * rows * columns).asDoubleBuffer();
+
+            ByteBuffer schema = map(channel, schemaOffset, channel.size() - schemaOffset);
+            formatName = string(schema);
+            curveNames = strings(schema, numCurves);
+            paramNames = strings(schema, columns);
+            rowNames = strings(schema, rows);
+        }
+    }
+
+    /**
+     * Returns the name of the format the data was imported from.
+     *
+     * @return  The format name.
+     */
+    public String getFormatName() {
+        return formatName;
+    }
+
+    /**
+     * Returns the number of curves, ie. the number of files.
+     *
+     * @return  The number of curves.
+     */
+    public int getNumCurves() {
+        return numCurves;
+    }
+
+    /**
+     * Returns the name of a curve, which is its file name without the extension.
+     *
+     * @param curve The curve number.
+     * @return      The name.
+     */
+    public String getCurveName(int curve) {
+        return curveNames[curve];
+    }
+
+    /**
+     * Returns the number of points of a curve.
+     *
+     * @param curve The curve number.
+     * @return      The number of points.
+     */
+    public int getNumPoints(int curve) {
+        return (int) (index.get(curve + 1) - index.get(curve));
+    }
+
+    /**
+     * Returns the voltages of a curve, in V, as a read-only view of the mapped file.
+     *
+     * @param curve The curve number.
+     * @return      The voltages.
+     */
+    public DoubleBuffer getVoltage(int curve) {
+        return column(voltage, curve);
+    }
+
+    /**
+     * Returns the current densities of a curve, in mA/cm^2, as a read-only view of the mapped file.
+     *
+     * @param curve The curve number.
+     * @return      The current densities.
+     */
+    public DoubleBuffer getCurrent(int curve) {
+        return column(current, curve);
+    }
+
+    /**
+     * Returns the names of the parameter columns, as in the parameters table of the text output.
+     *
+     * @return  The column names.
+     */
+    public String[] getParamNames() {
+        return paramNames.clone();
+    }
+
+    /**
+     * Returns the number of parameter rows, which is the number of files the format has header parameters for.
+     *
+     * @return  The number of rows.
+     */
+    public int getNumParamRows() {
+        return rowNames.length;
+    }
+
+    /**
+     * Returns the name of a parameter row, which is the file name without the extension.
+     *
+     * @param row   The row number.
+     * @return      The name.
+     */
+    public String getParamRowName(int row) {
+        return rowNames[row];
+    }
+
+    /**
+     * Returns one parameter.
+     *
+     * @param row       The row number.
+     * @param column    The column number.
+     * @return          The value, NaN if the file did not have it.
+     */
+    public double getParam(int row, int column) {
+        return params.get(row * paramNames.length + column);
+    }
+
+    private DoubleBuffer column(DoubleBuffer values, int curve) {
+        DoubleBuffer view = values.duplicate();
+        view.position((int) index.get(curve));
+        view.limit((int) index.get(curve + 1));
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+
+        if (offset < 0 || length < 0 || offset + length > channel.size())
+            throw new IOException("Truncated J-V binary file");
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("J-V binary file section too large to map");
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String[] strings(ByteBuffer in, int count) {
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++)
+            strings[i] = string(in);
+        return strings;
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] text = new byte[in.getInt()];
+        in.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,184 @@
+package csu.physics.pv;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+
+/**
+ * Writes a {@link JVData} in the binary columnar format read by {@link JVBinaryReader}, so downstream tools can load
+ * an import without parsing text. All values are little-endian, and every numeric section starts on an 8 byte
+ * boundary so it can be mapped and viewed as a DoubleBuffer or LongBuffer in place.
+ *
+ * Layout: <br>
+ * <pre>
+ *  0  int    magic "JVB1"
+ *  4  int    version
+ *  8  int    number of curves
+ * 12  int    number of parameter rows
+ * 16  int    number of parameter columns
+ * 20  int    reserved, 0
+ * 24  long   total number of points
+ * 32  long   offset of the file index:  long[curves + 1], index of the first point of each curve
+ * 40  long   offset of the voltage:     double[points], V
+ * 48  long   offset of the current:     double[points], mA/cm^2
+ * 56  long   offset of the parameters:  double[rows * columns], row by row
+ * 64  long   offset of the schema:      strings, each an int byte length and UTF-8 bytes, in the order
+ *                                       format name, curve names, parameter column names, parameter row names
+ * </pre>
+ */
+class JVBinaryWriter {
+
+    static final int MAGIC = 0x3142564A;        // "JVB1" read as little-endian
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 72;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private JVBinaryWriter() { }
+
+    /**
+     * Writes data to a file. The file is written to a temporary file next to it and moved into place once complete.
+     *
+     * @param data  The data to write.
+     * @param file  The file to write to.
+     * @throws IOException  If the file could not be written.
+     */
+    static void write(JVData data, File file) throws IOException {
+
+        JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.WRITE, file.getName());
+        long points;
+
+        File temp = new File(file.getPath() + ".part");
+        try {
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                points = write(data, out);
+            }
+
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        timer.stop(file.length(), points);
+    }
+
+    /**
+     * Writes data to a channel, eg. a network response, in one sequential pass.
+     *
+     * @param data  The data to write.
+     * @param out   The channel to write to, which is not closed.
+     * @return      The number of points written.
+     * @throws IOException  If the channel could not be written.
+     */
+    static long write(JVData data, WritableByteChannel out) throws IOException {
+
+        CurveStore curves = data.getCurves();
+        int numCurves = data.getNumFiles();
+        long points = 0;
+        for (int i = 0; i < numCurves; i++)
+            points += curves.getNumPoints(i);
+
+        // the parameter columns, none for a format without parameters
+        String[] columns = data.getParamNames();
+        if (columns == null)
+            columns = new String[0];
+        ArrayList<ArrayList<BigDecimal>> params = data.params;
+        int rows = params.size();
+
+        // encode the schema
+        ArrayList<byte[]> schema = new ArrayList<>();
+        schema.add(utf8(data.getFormatName()));
+        String[] fileNames = data.getFileNames();
+        for (int i = 0; i < numCurves; i++)
+            schema.add(utf8(JVData.stripTxt(fileNames[i])));
+        for (String column : columns)
+            schema.add(utf8(column));
+        for (int i = 0; i < rows; i++)
+            schema.add(utf8(JVData.stripTxt(data.lightFileNames.get(i))));
+
+        long indexOffset = HEADER_SIZE;
+        long voltageOffset = indexOffset + 8L * (numCurves + 1);
+        long currentOffset = voltageOffset + 8 * points;
+        long paramsOffset = currentOffset + 8 * points;
+        long schemaOffset = paramsOffset + 8L * rows * columns.length;
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        // header
+        buf.putInt(MAGIC).putInt(VERSION).putInt(numCurves).putInt(rows).putInt(columns.length).putInt(0);
+        buf.putLong(points).putLong(indexOffset).putLong(voltageOffset).putLong(currentOffset)
+                .putLong(paramsOffset).putLong(schemaOffset);
+
+        // file index
+        long start = 0;
+        for (int i = 0; i <= numCurves; i++) {
+            room(out, buf, 8).putLong(start);
+            if (i < numCurves)
+                start += curves.getNumPoints(i);
+        }
+
+        // columns
+        for (int i = 0; i < numCurves; i++) {
+            for (int k = 0; k < curves.getNumPoints(i); k++)
+                room(out, buf, 8).putDouble(curves.getVoltage(i, k));
+        }
+        for (int i = 0; i < numCurves; i++) {
+            for (int k = 0; k < curves.getNumPoints(i); k++)
+                room(out, buf, 8).putDouble(curves.getCurrent(i, k));
+        }
+
+        // parameters, missing values as NaN
+        for (ArrayList<BigDecimal> row : params) {
+            for (int c = 0; c < columns.length; c++)
+                room(out, buf, 8).putDouble(c < row.size() ? row.get(c).doubleValue() : Double.NaN);
+        }
+
+        // schema
+        for (byte[] text : schema) {
+            room(out, buf, 4).putInt(text.length);
+            for (int p = 0; p < text.length; ) {
+                room(out, buf, 1);
+                int n = Math.min(buf.remaining(), text.length - p);
+                buf.put(text, p, n);
+                p += n;
+            }
+        }
+
+        flush(out, buf);
+        return points;
+    }
+
+    /*
+    Makes room for the given number of bytes, writing the buffer out when it is full.
+     */
+    private static ByteBuffer room(WritableByteChannel out, ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() < bytes)
+            flush(out, buf);
+        return buf;
+    }
+
+    private static void flush(WritableByteChannel out, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining())
+            out.write(buf);
+        buf.clear();
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,5 +1,7 @@
 package csu.physics.pv;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 
@@ -13,8 +15,10 @@ public class JVData {
     protected String [] fileNames;                // list of all file names
     protected ArrayList<String> lightFileNames;   // file names of light data only, used for printing params table
 
-    protected ArrayList<ArrayList<BigDecimal>> curves;    // array of raw curves data, each array corresponding to one file
+    protected CurveStore curves;                          // raw curves data, each curve corresponding to one file
     protected ArrayList<ArrayList<BigDecimal>> params;    // arrays of parameter numbers, each array corresponding to one file
+    protected boolean readCurves;                         // false to parse the headers only, see setReadCurves
+    protected SpilledCurves spill;                        // where appended curves go in bounded memory mode, or null
 
     /**
      * Constructor.
@@ -24,7 +28,8 @@ public class JVData {
         fileNames = new String[0];
         lightFileNames = new ArrayList<>();
         params = new ArrayList<>();
-        curves = new ArrayList<>();
+        curves = new CurveStore();
+        readCurves = true;
     }
 
     /**
@@ -35,6 +40,17 @@ public class JVData {
         fileNames = names;
     }
 
+    /**
+     * Sets whether the curves are decoded. When they are not, parsing stops at the start of the curve data of each
+     * file, and every file gets an empty curve so that file numbers stay aligned. Used when only the parameters table
+     * is printed.
+     *
+     * @param readCurves    Boolean indicating if the curves are decoded, true by default.
+     */
+    public void setReadCurves(boolean readCurves) {
+        this.readCurves = readCurves;
+    }
+
     /**
      * Returns the file names.
      * @return  The file names as an array.
@@ -48,19 +64,53 @@ public class JVData {
      * @return  The number of files.
      */
     public int getNumFiles() {
-        return fileData.size();
+        return curves.getNumCurves();
     }
 
     /**
-     * Returns the raw curve data as an array of arrays. Each array corresponds to the data of one file of the same
+     * Returns the raw curve data as a {@link CurveStore}. Each curve corresponds to the data of one file of the same
      * index number as in {@link csu.physics.pv.JVData#fileNames}.
      *
-     * @return  The array of arrays containing J-V data for all files.
+     * @return  The store containing J-V data for all files.
      */
-    public ArrayList<ArrayList<BigDecimal>> getCurves() {
+    public CurveStore getCurves() {
         return curves;
     }
 
+    /**
+     * Returns the short name of the format, as used on the command line and for output file suffixes. Intended to be
+     * implemented by sub-classes.
+     *
+     * @return  The format name.
+     */
+    public String getFormatName() {
+        return "";
+    }
+
+    /**
+     * Returns the part of a file's name that changes how the file is parsed, so parsed results can be cached by file
+     * contents. Intended to be implemented by sub-classes whose parsing depends on the file name.
+     *
+     * @param fileName  The name of the file.
+     * @return          A short key, empty if the name does not matter.
+     */
+    public String getCacheVariant(String fileName) {
+        return "";
+    }
+
+    /**
+     * Checks if a file is of this format from its first bytes only, see {@link JVFormats#SNIFF_LENGTH}. Intended to be
+     * implemented by sub-classes.
+     *
+     * @param head      Buffer holding the start of the file.
+     * @param offset    Index of the first byte of the file in the buffer.
+     * @param length    Number of bytes available.
+     * @return          Boolean indicating if the file is of this format.
+     */
+    public boolean sniff(byte[] head, int offset, int length) {
+        return false;
+    }
+
     /**
      * Verifies if data is of the appropriate type by looking for certain keywords near the beginning of file. Method is
      * intended to be implemented by sub-classes.
@@ -75,6 +125,74 @@ public class JVData {
      */
     public void extractData() { }
 
+    /**
+     * Streaming alternative to {@link JVData#extractData()}. Reads the contents of one file straight from the input,
+     * splitting it into header and raw J-V data as it goes and appending them to {@link JVData#params} and
+     * {@link JVData#curves}. No raw text is kept once the file has been parsed. Intended to be implemented by
+     * sub-classes.
+     *
+     * @param fileName  The name of the file being parsed.
+     * @param in        The tokenizer positioned at the start of the file.
+     * @return          Boolean indicating if the file was of a valid format.
+     * @throws IOException  If the file could not be read.
+     */
+    public boolean parse(String fileName, JVTokenizer in) throws IOException {
+        return false;
+    }
+
+    /**
+     * Creates an empty instance of the same format, used to parse files independently of each other before their
+     * results are joined with {@link JVData#append(JVData)}. Intended to be implemented by sub-classes.
+     *
+     * @return  An empty {@link JVData} of the same format.
+     */
+    public JVData newInstance() {
+        return new JVData();
+    }
+
+    /**
+     * Appends the parsed parameters and curves of another {@link JVData} of the same format after those of this one.
+     * An {@link UncheckedIOException} is thrown if the curves cannot be written to the spill file.
+     *
+     * @param other The data to append.
+     */
+    public void append(JVData other) {
+        lightFileNames.addAll(other.lightFileNames);
+        params.addAll(other.params);
+
+        if (spill == null) {
+            curves.append(other.curves);
+            return;
+        }
+
+        // spilled curves leave only an empty curve per file in memory, to keep the file count
+        try {
+            spill.append(other.curves);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        curves.append(emptyCurves(other.curves.getNumCurves()));
+    }
+
+    /**
+     * Sends the curves of all data appended from now on to a spill file instead of memory, see
+     * {@link SpilledCurves}. {@link JVData#getCurves()} then holds an empty curve per file.
+     *
+     * @param spill The spill file.
+     */
+    public void setSpill(SpilledCurves spill) {
+        this.spill = spill;
+    }
+
+    /**
+     * Returns the spill file the curves were sent to.
+     *
+     * @return  The spill file, or null if the curves are in memory.
+     */
+    public SpilledCurves getSpill() {
+        return spill;
+    }
+
     /**
      * Method called by {@link JVData#extractData()}. Takes input of a string array where each string represents the
      * header of one file. Extracts numerical parameters from the header string and places them in a BigDouble array,
@@ -90,13 +208,23 @@ public class JVData {
 
     /**
      * Method called by {@link JVData#extractData()}. Takes input of a string array where each string represents the
-     * J-V curve data of one file. Extracts voltage and current from the strings and places them in a BigDouble array,
-     * where each array represents the data of one file. Intended to be implemented by sub-classes.
+     * J-V curve data of one file. Extracts voltage and current from the strings and places them in a
+     * {@link CurveStore}, where each curve represents the data of one file. Intended to be implemented by sub-classes.
      *
      * @param c The array of strings containing J-V curve data.
-     * @return  An array of BigDouble arrays where each arra
+     * @return  The store containing the curves of all files.
+     */
+    public CurveStore sortCurves(ArrayList<String> c) {
+        return null;
+    }
+
+    /**
+     * Returns the names of the parameters, with their units, in the order of each file's parameter array. Intended to
+     * be implemented by sub-classes.
+     *
+     * @return  The parameter names.
      */
-    public ArrayList<ArrayList<BigDecimal>> sortCurves(ArrayList<String> c) {
+    public String[] getParamNames() {
         return null;
     }
 
@@ -109,5 +237,71 @@ public class JVData {
         return null;
     }
 
+    /**
+     * Creates a store holding the given number of empty curves, used in place of the curves when they are not read.
+     *
+     * @param numCurves The number of curves.
+     * @return          The store.
+     */
+    protected static CurveStore emptyCurves(int numCurves) {
+
+        CurveStore store = new CurveStore();
+        for (int i = 0; i < numCurves; i++)
+            store.endCurve();
+
+        return store;
+    }
+
+    /**
+     * Returns a file name without its .txt extension, as files are named in the printed tables. Names without one are
+     * kept whole.
+     *
+     * @param fileName  The file name.
+     * @return          The name up to its last .txt.
+     */
+    static String stripTxt(String fileName) {
+        int end = fileName.lastIndexOf(".txt");
+        return end < 0 ? fileName : fileName.substring(0, end);
+    }
+
+    /**
+     * Returns the total length of some texts, used as the bytes handled by a stage in {@link JVMetrics}.
+     *
+     * @param texts The texts.
+     * @return      The total number of characters.
+     */
+    protected static long length(ArrayList<String> texts) {
+
+        long length = 0;
+        for (String text : texts)
+            length += text.length();
+
+        return length;
+    }
+
+    /**
+     * Searches a range of bytes for an ASCII marker.
+     *
+     * @param head      The buffer to search.
+     * @param offset    Index of the first byte to search.
+     * @param length    Number of bytes to search.
+     * @param marker    The marker to find.
+     * @return          Boolean indicating if the marker was found.
+     */
+    protected static boolean contains(byte[] head, int offset, int length, String marker) {
+
+        int end = offset + length - marker.length();
+        outer:
+        for (int i = offset; i <= end; i++) {
+            for (int j = 0; j < marker.length(); j++) {
+                if (head[i + j] != marker.charAt(j))
+                    continue outer;
+            }
+            return true;
+        }
+
+        return false;
+    }
+
 
 }
@@ -0,0 +1,84 @@
+package csu.physics.pv;
+
+import java.util.ArrayList;
+
+/**
+ * Registry of the known {@link JVData} formats. Each format is registered with an empty instance that detects its own
+ * files with {@link JVData#sniff(byte[], int, int)} and creates the instances files are parsed into with
+ * {@link JVData#newInstance()}. Formats are tried in registration order.
+ */
+class JVFormats {
+
+    /**
+     * Number of bytes at the start of a file that formats are detected from. The column header of both the lightbox
+     * and the ERC files falls well within it.
+     */
+    static final int SNIFF_LENGTH = 1024;
+
+    private ArrayList<JVData> formats;
+
+    /**
+     * Constructor for an empty registry.
+     */
+    JVFormats() {
+        formats = new ArrayList<>();
+    }
+
+    /**
+     * Returns a registry of all formats known to the importer.
+     *
+     * @return  The registry.
+     */
+    static JVFormats defaults() {
+
+        JVFormats registry = new JVFormats();
+        registry.register(new PhysicsData());
+        registry.register(new EngrData());
+
+        return registry;
+    }
+
+    /**
+     * Adds a format to the registry.
+     *
+     * @param format    An empty instance of the format.
+     */
+    void register(JVData format) {
+        formats.add(format);
+    }
+
+    /**
+     * Returns the format of the given name.
+     *
+     * @param name  The format name, see {@link JVData#getFormatName()}.
+     * @return      An empty instance of the format, or null if none has the name.
+     */
+    JVData get(String name) {
+
+        for (JVData format : formats) {
+            if (format.getFormatName().equals(name))
+                return format;
+        }
+
+        return null;
+    }
+
+    /**
+     * Detects the format of a file from its first bytes.
+     *
+     * @param head      Buffer holding the start of the file.
+     * @param offset    Index of the first byte of the file in the buffer.
+     * @param length    Number of bytes available, at most {@link JVFormats#SNIFF_LENGTH} are looked at.
+     * @return          An empty instance of the format, or null if no format matches.
+     */
+    JVData detect(byte[] head, int offset, int length) {
+
+        length = Math.min(length, SNIFF_LENGTH);
+        for (JVData format : formats) {
+            if (format.sniff(head, offset, length))
+                return format;
+        }
+
+        return null;
+    }
+}
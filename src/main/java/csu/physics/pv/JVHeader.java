@@ -0,0 +1,145 @@
+package csu.physics.pv;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Key table of the header of a J-V format. A header is made of "label TAB value" lines ending with the column header
+ * line, the marker. Each line is split once into its key, the label without units, case and spacing, and its value,
+ * and fields are looked up by key, so a header still parses when the instrument software adds, removes or reorders
+ * lines. A field whose label is not found, eg. spelled differently by another version of the software, is taken from
+ * its line in the original layout, as before keys were used, with a warning on standard error.
+ */
+final class JVHeader {
+
+    /**
+     * Number of lines the marker is looked for in before a file is taken to be of another format.
+     */
+    static final int MAX_LINES = 100;
+
+    private final String marker;
+    private final String[] labels;
+    private final int[] lines;
+    private final HashMap<String, Integer> fields;     // key -> field number
+    private final Set<String> warned = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Constructor.
+     *
+     * @param marker    The column header line ending the header.
+     * @param labels    The label of each field, units are ignored.
+     * @param lines     The line of each field in the original layout, used when the label is not found.
+     */
+    JVHeader(String marker, String[] labels, int[] lines) {
+
+        this.marker = marker;
+        this.labels = labels;
+        this.lines = lines;
+
+        fields = new HashMap<>();
+        for (int i = 0; i < labels.length; i++)
+            fields.put(key(labels[i], labels[i].length()), i);
+    }
+
+    /**
+     * Reads header lines up to and including the marker, leaving the tokenizer at the first curve line.
+     *
+     * @param in    The tokenizer at the start of a file.
+     * @return      The header lines without the marker, or null if there is no marker in the first
+     *              {@link JVHeader#MAX_LINES} lines.
+     * @throws IOException  If the input could not be read.
+     */
+    String[] read(JVTokenizer in) throws IOException {
+
+        ArrayList<String> header = new ArrayList<>();
+        for (int i = 0; i < MAX_LINES; i++) {
+            String line = in.readLine();
+            if (line == null)
+                return null;
+            if (line.contains(marker))
+                return header.toArray(new String[header.size()]);
+            header.add(line);
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the marker in the lines of a file.
+     *
+     * @param lines The lines of a file.
+     * @return      The index of the first marker line, or -1 if there is none.
+     */
+    int indexOf(String[] lines) {
+
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].contains(marker))
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Looks the fields up in header lines, in one pass over the lines.
+     *
+     * @param header    The header lines, without the marker.
+     * @return          The value of each field, in the order of the labels.
+     * @throws IllegalArgumentException If a field is neither found by label nor on its original line.
+     */
+    ArrayList<BigDecimal> parse(String[] header) {
+
+        String[] values = new String[labels.length];
+        int found = 0;
+
+        for (int i = 0; i < header.length && found < values.length; i++) {
+            String line = header[i];
+            int tab = line.lastIndexOf('\t');
+            if (tab < 0)
+                continue;
+            Integer field = fields.get(key(line, tab));
+            if (field != null && values[field] == null) {
+                values[field] = line.substring(tab + 1);
+                found++;
+            }
+        }
+
+        ArrayList<BigDecimal> params = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                if (lines[i] >= header.length)
+                    throw new IllegalArgumentException("No " + labels[i] + " in header");
+                String line = header[lines[i]];
+                values[i] = line.substring(line.lastIndexOf('\t') + 1);
+                if (warned.add(labels[i]))
+                    System.err.println("Warning: no " + labels[i] + " label in the header, reading line "
+                            + (lines[i] + 1) + " \"" + line.trim() + "\" instead");
+            }
+            params.add(new BigDecimal(values[i].trim()));
+        }
+
+        return params;
+    }
+
+    /*
+    The key of a label: the text before any unit in parentheses or brackets, trimmed and lower case.
+     */
+    private static String key(String line, int end) {
+
+        for (int i = 0; i < end; i++) {
+            char c = line.charAt(i);
+            if (c == '(' || c == '[') {
+                end = i;
+                break;
+            }
+        }
+
+        return line.substring(0, end).trim().toLowerCase(Locale.ROOT);
+    }
+}
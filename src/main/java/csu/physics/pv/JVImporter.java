@@ -0,0 +1,541 @@
+package csu.physics.pv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Headless command-line entry point. Runs the same {@link JVReader}, {@link JVData} and {@link JVWriter} pipeline as
+ * {@link Window} without loading any AWT or Swing classes, so it can be scripted on machines without a display.
+ *
+ * Usage: <br>
+ * <pre>
+ * JVImporter [options] -o OUTPUT INPUT...
+ * JVImporter [options] [scan filters] -o OUTPUT --scan FOLDER...
+ * JVImporter [options] -o OUTPUT --watch FOLDER
+ * JVImporter [-j N] [--cache FOLDER] --serve PORT
+ *
+ *   INPUT              a J-V file, a directory (all .txt files in it) or a glob such as data/2018-05-*&#47;*.txt, where
+ *                      .zip, .tar, .tar.gz, .tgz and .gz archives are read entry by entry, see {@link JVInput}
+ *   -o, --output FILE  the file to write
+ *   -f, --format NAME  input format: auto (default, detected per file), physics or engr
+ *   --curves, --no-curves      print the curves table (default on)
+ *   --summary, --no-summary    print the parameters table (default on)
+ *   --analysis, --no-analysis  print parameters computed from the curves, see {@link JVAnalyzer} (default off)
+ *   --groups, --no-groups      print the count, mean, std, min, max and median of Jsc, Voc, FF and Eff per sample
+ *                      after the parameters table, see {@link GroupStats} (default off)
+ *   --group-by REGEX   group files into samples by the first group of the regex in their names (default the name up
+ *                      to the cell number, eg. S12-3_jvl is in sample S12)
+ *   --grid START:STOP:STEP     resample the curves onto a common voltage grid in V, eg. -0.2:1.0:0.01, printing
+ *                      one voltage column and a current column per file, see {@link JVResampler}
+ *   -t, --output-format NAME   layout of the output: tsv (default), csv, jsonl or json, see {@link TableWriter}
+ *   --binary           write the binary columnar format of {@link JVBinaryWriter} instead of text
+ *   --spill FOLDER     keep curves in temporary files in the folder instead of memory, see {@link SpilledCurves}
+ *   --spill-block MB   memory used to merge spilled curves into the output (default 64)
+ *   -j, --threads N    number of threads files are read and output tables computed on (default: number of cores)
+ *   --scan FOLDER      import the files in the folder and every folder below it, reading files as they are found,
+ *                      may be given more than once, see {@link DirectoryScan}
+ *   --include GLOB     scan only files matching the glob, eg. *_jvl.txt or 2018-05-*&#47;*.txt below the folder,
+ *                      may be given more than once (default .txt files and archives)
+ *   --exclude GLOB     leave out files and folders matching the glob when scanning, may be given more than once
+ *   --modified-after DATE      scan only files modified at or after the date, eg. 2018-05-01 or 2018-05-01T13:30
+ *   --modified-before DATE     scan only files modified before the date
+ *   --watch FOLDER     import new files written to the folder until stopped, see {@link JVWatcher}
+ *   --cache FOLDER     load files imported before from a cache of parsed files, see {@link ParseCache}
+ *   --cache-size MB    largest size of the cache (default 1024)
+ *   --serve PORT       serve imports over HTTP on localhost until stopped, inputs and options being given per
+ *                      request, see {@link JVServer}
+ * </pre>
+ *
+ * Exit codes are {@link JVImporter#EXIT_OK}, {@link JVImporter#EXIT_USAGE}, {@link JVImporter#EXIT_INVALID} and
+ * {@link JVImporter#EXIT_IO}.
+ */
+public class JVImporter {
+
+    static final int EXIT_OK = 0;           // import complete
+    static final int EXIT_USAGE = 1;        // bad command line
+    static final int EXIT_INVALID = 2;      // no input files, files not of the selected format or of no known format
+    static final int EXIT_IO = 3;           // input could not be read or output could not be written
+
+    // the options that apply to a whole server, the others being given per request
+    private static final List<String> SERVER_OPTIONS =
+            Arrays.asList("--serve", "-j", "--threads", "--cache", "--cache-size", "-h", "--help");
+
+    private static final String USAGE =
+            "Usage: JVImporter [-f auto|physics|engr] [--curves|--no-curves] [--summary|--no-summary]"
+            + " [--analysis|--no-analysis] [--groups|--no-groups] [--group-by REGEX] [--grid START:STOP:STEP]"
+            + " [-t tsv|csv|jsonl|json] [--binary] [-j threads]"
+            + " [--cache FOLDER [--cache-size MB]] [--spill FOLDER [--spill-block MB]]"
+            + " (-o OUTPUT (INPUT... | --scan FOLDER... [--include GLOB] [--exclude GLOB] [--modified-after DATE]"
+            + " [--modified-before DATE] | --watch FOLDER) | --serve PORT)";
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs one import.
+     *
+     * @param args  The command line arguments.
+     * @param out   Stream for progress messages.
+     * @param err   Stream for error messages.
+     * @return      The exit code.
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+
+        String dataFormat = "auto";
+        JVFormats formats = JVFormats.defaults();
+        boolean printCurves = true;
+        boolean printParams = true;
+        boolean printAnalysis = false;
+        boolean printGroups = false;
+        Pattern groupPattern = null;
+        boolean binary = false;
+        JVResampler resampler = null;
+        String outputFormat = TableWriter.FORMATS[0];
+        int threads = Runtime.getRuntime().availableProcessors();
+        File output = null;
+        File watch = null;
+        File cacheDir = null;
+        long cacheSize = 1024;
+        File spillDir = null;
+        long spillBlock = 64;
+        int port = -1;
+        ArrayList<String> inputs = new ArrayList<>();
+        ArrayList<File> scanRoots = new ArrayList<>();
+        ArrayList<String> includes = new ArrayList<>();
+        ArrayList<String> excludes = new ArrayList<>();
+        long modifiedAfter = Long.MIN_VALUE;
+        long modifiedBefore = Long.MAX_VALUE;
+        String perRequest = null;
+
+        // parse the arguments
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (perRequest == null && !SERVER_OPTIONS.contains(arg))
+                    perRequest = arg;
+                switch (arg) {
+                    case "-o":
+                    case "--output":
+                        output = new File(value(args, ++i, arg));
+                        break;
+                    case "-f":
+                    case "--format":
+                        dataFormat = value(args, ++i, arg);
+                        break;
+                    case "-j":
+                    case "--threads":
+                        threads = Integer.parseInt(value(args, ++i, arg));
+                        break;
+                    case "--watch":
+                        watch = new File(value(args, ++i, arg));
+                        break;
+                    case "--scan":
+                        scanRoots.add(new File(value(args, ++i, arg)));
+                        break;
+                    case "--include":
+                        includes.add(value(args, ++i, arg));
+                        break;
+                    case "--exclude":
+                        excludes.add(value(args, ++i, arg));
+                        break;
+                    case "--modified-after":
+                        modifiedAfter = DirectoryScan.parseTime(value(args, ++i, arg));
+                        break;
+                    case "--modified-before":
+                        modifiedBefore = DirectoryScan.parseTime(value(args, ++i, arg));
+                        break;
+                    case "--cache":
+                        cacheDir = new File(value(args, ++i, arg));
+                        break;
+                    case "--cache-size":
+                        cacheSize = Long.parseLong(value(args, ++i, arg));
+                        break;
+                    case "--spill":
+                        spillDir = new File(value(args, ++i, arg));
+                        break;
+                    case "--spill-block":
+                        spillBlock = Long.parseLong(value(args, ++i, arg));
+                        break;
+                    case "--curves":
+                        printCurves = true;
+                        break;
+                    case "--no-curves":
+                        printCurves = false;
+                        break;
+                    case "--summary":
+                        printParams = true;
+                        break;
+                    case "--no-summary":
+                        printParams = false;
+                        break;
+                    case "--analysis":
+                        printAnalysis = true;
+                        break;
+                    case "--no-analysis":
+                        printAnalysis = false;
+                        break;
+                    case "--groups":
+                        printGroups = true;
+                        break;
+                    case "--no-groups":
+                        printGroups = false;
+                        break;
+                    case "--group-by":
+                        groupPattern = Pattern.compile(value(args, ++i, arg));
+                        break;
+                    case "--binary":
+                        binary = true;
+                        break;
+                    case "-t":
+                    case "--output-format":
+                        outputFormat = value(args, ++i, arg);
+                        break;
+                    case "--serve":
+                        port = Integer.parseInt(value(args, ++i, arg));
+                        break;
+                    case "--grid":
+                        resampler = JVResampler.parse(value(args, ++i, arg));
+                        break;
+                    case "-h":
+                    case "--help":
+                        out.println(USAGE);
+                        return EXIT_OK;
+                    default:
+                        if (arg.startsWith("-") && arg.length() > 1)
+                            throw new IllegalArgumentException("Unknown option " + arg);
+                        inputs.add(arg);
+                }
+            }
+
+            boolean scanning = !scanRoots.isEmpty();
+            if (port >= 0 && perRequest != null)
+                throw new IllegalArgumentException(perRequest + " cannot be used with --serve, which takes its inputs"
+                        + " and output options per request");
+            if (port < 0 && output == null)
+                throw new IllegalArgumentException("No output file given");
+            if (port < 0 && !inputs.isEmpty() && (watch != null || scanning))
+                throw new IllegalArgumentException("Input files cannot be given with --watch or --scan");
+            if (watch != null && scanning)
+                throw new IllegalArgumentException("--scan cannot be used with --watch");
+            if (port < 0 && inputs.isEmpty() && watch == null && !scanning)
+                throw new IllegalArgumentException("No input files given");
+            if (!scanning && (!includes.isEmpty() || !excludes.isEmpty() || modifiedAfter != Long.MIN_VALUE
+                    || modifiedBefore != Long.MAX_VALUE))
+                throw new IllegalArgumentException("--include, --exclude and --modified-* need --scan");
+            if (!dataFormat.equals("auto") && formats.get(dataFormat) == null)
+                throw new IllegalArgumentException("Unknown format " + dataFormat);
+            if (spillDir != null && (binary || watch != null))
+                throw new IllegalArgumentException("--spill cannot be used with --binary or --watch");
+            if (printGroups && binary)
+                throw new IllegalArgumentException("--groups cannot be used with --binary");
+            if (groupPattern != null && !printGroups)
+                throw new IllegalArgumentException("--group-by needs --groups");
+            if (resampler != null && (binary || watch != null))
+                throw new IllegalArgumentException("--grid cannot be used with --binary or --watch");
+            if (!Arrays.asList(TableWriter.FORMATS).contains(outputFormat))
+                throw new IllegalArgumentException("Unknown output format " + outputFormat);
+            if (!outputFormat.equals(TableWriter.FORMATS[0]) && (binary || watch != null))
+                throw new IllegalArgumentException("--output-format cannot be used with --binary or --watch");
+
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        if (port >= 0)
+            return serve(port, threads, cacheDir, cacheSize, out, err);
+
+        if (watch != null)
+            return watch(watch, dataFormat.equals("auto") ? formats : only(formats.get(dataFormat)), output,
+                    printCurves, printParams, printAnalysis, printGroups, groupPattern, threads, out, err);
+
+        // expand the inputs into files, in the order given
+        ArrayList<File> files = new ArrayList<>();
+        try {
+            for (String input : inputs)
+                files.addAll(expand(input));
+        } catch (IOException | InvalidPathException e) {
+            err.println("Cannot list input " + e.getMessage());
+            return EXIT_IO;
+        }
+
+        if (files.isEmpty() && scanRoots.isEmpty()) {
+            err.println("No input files found");
+            return EXIT_INVALID;
+        }
+
+        File[] filePaths = files.toArray(new File[files.size()]);
+
+        // or scan the folders, reading each file as soon as it is found
+        DirectoryScan scan = null;
+        if (!scanRoots.isEmpty()) {
+            for (File root : scanRoots) {
+                if (!root.isDirectory()) {
+                    err.println("Cannot scan " + root + ", not a folder");
+                    return EXIT_IO;
+                }
+            }
+            scan = new DirectoryScan(scanRoots.toArray(new File[scanRoots.size()]), threads);
+            for (String glob : includes)
+                scan.include(glob);
+            for (String glob : excludes)
+                scan.exclude(glob);
+            scan.setModifiedAfter(modifiedAfter);
+            scan.setModifiedBefore(modifiedBefore);
+        }
+
+        ArrayList<Boolean> printOptions = new ArrayList<>();
+        printOptions.add(printCurves);
+        printOptions.add(printParams);
+        printOptions.add(printAnalysis);
+        printOptions.add(printGroups);
+
+        // read and parse, with the selected format or the format detected for each file, leaving the curves out
+        // when nothing printed needs them
+        ArrayList<JVData> batches = new ArrayList<>();
+        JVReader reader = new JVReader();
+        reader.setThreads(threads);
+        reader.setReadCurves(binary || JVWriter.needsCurves(printOptions));
+        if (spillDir != null)
+            reader.setSpill(spillDir, spillBlock * 1024 * 1024);
+
+        try {
+            try {
+                if (cacheDir != null)
+                    reader.setCache(new ParseCache(cacheDir, cacheSize * 1024 * 1024));
+
+                JVInput.Listing listing = scan != null ? new JVInput.Listing(scan) : new JVInput.Listing(filePaths);
+                if (dataFormat.equals("auto")) {
+                    batches = reader.read(listing, formats);
+                    for (File rejected : reader.getRejectedFiles())
+                        err.println("Skipped " + rejected + ", unknown format");
+                    if (batches.isEmpty() && reader.getRejectedFiles().isEmpty()) {
+                        err.println("No input files found");
+                        return EXIT_INVALID;
+                    }
+                    if (batches.isEmpty()) {
+                        err.println("Invalid input, no files of a known format");
+                        return EXIT_INVALID;
+                    }
+                } else {
+                    JVData data = formats.get(dataFormat).newInstance();
+                    batches.add(data);
+                    if (!reader.read(listing, data)) {
+                        err.println("Invalid input, files are not all of the " + dataFormat + " format");
+                        return EXIT_INVALID;
+                    }
+                    if (data.getFileNames().length == 0) {
+                        err.println("No input files found");
+                        return EXIT_INVALID;
+                    }
+                }
+            } catch (IOException e) {
+                err.println("Cannot read input: " + e.getMessage());
+                return EXIT_IO;
+            } catch (RuntimeException e) {
+                err.println("Invalid input: " + e.getMessage());
+                return EXIT_INVALID;
+            }
+
+            // write, one output file per format in a mixed batch
+            for (JVData data : batches) {
+                File file = batches.size() > 1 ? JVWriter.formatFile(output, data) : output;
+                if (binary) {
+                    try {
+                        JVBinaryWriter.write(data, file);
+                    } catch (IOException e) {
+                        err.println("Cannot write " + file + ": " + e.getMessage());
+                        return EXIT_IO;
+                    }
+                    continue;
+                }
+
+                JVWriter writer = new JVWriter(data);
+                writer.setPrintOptions(printOptions);
+                writer.setResampler(resampler);
+                if (groupPattern != null)
+                    writer.setGroupPattern(groupPattern);
+                writer.setThreads(threads);
+                writer.setFormat(outputFormat);
+                if (!writer.write(file)) {
+                    err.println("Cannot write " + file);
+                    return EXIT_IO;
+                }
+            }
+        } finally {
+            closeSpills(batches);
+            if (scan != null)
+                scan.close();
+        }
+
+        int imported = 0;
+        for (JVData data : batches)
+            imported += data.getFileNames().length;
+        out.println("Imported " + imported + " files to " + output);
+        return EXIT_OK;
+    }
+
+    /*
+    Deletes the spill files of the batches, if any.
+     */
+    private static void closeSpills(ArrayList<JVData> batches) {
+        for (JVData data : batches) {
+            try {
+                if (data.getSpill() != null)
+                    data.getSpill().close();
+            } catch (IOException e) {
+                // the file is deleted on exit
+            }
+        }
+    }
+
+    /*
+    Runs a JVWatcher on the folder until the process is stopped.
+     */
+    private static int watch(File folder, JVFormats formats, File output, boolean printCurves, boolean printParams,
+                             boolean printAnalysis, boolean printGroups, Pattern groupPattern, int threads,
+                             PrintStream out, PrintStream err) {
+
+        if (!folder.isDirectory()) {
+            err.println("Cannot watch " + folder + ", not a folder");
+            return EXIT_IO;
+        }
+
+        ArrayList<Boolean> printOptions = new ArrayList<>();
+        printOptions.add(printCurves);
+        printOptions.add(printParams);
+        printOptions.add(printAnalysis);
+        printOptions.add(printGroups);
+
+        out.println("Watching " + folder + ", stop with Ctrl-C");
+        try {
+            JVWatcher watcher = new JVWatcher(folder.toPath(), formats, output, printOptions, out);
+            watcher.setThreads(threads);
+            watcher.setGroupPattern(groupPattern);
+            watcher.run();
+        } catch (IOException e) {
+            err.println("Watch failed: " + e.getMessage());
+            return EXIT_IO;
+        }
+
+        return EXIT_OK;
+    }
+
+    /*
+    Runs a JVServer on the port until the process is stopped.
+     */
+    private static int serve(int port, int threads, File cacheDir, long cacheSize, PrintStream out,
+                             PrintStream err) {
+
+        JVServer server;
+        try {
+            server = new JVServer(port, threads);
+            if (cacheDir != null)
+                server.setCache(new ParseCache(cacheDir, cacheSize * 1024 * 1024));
+        } catch (IOException e) {
+            err.println("Cannot serve on port " + port + ": " + e.getMessage());
+            return EXIT_IO;
+        }
+
+        server.setLog(out);
+        server.start();
+        out.println("Serving on http://127.0.0.1:" + server.getPort() + "/import, stop with Ctrl-C");
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            server.close();
+        }
+
+        return EXIT_OK;
+    }
+
+    private static JVFormats only(JVData format) {
+        JVFormats formats = new JVFormats();
+        formats.register(format);
+        return formats;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length)
+            throw new IllegalArgumentException("Missing value for " + option);
+        return args[i];
+    }
+
+    /**
+     * Expands one input argument into files. A directory expands to the .txt files and archives in it, as in a
+     * {@link DirectoryScan} without includes, and a glob is matched from the longest leading path without glob
+     * characters. Matches are sorted by path.
+     *
+     * @param input The input argument.
+     * @return      The matching files.
+     * @throws IOException  If a directory could not be listed.
+     */
+    static ArrayList<File> expand(String input) throws IOException {
+
+        ArrayList<File> files = new ArrayList<>();
+
+        // plain file or directory
+        if (!isGlob(input)) {
+            File file = new File(input);
+            if (file.isDirectory()) {
+                File[] children = file.listFiles();
+                if (children == null)
+                    throw new IOException(input);
+                for (File child : children) {
+                    if (child.isFile() && (child.getName().endsWith(".txt") || JVInput.isArchive(child)))
+                        files.add(child);
+                }
+                Collections.sort(files);
+            } else {
+                files.add(file);
+            }
+            return files;
+        }
+
+        // split the glob into a base directory and the pattern below it
+        String pattern = input.replace('\\', '/');
+        int firstGlob = 0;
+        while (firstGlob < pattern.length() && "*?[{".indexOf(pattern.charAt(firstGlob)) < 0)
+            firstGlob++;
+        int slash = pattern.lastIndexOf('/', firstGlob);
+        Path base = slash < 0 ? Paths.get(".") : Paths.get(slash == 0 ? "/" : pattern.substring(0, slash));
+        String relative = pattern.substring(slash + 1);
+
+        if (!Files.isDirectory(base))
+            return files;
+
+        // limit the walk to the depth of the pattern unless it crosses directories
+        int depth = relative.contains("**") ? Integer.MAX_VALUE : relative.split("/").length;
+        PathMatcher matcher = base.getFileSystem().getPathMatcher("glob:" + relative);
+
+        try (Stream<Path> walk = Files.walk(base, depth)) {
+            walk.filter(p -> Files.isRegularFile(p) && matcher.matches(base.relativize(p)))
+                    .sorted()
+                    .forEach(p -> files.add(p.toFile()));
+        }
+
+        return files;
+    }
+
+    private static boolean isGlob(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if ("*?[{".indexOf(input.charAt(i)) >= 0)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,464 @@
+package csu.physics.pv;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * One J-V file to read: a file on disk, or a .txt entry of a .zip, .tar, .tar.gz (.tgz) or single file .gz archive.
+ * Archives are read in place, each entry streamed from the archive into the parser without being extracted.
+ *
+ * An entry is named by its file name in the archive, so light and dark files keep the jvl naming the formats rely on,
+ * and is reported as a path below the archive, eg. day1.zip/cell1/cell1_jvl.txt.
+ */
+abstract class JVInput {
+
+    private final File file;
+    private final String name;
+
+    private JVInput(File file, String name) {
+        this.file = file;
+        this.name = name;
+    }
+
+    /**
+     * Returns the file, or for an archive entry its path below the archive, for messages and rejected file lists.
+     *
+     * @return  The file.
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the file name used for the file in the output.
+     *
+     * @return  The file name.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the size of the contents.
+     *
+     * @return  The size in bytes, or -1 if not known before reading.
+     */
+    abstract long length();
+
+    /**
+     * Opens a stream of the contents, to be closed by the caller.
+     *
+     * @return  The stream.
+     * @throws IOException  If the file or archive cannot be read.
+     */
+    abstract InputStream open() throws IOException;
+
+    /**
+     * Returns an input that can still be opened after the next input is listed, eg. on another thread. Entries of tar
+     * archives, which can only be read in order, are read into memory; other inputs are returned as they are.
+     *
+     * @return  The input.
+     * @throws IOException  If the entry cannot be read.
+     */
+    JVInput detach() throws IOException {
+        return this;
+    }
+
+    /**
+     * Reads the whole contents into memory.
+     *
+     * @return  The contents.
+     * @throws IOException  If the file or archive cannot be read.
+     */
+    byte[] readAll() throws IOException {
+
+        long length = length();
+        if (length > Integer.MAX_VALUE - 8)
+            throw new IOException(file + " is too large");
+
+        try (InputStream in = open()) {
+            byte[] bytes = new byte[length >= 0 ? (int) length : 8192];
+            int n = 0;
+            while (true) {
+                if (n == bytes.length) {
+                    if (length >= 0)
+                        return bytes;
+                    bytes = Arrays.copyOf(bytes, n * 2);
+                }
+                int read = in.read(bytes, n, bytes.length - n);
+                if (read < 0)
+                    return Arrays.copyOf(bytes, n);
+                n += read;
+            }
+        }
+    }
+
+    /**
+     * Returns an input of contents already in memory, eg. received over the network.
+     *
+     * @param file      The file the contents are reported as, for messages and rejected file lists.
+     * @param name      The file name used in the output.
+     * @param contents  The contents.
+     * @return          The input.
+     */
+    static JVInput of(File file, String name, final byte[] contents) {
+        return new JVInput(file, name) {
+            long length() {
+                return contents.length;
+            }
+
+            InputStream open() {
+                return new ByteArrayInputStream(contents);
+            }
+        };
+    }
+
+    /**
+     * Returns whether a file is read as an archive, by its extension.
+     *
+     * @param file  The file.
+     * @return      True for .zip, .tar, .tar.gz, .tgz and .gz files.
+     */
+    static boolean isArchive(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tgz") || name.endsWith(".gz");
+    }
+
+    /**
+     * A stream of files to read, handed out as they become known, eg. by a {@link DirectoryScan} still running.
+     */
+    interface FileSource {
+
+        /**
+         * Returns the next file, waiting for it if it is not known yet.
+         *
+         * @return  The file or archive, or null when there are no more.
+         * @throws IOException  If the files cannot be listed.
+         */
+        File next() throws IOException;
+    }
+
+    /**
+     * Lists the inputs of a selection of files, in order, expanding each archive into its .txt entries in archive
+     * order. Entries of other types are left out, as in a folder.
+     */
+    static final class Listing implements Closeable {
+
+        private final File[] files;
+        private final JVInput[] given;
+        private final FileSource source;
+        private final ArrayList<Closeable> open = new ArrayList<>();
+        private int next;
+        private File archive;       // the archive being listed
+
+        private Enumeration<? extends ZipEntry> zipEntries;
+        private OpenZip zip;
+        private TarReader tar;
+        private InputStream tarStream;
+
+        private int size;
+
+        /**
+         * Constructor, counting the inputs.
+         *
+         * @param files The files and archives.
+         * @throws IOException  If a zip archive cannot be opened.
+         */
+        Listing(File[] files) throws IOException {
+            this(files, new JVInput[files.length]);
+        }
+
+        /**
+         * Constructor for a selection mixing files with inputs that are already open, counting the inputs.
+         *
+         * @param files The files and archives, ignored where an input is given.
+         * @param given The input listed in place of each file, or null to list the file.
+         * @throws IOException  If a zip archive cannot be opened.
+         */
+        Listing(File[] files, JVInput[] given) throws IOException {
+
+            this.files = files;
+            this.given = given;
+            source = null;
+
+            // zip archives are opened up front to count their entries, tar archives have to be read to the end
+            for (int i = 0; i < files.length; i++) {
+                File file = files[i];
+                String name = file.getName().toLowerCase();
+                if (given[i] != null || !isArchive(file)) {
+                    size++;
+                } else if (name.endsWith(".zip")) {
+                    try (ZipFile zip = new ZipFile(file)) {
+                        Enumeration<? extends ZipEntry> entries = zip.entries();
+                        while (entries.hasMoreElements()) {
+                            if (isTxt(entries.nextElement()))
+                                size++;
+                        }
+                    }
+                } else if (isTar(name)) {
+                    size = -1;
+                    break;
+                } else if (entryName(file).endsWith(".txt")) {
+                    size++;
+                }
+            }
+        }
+
+        /**
+         * Constructor for files that become known while they are read, eg. from a scan still running. The number of
+         * inputs is then not known.
+         *
+         * @param source    The files and archives.
+         */
+        Listing(FileSource source) {
+            files = new File[0];
+            given = new JVInput[0];
+            this.source = source;
+            size = -1;
+        }
+
+        /**
+         * Returns the number of inputs.
+         *
+         * @return  The number, or -1 if there are tar archives, whose entries are only known once read, or the files
+         *          come from a source.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns the next input. The previous input of a tar archive can no longer be opened unless detached.
+         *
+         * @return  The input, or null when all were listed.
+         * @throws IOException  If an archive cannot be read.
+         */
+        JVInput next() throws IOException {
+
+            while (true) {
+
+                // the current archive
+                if (zipEntries != null) {
+                    while (zipEntries.hasMoreElements()) {
+                        ZipEntry entry = zipEntries.nextElement();
+                        if (isTxt(entry))
+                            return new ZipInput(zip, entry, archive);
+                    }
+                    zipEntries = null;
+                    zip.listed();
+                }
+                if (tar != null) {
+                    while (tar.next()) {
+                        if (isTxt(tar.getName()))
+                            return new TarInput(tar, archive);
+                    }
+                    tar = null;
+                    tarStream.close();
+                }
+
+                final File file;
+                if (source != null) {
+                    file = source.next();
+                    if (file == null)
+                        return null;
+                } else {
+                    if (next == files.length)
+                        return null;
+                    if (given[next] != null)
+                        return given[next++];
+                    file = files[next++];
+                }
+                String name = file.getName().toLowerCase();
+
+                if (!isArchive(file)) {
+                    return new JVInput(file, file.getName()) {
+                        long length() {
+                            return file.length();
+                        }
+
+                        InputStream open() throws IOException {
+                            return new FileInputStream(file);
+                        }
+                    };
+                } else if (name.endsWith(".zip")) {
+                    zip = new OpenZip(new ZipFile(file));
+                    open.add(zip.file);
+                    archive = file;
+                    zipEntries = zip.file.entries();
+                } else if (isTar(name)) {
+                    InputStream in = new FileInputStream(file);
+                    tarStream = name.endsWith(".tar") ? new BufferedInputStream(in, 1 << 16)
+                            : new GZIPInputStream(in, 1 << 16);
+                    open.add(tarStream);
+                    archive = file;
+                    tar = new TarReader(tarStream);
+                } else {
+                    final String entry = entryName(file);
+                    if (!entry.endsWith(".txt"))
+                        continue;
+                    return new JVInput(new File(file, entry), entry) {
+                        long length() {
+                            return -1;
+                        }
+
+                        InputStream open() throws IOException {
+                            return new GZIPInputStream(new FileInputStream(file), 1 << 16);
+                        }
+                    };
+                }
+            }
+        }
+
+        /**
+         * Closes the archives that were opened and are still open. A zip archive is closed as soon as all its entries
+         * were listed and read.
+         *
+         * @throws IOException  If an archive cannot be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (Closeable closeable : open) {
+                try {
+                    if (closeable != null)
+                        closeable.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null)
+                throw failure;
+        }
+
+        private static boolean isTar(String name) {
+            return name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+        }
+
+        private static boolean isTxt(ZipEntry entry) {
+            return !entry.isDirectory() && isTxt(entry.getName());
+        }
+
+        /*
+        Whether an entry is a .txt file, leaving out hidden files such as the ._ files macOS adds to archives.
+         */
+        private static boolean isTxt(String path) {
+            return path.endsWith(".txt") && !baseName(path).startsWith(".");
+        }
+
+        /*
+        The name of the file compressed in a single file .gz, the archive name without .gz.
+         */
+        private static String entryName(File gz) {
+            String name = gz.getName();
+            return name.substring(0, name.length() - 3);
+        }
+    }
+
+    /*
+    The file name of an entry, the part of its path after the last separator.
+     */
+    private static String baseName(String path) {
+        return path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+    }
+
+    /*
+    A zip archive being listed, closed once all its entries were listed and each was read, so a listing of many
+    archives does not keep them all open.
+     */
+    private static final class OpenZip {
+
+        final ZipFile file;
+        private int unread;         // entries listed and not yet read
+        private boolean listed;
+
+        OpenZip(ZipFile file) {
+            this.file = file;
+        }
+
+        synchronized void add() {
+            unread++;
+        }
+
+        synchronized void listed() throws IOException {
+            listed = true;
+            if (unread == 0)
+                file.close();
+        }
+
+        synchronized void read() throws IOException {
+            if (--unread == 0 && listed)
+                file.close();
+        }
+    }
+
+    /*
+    An entry of a zip archive, which can be opened once, at any time and from any thread, until it is read.
+     */
+    private static final class ZipInput extends JVInput {
+
+        private final OpenZip zip;
+        private final ZipEntry entry;
+
+        ZipInput(OpenZip zip, ZipEntry entry, File archive) {
+            super(new File(archive, entry.getName()), baseName(entry.getName()));
+            this.zip = zip;
+            this.entry = entry;
+            zip.add();
+        }
+
+        long length() {
+            return entry.getSize();
+        }
+
+        InputStream open() throws IOException {
+            return new FilterInputStream(zip.file.getInputStream(entry)) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (closed)
+                        return;
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        zip.read();
+                    }
+                }
+            };
+        }
+    }
+
+    /*
+    The current entry of a tar archive, streamed from the archive until the next entry is listed.
+     */
+    private static final class TarInput extends JVInput {
+
+        private final TarReader tar;
+        private final long size;
+
+        TarInput(TarReader tar, File archive) {
+            super(new File(archive, tar.getName()), baseName(tar.getName()));
+            this.tar = tar;
+            size = tar.getSize();
+        }
+
+        long length() {
+            return size;
+        }
+
+        InputStream open() {
+            return tar.getEntry();
+        }
+
+        @Override
+        JVInput detach() throws IOException {
+            return of(getFile(), getName(), readAll());
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package csu.physics.pv;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentation of the import pipeline, telling whether a slow import is spent reading, parsing or writing. Each run
+ * of a stage is timed with a {@link JVMetrics.Timer}, which adds it to the cumulative metrics of the stage, exposed as
+ * one {@link StageMetricsMXBean} per stage, and emits a {@link StageEvent} to the flight recorder when it is recording
+ * (eg. java -XX:StartFlightRecording ...). The flight recorder is optional: its classes are in src/main/jfr, only
+ * built on Java 11 or later, and on a build or JVM without them only the MBeans are kept.
+ */
+final class JVMetrics {
+
+    /**
+     * The timed stages.
+     */
+    enum Stage {
+        READ("read"),                   // reading a file, and parsing it when streaming
+        VALIDATE("isValidData"),
+        EXTRACT("extractData"),
+        SORT_CURVES("sortCurves"),
+        SORT_PARAMS("sortParams"),
+        WRITE("write");
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Recorder RECORDER = loadRecorder();
+    private static final EnumMap<Stage, Metrics> METRICS = new EnumMap<>(Stage.class);
+
+    static {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Stage stage : Stage.values()) {
+            Metrics metrics = new Metrics();
+            METRICS.put(stage, metrics);
+            try {
+                server.registerMBean(metrics, new ObjectName("csu.physics.pv:type=Stage,name=" + stage.label));
+            } catch (JMException | SecurityException e) {
+                // already registered by another class loader, or not allowed, the counters still work
+            }
+        }
+    }
+
+    private JVMetrics() { }
+
+    /**
+     * Starts timing a run of a stage.
+     *
+     * @param stage The stage.
+     * @param file  The name of the file the stage runs on, or null for a whole batch.
+     * @return      The timer, to stop when the stage is done.
+     */
+    static Timer start(Stage stage, String file) {
+        return new Timer(stage, file, RECORDER == null ? null : RECORDER.begin());
+    }
+
+    /**
+     * Returns the metrics of a stage.
+     *
+     * @param stage The stage.
+     * @return      The metrics.
+     */
+    static StageMetricsMXBean get(Stage stage) {
+        return METRICS.get(stage);
+    }
+
+    /**
+     * A started run of a stage.
+     */
+    static final class Timer {
+
+        private final Stage stage;
+        private final String file;
+        private final Object event;     // the StageEvent, typed as Object so the class is not needed without JFR
+        private final long start;
+
+        private Timer(Stage stage, String file, Object event) {
+            this.stage = stage;
+            this.file = file;
+            this.event = event;
+            start = System.nanoTime();
+        }
+
+        /**
+         * Stops timing and records the run.
+         *
+         * @param bytes     The bytes read or written, 0 if not known.
+         * @param points    The J-V points handled, 0 if not known.
+         */
+        void stop(long bytes, long points) {
+            METRICS.get(stage).add(System.nanoTime() - start, bytes, points);
+            if (event != null)
+                RECORDER.commit(event, stage, file, bytes, points);
+        }
+    }
+
+    /**
+     * Emits the flight recorder events, implemented by {@code StageRecorder} in src/main/jfr so that this class
+     * compiles and loads without the flight recorder.
+     */
+    interface Recorder {
+
+        /**
+         * Begins an event for a run of a stage.
+         *
+         * @return  The event, or null if the event is not enabled.
+         */
+        Object begin();
+
+        /**
+         * Ends and commits an event begun by {@link Recorder#begin()}.
+         *
+         * @param event     The event.
+         * @param stage     The stage.
+         * @param file      The name of the file the stage ran on, or null for a whole batch.
+         * @param bytes     The bytes read or written.
+         * @param points    The J-V points handled.
+         */
+        void commit(Object event, Stage stage, String file, long bytes, long points);
+    }
+
+    /*
+    Loads the flight recorder events, if both the JVM and this build have them.
+     */
+    private static Recorder loadRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName("csu.physics.pv.StageRecorder").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /*
+    Cumulative counters and a log2 latency histogram of one stage.
+     */
+    private static final class Metrics implements StageMetricsMXBean {
+
+        private static final int BUCKETS = 40;      // up to 2^39 us, about 6 days
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder points = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void add(long duration, long bytes, long points) {
+
+            count.increment();
+            this.bytes.add(bytes);
+            this.points.add(points);
+            nanos.add(duration);
+
+            long previous = max.get();
+            while (duration > previous && !max.compareAndSet(previous, duration))
+                previous = max.get();
+
+            long micros = duration / 1000;
+            int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+            histogram.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public long getPoints() {
+            return points.sum();
+        }
+
+        public double getTotalMillis() {
+            return nanos.sum() / 1e6;
+        }
+
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : nanos.sum() / 1e6 / n;
+        }
+
+        public double getMaxMillis() {
+            return max.get() / 1e6;
+        }
+
+        public double getP50Millis() {
+            return percentile(0.50);
+        }
+
+        public double getP99Millis() {
+            return percentile(0.99);
+        }
+
+        public long[] getHistogram() {
+            long[] copy = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)
+                copy[i] = histogram.get(i);
+            return copy;
+        }
+
+        public long[] getHistogramBoundsMicros() {
+            long[] bounds = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)
+                bounds[i] = 1L << i;
+            return bounds;
+        }
+
+        public void reset() {
+            count.reset();
+            bytes.reset();
+            points.reset();
+            nanos.reset();
+            max.set(0);
+            for (int i = 0; i < BUCKETS; i++)
+                histogram.set(i, 0);
+        }
+
+        private double percentile(double p) {
+
+            long[] counts = getHistogram();
+            long total = 0;
+            for (long c : counts)
+                total += c;
+            if (total == 0)
+                return 0;
+
+            long rank = (long) Math.ceil(p * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return (1L << i) / 1000.0;
+            }
+            return (1L << (BUCKETS - 1)) / 1000.0;
+        }
+    }
+}
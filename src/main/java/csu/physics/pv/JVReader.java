@@ -1,14 +1,75 @@
 package csu.physics.pv;
 
 import java.io.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
 
 class JVReader {
 
     private ArrayList<String> fileData;
+    private ArrayList<File> rejectedFiles;
+    private int threads;
+    private ParseCache cache;
+    private Progress progress;
+    private boolean readCurves;
+    private File spillDir;
+    private long spillBlockBytes;
+    private ExecutorService pool;
 
     JVReader() {
         fileData = new ArrayList<>();
+        rejectedFiles = new ArrayList<>();
+        threads = 1;
+        readCurves = true;
+    }
+
+    /*
+    Sets the number of worker threads used to read and parse files at the same time. One reads files sequentially.
+     */
+    void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /*
+    Sets a pool of worker threads kept running between reads, eg. by a server, or null to start a pool for each read.
+    The pool is not shut down by the reader.
+     */
+    void setPool(ExecutorService pool) {
+        this.pool = pool;
+    }
+
+    /*
+    Sets the cache parsed files are loaded from and stored to, or null to always parse.
+     */
+    void setCache(ParseCache cache) {
+        this.cache = cache;
+    }
+
+    /*
+    Sets the listener told about each file read, which can also cancel the read between files.
+     */
+    void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    /*
+    Sets whether curves are read. Without curves only the header of each file is read, and the cache is not used since
+    reading the header is cheaper than hashing the whole file.
+     */
+    void setReadCurves(boolean readCurves) {
+        this.readCurves = readCurves;
+    }
+
+    /*
+    Sets bounded memory mode: the curves of every JVData read into are spilled to a temporary file in the folder, see
+    SpilledCurves, and merged back in blocks of at most the given number of bytes. The caller closes the spills.
+     */
+    void setSpill(File dir, long blockBytes) {
+        spillDir = dir;
+        spillBlockBytes = blockBytes;
     }
 
     ArrayList<String> getFileData() {
@@ -29,6 +90,7 @@ class JVReader {
         for (File file : files) {
 
             // open stream to current file
+            JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.READ, file.getName());
             currFile = file;
             is = new FileInputStream(currFile);
             buf = new BufferedReader(new InputStreamReader(is));
@@ -44,8 +106,300 @@ class JVReader {
             // add the contents of the file as a string to fileData.
             String fileAsString = sb.toString();
             fileData.add(fileAsString);
+            buf.close();
+            timer.stop(fileAsString.length(), 0);
+        }
+
+    }
+
+    /*
+    Reads files in and streams each one straight into the parser of the given JVData, without keeping the raw contents,
+    then sets the file names of the data to the names of the files read. Archives are read entry by entry, see JVInput.
+    Stops at the first file that is not of the format of the data, returning false.
+     */
+    boolean read(File[] files, final JVData data) throws IOException {
+        return read(new JVInput.Listing(files), data);
+    }
+
+    /*
+    Reads the inputs of a listing, as read(File[], JVData), closing the listing.
+     */
+    boolean read(JVInput.Listing inputs, final JVData data) throws IOException {
+
+        if (spillDir != null && data.getSpill() == null)
+            data.setSpill(new SpilledCurves(spillDir, spillBlockBytes));
+
+        final ArrayList<String> names = new ArrayList<>();
+        boolean valid = readAll(inputs, new FileParser() {
+            public JVData parse(JVInput input, JVTokenizer in, byte[] hash) throws IOException {
+                return parseAs(data, input, in, hash);
+            }
+        }, new PartSink() {
+            public boolean accept(JVInput input, JVData part) throws IOException {
+                if (part == null)
+                    return false;
+                append(data, part);
+                names.add(input.getName());
+                return true;
+            }
+        });
+
+        if (valid)
+            data.setFileNames(names.toArray(new String[names.size()]));
+        return valid;
+    }
+
+    /*
+    Reads files in, detecting the format of each from its first bytes and routing it to the parser of that format.
+    Returns one JVData per format found, in order of first appearance, with its file names set in selection order.
+    Archives are read entry by entry, see JVInput. Files of no known format, or that fail to parse, are skipped and
+    listed by getRejectedFiles().
+     */
+    ArrayList<JVData> read(File[] files, final JVFormats formats) throws IOException {
+        return read(new JVInput.Listing(files), formats);
+    }
+
+    /*
+    Reads the inputs of a listing, as read(File[], JVFormats), closing the listing.
+     */
+    ArrayList<JVData> read(JVInput.Listing inputs, final JVFormats formats) throws IOException {
+
+        final LinkedHashMap<String, JVData> batches = new LinkedHashMap<>();
+        final LinkedHashMap<String, ArrayList<String>> names = new LinkedHashMap<>();
+        rejectedFiles = new ArrayList<>();
+
+        readAll(inputs, new FileParser() {
+            public JVData parse(JVInput input, JVTokenizer in, byte[] hash) throws IOException {
+                int n = in.peek(JVFormats.SNIFF_LENGTH);
+                JVData format = formats.detect(in.getBuffer(), in.getPosition(), n);
+                if (format == null)
+                    return null;
+                try {
+                    return parseAs(format, input, in, hash);
+                } catch (RuntimeException e) {
+                    return null;    // malformed numbers or header, reject the file only
+                }
+            }
+        }, new PartSink() {
+            public boolean accept(JVInput input, JVData part) throws IOException {
+                if (part == null) {
+                    rejectedFiles.add(input.getFile());
+                    return true;
+                }
+                String format = part.getFormatName();
+                if (!batches.containsKey(format)) {
+                    JVData batch = part.newInstance();
+                    if (spillDir != null)
+                        batch.setSpill(new SpilledCurves(spillDir, spillBlockBytes));
+                    batches.put(format, batch);
+                    names.put(format, new ArrayList<String>());
+                }
+                append(batches.get(format), part);
+                names.get(format).add(input.getName());
+                return true;
+            }
+        });
+
+        for (Map.Entry<String, JVData> batch : batches.entrySet()) {
+            ArrayList<String> batchNames = names.get(batch.getKey());
+            batch.getValue().setFileNames(batchNames.toArray(new String[batchNames.size()]));
+        }
+
+        return new ArrayList<>(batches.values());
+    }
+
+    /*
+    Returns the files skipped by the last auto-detecting read, archive entries as paths below their archive.
+     */
+    ArrayList<File> getRejectedFiles() {
+        return rejectedFiles;
+    }
+
+    /*
+    Listener for the progress of a read. It is told about each file in selection order once the file is parsed, with
+    its size, -1 if not known, and the total number of files, -1 while the entries of tar archives are not all known.
+    It is asked before each file whether the read should stop, in which case the read throws a CancellationException
+    and the data is left incomplete.
+     */
+    interface Progress {
+        void fileRead(File file, long bytes, int done, int total);
+        boolean shouldStop();
+    }
+
+    /*
+    Parses one file into its own JVData, returning null if the file is not valid. The hash of the file contents is
+    given when a cache is set, and null otherwise.
+     */
+    private interface FileParser {
+        JVData parse(JVInput input, JVTokenizer in, byte[] hash) throws IOException;
+    }
+
+    /*
+    Receives the parsed files in selection order, returning false to stop reading.
+     */
+    private interface PartSink {
+        boolean accept(JVInput input, JVData part) throws IOException;
+    }
+
+    /*
+    Parses every file, sequentially or on a pool of worker threads, and hands the parts to the sink in the order of the
+    files array, so file names stay aligned with curves and params. When parallel, only a window of a few files per
+    thread is in flight at once to bound memory, and entries of tar archives are read into memory before they are
+    handed to a worker. A set Progress is checked before each file is joined, so a cancelled read stops at a file
+    boundary and drops the files still in flight.
+     */
+    private boolean readAll(JVInput.Listing listing, final FileParser parser, PartSink sink) throws IOException {
+
+        try (JVInput.Listing inputs = listing) {
+
+            int total = inputs.size();
+            int done = 0;
+
+            if (threads == 1 || total == 1) {
+                JVInput input;
+                while ((input = inputs.next()) != null) {
+                    checkCancelled();
+                    if (!sink.accept(input, parse(input, parser)))
+                        return false;
+                    fileRead(input, ++done, total);
+                }
+                return true;
+            }
+
+            ExecutorService pool = this.pool != null ? this.pool : newPool(threads);
+
+            ArrayDeque<JVInput> submitted = new ArrayDeque<>();
+            ArrayDeque<Future<JVData>> pending = new ArrayDeque<>();
+            int window = threads * 4;
+            boolean listed = false;
+
+            try {
+                while (true) {
+
+                    // keep the window of submitted files full
+                    while (!listed && pending.size() < window) {
+                        JVInput next = inputs.next();
+                        if (next == null) {
+                            listed = true;
+                            break;
+                        }
+                        final JVInput input = next.detach();
+                        submitted.add(input);
+                        pending.add(pool.submit(new Callable<JVData>() {
+                            public JVData call() throws IOException {
+                                return parse(input, parser);
+                            }
+                        }));
+                    }
+                    if (pending.isEmpty())
+                        return true;
+
+                    // join the oldest file, in selection order
+                    checkCancelled();
+                    JVData part = pending.poll().get();
+                    JVInput input = submitted.poll();
+                    if (!sink.accept(input, part))
+                        return false;
+                    fileRead(input, ++done, total);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Reading was interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                    throw (IOException) cause;
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                throw new IOException(cause);
+            } finally {
+                if (pool != this.pool)
+                    pool.shutdownNow();
+                for (Future<JVData> task : pending)
+                    task.cancel(true);
+            }
+        }
+    }
+
+    /*
+    Starts a pool of daemon worker threads for reading.
+     */
+    static ThreadPoolExecutor newPool(int threads) {
+        return Chunks.newPool(threads, "jv-reader");
+    }
+
+
+    /*
+    Appends a part, rethrowing a failure to write a spill file as the IOException it is.
+     */
+    private static void append(JVData data, JVData part) throws IOException {
+        try {
+            data.append(part);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void checkCancelled() {
+        if (progress != null && progress.shouldStop())
+            throw new CancellationException("Reading was cancelled");
+    }
+
+    private void fileRead(JVInput input, int done, int total) {
+        if (progress != null)
+            progress.fileRead(input.getFile(), input.length(), done, total);
+    }
+
+    /*
+    Opens a stream to a file or archive entry and hands a tokenizer over it to the parser. With a cache the whole file
+    is read first, to hash its contents.
+     */
+    private JVData parse(JVInput input, FileParser parser) throws IOException {
+
+        JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.READ, input.getName());
+        JVData part;
+
+        if (cache != null && readCurves) {
+            byte[] contents = input.readAll();
+            part = parser.parse(input, new JVTokenizer(contents, contents.length),
+                    ParseCache.hash(contents, contents.length));
+        } else {
+            try (InputStream is = input.open()) {
+                part = parser.parse(input, new JVTokenizer(is), null);
+            }
+        }
+
+        timer.stop(Math.max(0, input.length()), part == null ? 0 : part.getCurves().getTotalPoints());
+        return part;
+    }
+
+    /*
+    Parses a file of a known format into a new instance of the format, or loads it from the cache when its contents
+    were parsed before. Returns null if the file is not valid.
+     */
+    private JVData parseAs(JVData format, JVInput input, JVTokenizer in, byte[] hash) throws IOException {
+
+        if (hash != null) {
+            JVData cached = cache.get(hash, format, input.getName());
+            if (cached != null)
+                return cached;
+        }
+
+        JVData part = format.newInstance();
+        part.setReadCurves(readCurves);
+        if (!part.parse(input.getName(), in))
+            return null;
+
+        // the cache only saves work, a file that cannot be stored is still imported
+        if (hash != null) {
+            try {
+                cache.put(hash, part, input.getName());
+            } catch (IOException e) {
+                System.err.println("Could not cache " + input.getName() + ": " + e);
+            }
         }
 
+        return part;
     }
 
 }
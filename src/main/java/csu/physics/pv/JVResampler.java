@@ -0,0 +1,275 @@
+package csu.physics.pv;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Puts every curve onto one shared voltage grid, so the curves table becomes a single voltage column and one current
+ * column per file instead of a voltage and a current column per file, each with its own steps.
+ *
+ * Curves are interpolated with the monotone piecewise cubic of Fritsch and Carlson: between measured points it never
+ * overshoots, so a monotone J-V curve stays monotone and no spurious bumps appear near Voc. Points at the same voltage,
+ * eg. the two branches of a hysteresis sweep, are averaged. Grid voltages outside the measured range of a curve are
+ * not extrapolated and are NaN.
+ */
+class JVResampler {
+
+    /**
+     * Number of curves resampled by one parallel task.
+     */
+    static final int CHUNK = 256;
+
+    private static final int MAX_VOLTAGES = 1000000;
+
+    private final double[] grid;
+    private final String[] labels;
+    private int threads;
+    private ExecutorService pool;
+
+    /**
+     * Constructor. The grid runs from start to stop, both included when stop falls on a step.
+     *
+     * @param start The first voltage [V].
+     * @param stop  The last voltage [V].
+     * @param step  The voltage step [V], positive.
+     * @throws IllegalArgumentException If the step is not positive, stop is below start or the grid has a million
+     *                                  voltages or more.
+     */
+    JVResampler(BigDecimal start, BigDecimal stop, BigDecimal step) {
+
+        if (step.signum() <= 0 || stop.compareTo(start) < 0)
+            throw new IllegalArgumentException("Bad voltage grid " + start + ":" + stop + ":" + step);
+
+        BigDecimal steps = stop.subtract(start).divideToIntegralValue(step);
+        if (steps.compareTo(BigDecimal.valueOf(MAX_VOLTAGES)) >= 0)
+            throw new IllegalArgumentException("Voltage grid " + start + ":" + stop + ":" + step + " is too fine");
+
+        int n = steps.intValue() + 1;
+        int scale = Math.max(0, Math.max(start.scale(), step.scale()));
+        grid = new double[n];
+        labels = new String[n];
+        for (int k = 0; k < n; k++) {
+            BigDecimal v = start.add(step.multiply(BigDecimal.valueOf(k))).setScale(scale);
+            grid[k] = v.doubleValue();
+            labels[k] = v.toPlainString();
+        }
+
+        threads = 1;
+    }
+
+    /**
+     * Parses a grid given as START:STOP:STEP in volts, eg. -0.2:1.0:0.01.
+     *
+     * @param spec  The grid.
+     * @return      The resampler.
+     * @throws IllegalArgumentException If the grid is malformed.
+     */
+    static JVResampler parse(String spec) {
+
+        String[] parts = spec.split(":");
+        if (parts.length != 3)
+            throw new IllegalArgumentException("Bad voltage grid " + spec + ", expected START:STOP:STEP");
+        return new JVResampler(new BigDecimal(parts[0].trim()), new BigDecimal(parts[1].trim()),
+                new BigDecimal(parts[2].trim()));
+    }
+
+    /**
+     * Sets the number of threads curves are resampled on.
+     *
+     * @param threads   The number of threads, 1 to resample on the calling thread.
+     */
+    void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets a pool of worker threads kept running between resamplings, eg. by a server, or null to start a pool for each
+     * call. The pool is not shut down by the resampler.
+     *
+     * @param pool  The pool, or null.
+     */
+    void setPool(ExecutorService pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the grid voltages.
+     *
+     * @return  The voltages [V], ascending.
+     */
+    double[] getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns a grid voltage as text, with the decimal places of the grid definition.
+     *
+     * @param k The grid index.
+     * @return  The voltage as text.
+     */
+    String formatVoltage(int k) {
+        return labels[k];
+    }
+
+    /**
+     * Resamples every curve of a store.
+     *
+     * @param curves    The curves.
+     * @return          The current density of each curve at each grid voltage, indexed by curve and then by grid
+     *                  index, NaN outside the measured range.
+     */
+    double[][] resample(final CurveStore curves) {
+
+        final int numCurves = curves.getNumCurves();
+        final double[][] results = new double[numCurves][];
+
+        Chunks.run(pool, threads, "jv-resampler", numCurves, CHUNK, new Chunks.Task() {
+            public void run(int from, int to) {
+                resample(curves, results, from, to);
+            }
+        });
+
+        return results;
+    }
+
+    /**
+     * Returns the number of decimal places to print the resampled currents of each curve with, the most any of its
+     * points was read with, so resampling adds no digits the instrument did not measure.
+     *
+     * @param curves    The curves.
+     * @return          The decimal places of each curve.
+     */
+    static int[] currentScales(CurveStore curves) {
+
+        int[] scales = new int[curves.getNumCurves()];
+        for (int i = 0; i < scales.length; i++) {
+            for (int k = 0; k < curves.getNumPoints(i); k++)
+                scales[i] = Math.max(scales[i], curves.getCurrentScale(i, k));
+        }
+
+        return scales;
+    }
+
+    /*
+    Resamples a range of curves, reusing one set of scratch arrays for all of them.
+     */
+    private void resample(CurveStore curves, double[][] results, int from, int to) {
+
+        int biggest = 0;
+        for (int i = from; i < to; i++)
+            biggest = Math.max(biggest, curves.getNumPoints(i));
+
+        double[] v = new double[biggest];
+        double[] j = new double[biggest];
+        double[] m = new double[biggest];
+
+        for (int i = from; i < to; i++) {
+            int n = curves.getNumPoints(i);
+            for (int k = 0; k < n; k++) {
+                v[k] = curves.getVoltage(i, k);
+                j[k] = curves.getCurrent(i, k);
+            }
+            results[i] = new double[grid.length];
+            resample(v, j, m, n, grid, results[i]);
+        }
+    }
+
+    /**
+     * Resamples one curve. The arrays are reordered and overwritten in place.
+     *
+     * @param v     The voltages.
+     * @param j     The current densities.
+     * @param m     Scratch space for the tangents, of at least n values.
+     * @param n     The number of points.
+     * @param grid  The voltages to resample at, ascending.
+     * @param out   The current density at each grid voltage, NaN outside the measured range.
+     */
+    static void resample(double[] v, double[] j, double[] m, int n, double[] grid, double[] out) {
+
+        JVAnalyzer.sortByVoltage(v, j, n);
+        n = mergeDuplicates(v, j, n);
+        tangents(v, j, m, n);
+
+        int k = 0;
+        for (int g = 0; g < grid.length; g++) {
+            double x = grid[g];
+            if (n == 0 || x < v[0] || x > v[n - 1]) {
+                out[g] = Double.NaN;
+                continue;
+            }
+            if (n == 1) {
+                out[g] = j[0];
+                continue;
+            }
+
+            // the grid is ascending, so the segment only moves forward
+            while (k < n - 2 && v[k + 1] <= x)
+                k++;
+
+            // cubic Hermite on the segment, written from the left point so a flat segment stays exactly flat
+            double h = v[k + 1] - v[k];
+            double t = (x - v[k]) / h, u = 1 - t;
+            out[g] = j[k] + t * t * (3 - 2 * t) * (j[k + 1] - j[k]) + h * t * u * (u * m[k] - t * m[k + 1]);
+        }
+    }
+
+    /*
+    Averages runs of points at the same voltage into one, returning the new number of points.
+     */
+    private static int mergeDuplicates(double[] v, double[] j, int n) {
+
+        int w = 0;
+        for (int r = 0; r < n; ) {
+            int end = r + 1;
+            double sum = j[r];
+            while (end < n && v[end] == v[r])
+                sum += j[end++];
+            v[w] = v[r];
+            j[w] = sum / (end - r);
+            w++;
+            r = end;
+        }
+
+        return w;
+    }
+
+    /*
+    Fritsch-Carlson tangents: three point secant averages, zeroed at local extrema and scaled down where they would
+    make the cubic overshoot.
+     */
+    private static void tangents(double[] v, double[] j, double[] m, int n) {
+
+        if (n < 2) {
+            if (n == 1)
+                m[0] = 0;
+            return;
+        }
+
+        // secant slopes into m[k] for now, tangents are the average of neighbouring secants
+        double previous = (j[1] - j[0]) / (v[1] - v[0]);
+        m[0] = previous;
+        for (int k = 1; k < n - 1; k++) {
+            double next = (j[k + 1] - j[k]) / (v[k + 1] - v[k]);
+            m[k] = previous * next <= 0 ? 0 : (previous + next) / 2;
+            previous = next;
+        }
+        m[n - 1] = previous;
+
+        // limit the tangents of each segment to the monotone region
+        for (int k = 0; k < n - 1; k++) {
+            double d = (j[k + 1] - j[k]) / (v[k + 1] - v[k]);
+            if (d == 0) {
+                m[k] = 0;
+                m[k + 1] = 0;
+                continue;
+            }
+            double a = m[k] / d, b = m[k + 1] / d;
+            double s = a * a + b * b;
+            if (s > 9) {
+                double tau = 3 / Math.sqrt(s);
+                m[k] = tau * a * d;
+                m[k + 1] = tau * b * d;
+            }
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package csu.physics.pv;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.regex.Pattern;
+
+/**
+ * Import daemon for callers that import one measurement at a time, eg. a LIMS, so each import runs in a warm JVM
+ * instead of paying for startup, class loading and JIT warm-up. It serves HTTP on the loopback interface only, and
+ * files are parsed on one pool of worker threads started up front and shared by all requests.
+ *
+ * POST /import takes a JSON request:
+ * <pre>
+ * {"files": [{"name": "cell1_jvl.txt", "contents": "..."}, {"path": "/data/day1.zip"}, "/data/cell2_jvl.txt"],
+ *  "format": "auto", "curves": true, "summary": true, "analysis": false, "groups": false, "groupBy": "^(.+?)_\\d+$",
+ *  "grid": "-0.2:1.0:0.01", "output": "json"}
+ * </pre>
+ * Files are given by contents or by path, paths being read as on the command line, archives included. Only "files" is
+ * required, the other members default to the values shown except that there is no grid and "groupBy" defaults to
+ * {@link GroupStats#DEFAULT_PATTERN}. The response is
+ * <pre>
+ * {"batches": [{"format": "physics", "files": ["cell1_jvl.txt", ...], "tables": {"curves": [...], ...}}],
+ *  "rejected": [...], "elapsedMs": 4.2}
+ * </pre>
+ * with one batch per format found and the tables in the layout of {@link JsonTableWriter}. With "output": "binary"
+ * the response is the format of {@link JVBinaryWriter} instead, for requests of one format.
+ *
+ * Requests are batched by posting a JSON array of requests, answered by an array of responses in the same order, each
+ * with its own elapsed time. Every response also has the time of the whole HTTP request in an X-Elapsed-Ms header.
+ * Errors are answered with a status of 400 (bad request), 413 (too large), 422 (files not of a known format or not
+ * readable) or 500 (internal error) and a body of {"error": "..."}. GET /health answers {"status": "ok"}.
+ *
+ * As paths on this machine are read, requests from a browser are refused: the Host header must be localhost or
+ * 127.0.0.1, with the port if any of this server (403 otherwise), against DNS rebinding, and POST /import must have a
+ * Content-Type of application/json (415 otherwise), which a page cannot send to another origin without a preflight.
+ */
+class JVServer implements Closeable {
+
+    /**
+     * Largest request body accepted.
+     */
+    static final int MAX_REQUEST_BYTES = 256 << 20;
+
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final HttpServer http;
+    private final ThreadPoolExecutor handlers;      // one thread per request in progress
+    private final ThreadPoolExecutor workers;       // the warm pool files are parsed on
+    private final int threads;
+    private final JVFormats formats;
+    private ParseCache cache;
+    private PrintStream log;
+
+    /**
+     * Constructor, binding the port and starting the worker threads. Requests are served once started.
+     *
+     * @param port      The port on the loopback interface, 0 for any free port.
+     * @param threads   The number of files parsed at the same time, and of requests served at the same time.
+     * @throws IOException  If the port cannot be bound.
+     */
+    JVServer(int port, int threads) throws IOException {
+
+        this.threads = Math.max(1, threads);
+        formats = JVFormats.defaults();
+
+        workers = JVReader.newPool(this.threads);
+        workers.prestartAllCoreThreads();
+        handlers = (ThreadPoolExecutor) Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "jv-server");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.setExecutor(handlers);
+        http.createContext("/import", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange, true);
+            }
+        });
+        http.createContext("/health", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange, false);
+            }
+        });
+    }
+
+    /**
+     * Sets the cache parsed files are loaded from and stored to, or null to always parse.
+     *
+     * @param cache The cache.
+     */
+    void setCache(ParseCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the stream a line is logged to for each request, with its status and elapsed time, or null for none.
+     *
+     * @param log   The stream.
+     */
+    void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * Returns the port requests are served on.
+     *
+     * @return  The port.
+     */
+    int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /**
+     * Starts serving requests, on background threads.
+     */
+    void start() {
+        http.start();
+    }
+
+    /**
+     * Stops serving, dropping requests in progress, and stops the worker threads.
+     */
+    @Override
+    public void close() {
+        http.stop(0);
+        handlers.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /*
+    Answers one HTTP request, always with a complete response: the body is built in memory first so a failure halfway
+    is still answered with an error status.
+     */
+    private void serve(HttpExchange exchange, boolean isImport) throws IOException {
+
+        long start = System.nanoTime();
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        String type = JSON;
+        int status = 200;
+        int files = 0;
+
+        try {
+            if (!isLocalHost(exchange.getRequestHeaders().getFirst("Host")))
+                throw new HttpError(403, "Only served to localhost");
+            if (!path.equals(isImport ? "/import" : "/health"))
+                throw new HttpError(404, "No such resource " + path);
+            if (!method.equals(isImport ? "POST" : "GET"))
+                throw new HttpError(405, "Use " + (isImport ? "POST" : "GET") + " for " + path);
+            if (isImport && !isJson(exchange.getRequestHeaders().getFirst("Content-Type")))
+                throw new HttpError(415, "Use a Content-Type of application/json");
+
+            if (isImport) {
+                Object request = JsonReader.parse(readBody(exchange.getRequestBody()));
+                if (request instanceof List) {
+                    Writer out = writer(body);
+                    out.write('[');
+                    List<?> batch = (List<?>) request;
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (i > 0)
+                            out.write(',');
+                        files += importJson(members(batch.get(i)), out);
+                    }
+                    out.write(']');
+                    out.flush();
+                } else {
+                    Map<String, Object> members = members(request);
+                    if (text(members, "output", "json").equals("binary")) {
+                        files = importBinary(members, body);
+                        type = "application/octet-stream";
+                    } else {
+                        Writer out = writer(body);
+                        files = importJson(members, out);
+                        out.flush();
+                    }
+                }
+            } else {
+                body.write("{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (HttpError e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (IOException e) {
+            status = 422;
+            body = error("Cannot read input: " + e.getMessage());
+        } catch (RuntimeException e) {
+            status = 422;
+            body = error("Invalid input: " + e.getMessage());
+        } catch (Error e) {
+            // still answered, so the client is not left waiting, eg. after running out of memory
+            status = 500;
+            body = error("Internal error: " + e);
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e6;
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.getResponseHeaders().set("X-Elapsed-Ms", String.format(Locale.US, "%.3f", elapsed));
+        exchange.sendResponseHeaders(status, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+
+        if (log != null)
+            log.println(String.format(Locale.US, "%s %s %d, %d files, %.1f ms", method, path, status, files, elapsed));
+    }
+
+    /*
+    Imports the files of one request and writes its JSON response, returning the number of files imported.
+     */
+    private int importJson(Map<String, Object> request, Writer out) throws IOException {
+
+        long start = System.nanoTime();
+        if (text(request, "output", "json").equals("binary"))
+            throw new IllegalArgumentException("Binary output cannot be batched");
+
+        JVReader reader = new JVReader();
+        ArrayList<Boolean> printOptions = printOptions(request);
+        JVResampler resampler = request.get("grid") == null ? null : JVResampler.parse(text(request, "grid", null));
+        Pattern groupPattern = Pattern.compile(text(request, "groupBy", GroupStats.DEFAULT_PATTERN));
+        ArrayList<JVData> batches = read(request, reader, JVWriter.needsCurves(printOptions));
+
+        int files = 0;
+        out.write("{\"batches\":[");
+        for (int i = 0; i < batches.size(); i++) {
+            JVData data = batches.get(i);
+            out.write(i > 0 ? ",{\"format\":" : "{\"format\":");
+            out.write(JsonLinesTableWriter.quote(data.getFormatName()));
+            out.write(",\"files\":");
+            writeNames(out, data.getFileNames());
+            out.write(",\"tables\":");
+
+            JVWriter writer = new JVWriter(data);
+            writer.setPrintOptions(printOptions);
+            writer.setResampler(resampler);
+            writer.setGroupPattern(groupPattern);
+            writer.setThreads(threads);
+            writer.setPool(workers);
+            writer.write(new JsonTableWriter(out));
+            out.write('}');
+            files += data.getFileNames().length;
+        }
+
+        out.write("],\"rejected\":");
+        ArrayList<String> rejected = new ArrayList<>();
+        for (File file : reader.getRejectedFiles())
+            rejected.add(file.getPath());
+        writeNames(out, rejected.toArray(new String[rejected.size()]));
+        out.write(String.format(Locale.US, ",\"elapsedMs\":%.3f}", (System.nanoTime() - start) / 1e6));
+
+        return files;
+    }
+
+    /*
+    Imports the files of one request into the binary format, returning the number of files imported.
+     */
+    private int importBinary(Map<String, Object> request, OutputStream out) throws IOException {
+
+        if (request.get("grid") != null)
+            throw new IllegalArgumentException("A grid cannot be used with binary output");
+
+        ArrayList<JVData> batches = read(request, new JVReader(), true);
+        if (batches.size() > 1)
+            throw new HttpError(422, "Binary output holds one format, the files are of " + batches.size());
+
+        JVBinaryWriter.write(batches.get(0), Channels.newChannel(out));
+        return batches.get(0).getFileNames().length;
+    }
+
+    /*
+    Reads the files of a request on the worker pool, with the format asked for or the format detected for each file.
+     */
+    private ArrayList<JVData> read(Map<String, Object> request, JVReader reader, boolean readCurves)
+            throws IOException {
+
+        reader.setPool(workers);
+        reader.setThreads(threads);
+        reader.setCache(cache);
+        reader.setReadCurves(readCurves);
+
+        String format = text(request, "format", "auto");
+        if (!format.equals("auto") && formats.get(format) == null)
+            throw new IllegalArgumentException("Unknown format " + format);
+
+        // the files, each given by path or by contents
+        if (!(request.get("files") instanceof List) || ((List<?>) request.get("files")).isEmpty())
+            throw new IllegalArgumentException("No files given");
+        List<?> list = (List<?>) request.get("files");
+        File[] paths = new File[list.size()];
+        JVInput[] given = new JVInput[list.size()];
+        for (int i = 0; i < paths.length; i++) {
+            Object file = list.get(i);
+            if (file instanceof String) {
+                paths[i] = new File((String) file);
+                continue;
+            }
+            Map<String, Object> members = members(file);
+            if (members.get("path") != null) {
+                paths[i] = new File(text(members, "path", null));
+            } else {
+                String name = text(members, "name", null);
+                String contents = text(members, "contents", null);
+                if (name == null || contents == null)
+                    throw new IllegalArgumentException("A file needs a path, or a name and contents");
+                paths[i] = new File(name);
+                given[i] = JVInput.of(paths[i], name, contents.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        ArrayList<JVData> batches;
+        if (format.equals("auto")) {
+            batches = reader.read(new JVInput.Listing(paths, given), formats);
+            if (batches.isEmpty())
+                throw new HttpError(422, "No files of a known format");
+        } else {
+            JVData data = formats.get(format).newInstance();
+            if (!reader.read(new JVInput.Listing(paths, given), data))
+                throw new HttpError(422, "Files are not all of the " + format + " format");
+            batches = new ArrayList<>();
+            batches.add(data);
+        }
+
+        return batches;
+    }
+
+    /*
+    Whether a Host header names this server on the loopback interface. Any other name is a page in a browser reaching
+    the server through DNS rebinding.
+     */
+    private boolean isLocalHost(String host) {
+
+        if (host == null)
+            return false;
+        int colon = host.lastIndexOf(':');
+        String name = colon < 0 ? host : host.substring(0, colon);
+        if (colon >= 0 && !host.substring(colon + 1).equals(String.valueOf(getPort())))
+            return false;
+
+        return name.equalsIgnoreCase("localhost") || name.equals("127.0.0.1");
+    }
+
+    /*
+    Whether a Content-Type is JSON, which a browser cannot post across origins without a preflight request.
+     */
+    private static boolean isJson(String contentType) {
+
+        if (contentType == null)
+            return false;
+        int semicolon = contentType.indexOf(';');
+        String media = semicolon < 0 ? contentType : contentType.substring(0, semicolon);
+
+        return media.trim().equalsIgnoreCase("application/json");
+    }
+
+    private static ArrayList<Boolean> printOptions(Map<String, Object> request) {
+        ArrayList<Boolean> options = new ArrayList<>();
+        options.add(flag(request, "curves", true));
+        options.add(flag(request, "summary", true));
+        options.add(flag(request, "analysis", false));
+        options.add(flag(request, "groups", false));
+        return options;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> members(Object value) {
+        if (!(value instanceof Map))
+            throw new IllegalArgumentException("Expected a JSON object");
+        return (Map<String, Object>) value;
+    }
+
+    private static boolean flag(Map<String, Object> members, String name, boolean fallback) {
+        Object value = members.get(name);
+        if (value != null && !(value instanceof Boolean))
+            throw new IllegalArgumentException("\"" + name + "\" must be true or false");
+        return value == null ? fallback : (Boolean) value;
+    }
+
+    private static String text(Map<String, Object> members, String name, String fallback) {
+        Object value = members.get(name);
+        if (value != null && !(value instanceof String))
+            throw new IllegalArgumentException("\"" + name + "\" must be a string");
+        return value == null ? fallback : (String) value;
+    }
+
+    private static void writeNames(Writer out, String[] names) throws IOException {
+        out.write('[');
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0)
+                out.write(',');
+            out.write(JsonLinesTableWriter.quote(names[i]));
+        }
+        out.write(']');
+    }
+
+    private static Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private static ByteArrayOutputStream error(String message) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] bytes = ("{\"error\":" + JsonLinesTableWriter.quote(String.valueOf(message)) + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        body.write(bytes, 0, bytes.length);
+        return body;
+    }
+
+    /*
+    Reads a request body as UTF-8, refusing bodies over MAX_REQUEST_BYTES.
+     */
+    private static String readBody(InputStream in) throws IOException {
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buf = new byte[1 << 16];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            if (body.size() + n > MAX_REQUEST_BYTES)
+                throw new HttpError(413, "Request larger than " + (MAX_REQUEST_BYTES >> 20) + " MB");
+            body.write(buf, 0, n);
+        }
+
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /*
+    A failed request answered with the given status.
+     */
+    private static final class HttpError extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
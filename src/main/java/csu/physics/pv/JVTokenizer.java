@@ -0,0 +1,322 @@
+package csu.physics.pv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Arrays.copyOf;
+
+/**
+ * Scans the raw bytes of a J-V file. Header lines are returned as strings, while curve lines are tokenized straight
+ * from the byte buffer into primitives without allocating anything per line. Input is expected to be ASCII, tab
+ * separated, with either CRLF or LF line endings.
+ *
+ * Each number is decoded into its decimal digits and power of ten, as the fixed point unscaled value and scale of
+ * {@link CurveStore}: the number of decimal places as printed (in the sense of {@link BigDecimal#scale()}) is kept,
+ * allowing values to be written back exactly as read.
+ */
+class JVTokenizer {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int FIRST_READ = 1 << 12;     // enough for the header, so header-only parses read little
+
+    // powers of ten that fit in a long
+    private static final long[] POWERS = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L, 10000000000L,
+            100000000000L, 1000000000000L, 10000000000000L, 100000000000000L, 1000000000000000L,
+            10000000000000000L, 100000000000000000L, 1000000000000000000L
+    };
+    private static final MathContext DIGITS = new MathContext(CurveStore.MAX_DIGITS, RoundingMode.HALF_EVEN);
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos;        // start of the unread bytes
+    private int limit;      // end of the valid bytes in buf
+    private boolean eof;
+    private int readSize;   // bytes asked for by the next read, doubled up to the buffer size
+
+    // the last point read by nextPoint(), unscaled
+    private long voltage, current;
+    private int voltageScale, currentScale;
+
+    // the last number read by parseNumber()
+    private long unscaled;
+    private int scale;
+
+    /**
+     * Constructor.
+     *
+     * @param in    The stream to read, which is not closed by the tokenizer.
+     */
+    JVTokenizer(InputStream in) {
+        this.in = in;
+        buf = new byte[BUFFER_SIZE];
+        readSize = FIRST_READ;
+    }
+
+    /**
+     * Constructor for contents that are already in memory.
+     *
+     * @param bytes     The contents of a file.
+     * @param length    The number of valid bytes.
+     */
+    JVTokenizer(byte[] bytes, int length) {
+        in = null;
+        buf = bytes;
+        limit = length;
+        eof = true;
+    }
+
+    /**
+     * Reads the next line as a string, without the line terminator.
+     *
+     * @return  The line, or null at the end of the input.
+     * @throws IOException  If the input could not be read.
+     */
+    String readLine() throws IOException {
+
+        int eol = findLineEnd();
+        if (eol < 0)
+            return null;
+
+        int end = eol > pos && buf[eol - 1] == '\r' ? eol - 1 : eol;
+        String line = new String(buf, pos, end - pos, StandardCharsets.ISO_8859_1);
+        pos = Math.min(eol + 1, limit);
+
+        return line;
+    }
+
+    /**
+     * Makes sure the next bytes of the input are buffered without consuming them, up to the given length or the end
+     * of the input. The bytes are found in {@link JVTokenizer#getBuffer()} from {@link JVTokenizer#getPosition()}.
+     *
+     * @param length    The number of bytes wanted.
+     * @return          The number of bytes available, less than length only at the end of the input.
+     * @throws IOException  If the input could not be read.
+     */
+    int peek(int length) throws IOException {
+
+        while (limit - pos < length && !eof)
+            fill();
+
+        return Math.min(length, limit - pos);
+    }
+
+    byte[] getBuffer() {
+        return buf;
+    }
+
+    int getPosition() {
+        return pos;
+    }
+
+    /**
+     * Reads the next curve line, skipping blank lines. The voltage and current are available from
+     * {@link JVTokenizer#getVoltage()} and {@link JVTokenizer#getCurrent()} until the next call.
+     *
+     * @param currentShift  Power of ten the current is multiplied by, for unit conversion.
+     * @return              False at the end of the input.
+     * @throws IOException  If the input could not be read.
+     * @throws NumberFormatException    If the line is not two tab separated numbers.
+     */
+    boolean nextPoint(int currentShift) throws IOException {
+
+        // skip blank lines
+        int eol, end;
+        while (true) {
+            eol = findLineEnd();
+            if (eol < 0)
+                return false;
+            end = trimEnd(pos, eol);
+            if (end > pos)
+                break;
+            pos = Math.min(eol + 1, limit);
+        }
+
+        // voltage, then any separating whitespace, then current
+        int p = parseNumber(pos, end, 0);
+        voltage = unscaled;
+        voltageScale = scale;
+
+        if (p == end || (buf[p] != '\t' && buf[p] != ' '))
+            throw lineError(pos, end);
+        while (p < end && (buf[p] == '\t' || buf[p] == ' '))
+            p++;
+
+        p = parseNumber(p, end, currentShift);
+        current = unscaled;
+        currentScale = scale;
+        if (p != end)
+            throw lineError(pos, end);
+
+        pos = Math.min(eol + 1, limit);
+        return true;
+    }
+
+    double getVoltage() {
+        return CurveStore.toDouble(voltage, voltageScale);
+    }
+
+    long getUnscaledVoltage() {
+        return voltage;
+    }
+
+    int getVoltageScale() {
+        return voltageScale;
+    }
+
+    double getCurrent() {
+        return CurveStore.toDouble(current, currentScale);
+    }
+
+    long getUnscaledCurrent() {
+        return current;
+    }
+
+    int getCurrentScale() {
+        return currentScale;
+    }
+
+    /*
+    Parses a decimal number starting at p, with optional sign, fraction and exponent, setting unscaled and scale. The
+    value is multiplied by 10^shift, which multiplies the unscaled value and leaves the scale untouched just like
+    BigDecimal.multiply(10^shift), or if that would not fit in a long lowers the scale instead. Returns the index
+    following the number.
+     */
+    private int parseNumber(int p, int end, int shift) {
+
+        int start = p;
+        boolean negative = false;
+        if (p < end && (buf[p] == '-' || buf[p] == '+'))
+            negative = buf[p++] == '-';
+
+        long mantissa = 0;
+        int digits = 0;         // significant digits in the mantissa
+        int fraction = 0;       // digits after the decimal point
+        boolean any = false;
+        boolean point = false;
+
+        for (; p < end; p++) {
+            byte b = buf[p];
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (point)
+                    fraction++;
+                if (mantissa != 0 || b != '0')
+                    digits++;
+                if (digits <= 18)
+                    mantissa = mantissa * 10 + (b - '0');
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+
+        if (!any)
+            throw lineError(start, end);
+
+        int exponent = 0;
+        if (p < end && (buf[p] == 'e' || buf[p] == 'E')) {
+            p++;
+            boolean negExp = false;
+            if (p < end && (buf[p] == '-' || buf[p] == '+'))
+                negExp = buf[p++] == '-';
+            int expStart = p;
+            while (p < end && buf[p] >= '0' && buf[p] <= '9' && p - expStart < 9)
+                exponent = exponent * 10 + (buf[p++] - '0');
+            if (p == expStart)
+                throw lineError(start, end);
+            if (negExp)
+                exponent = -exponent;
+        }
+
+        long value = negative ? -mantissa : mantissa;
+        long newScale = fraction - (long) exponent;
+
+        // more digits than a long holds, rounded like a BigDecimal would
+        if (digits > CurveStore.MAX_DIGITS) {
+            BigDecimal rounded = new BigDecimal(new String(buf, start, p - start, StandardCharsets.ISO_8859_1))
+                    .round(DIGITS);
+            value = rounded.unscaledValue().longValue();
+            newScale = rounded.scale();
+            digits = rounded.precision();
+        }
+
+        if (shift > 0 && digits + shift <= CurveStore.MAX_DIGITS)
+            value *= POWERS[shift];
+        else
+            newScale -= shift;
+
+        if (newScale < Byte.MIN_VALUE || newScale > Byte.MAX_VALUE)
+            throw lineError(start, end);
+
+        unscaled = value;
+        scale = (int) newScale;
+        return p;
+    }
+
+    /*
+    Returns the index of the next '\n' (or of the end of the input for a last line without one), reading more input if
+    needed, or -1 if there is no more input.
+     */
+    private int findLineEnd() throws IOException {
+
+        int scan = pos;
+        while (true) {
+            for (int i = scan; i < limit; i++) {
+                if (buf[i] == '\n')
+                    return i;
+            }
+
+            if (eof)
+                return pos < limit ? limit : -1;
+
+            scan = limit - pos;
+            fill();
+            scan += pos;
+        }
+    }
+
+    /*
+    Moves the unread bytes to the start of the buffer, growing it for overlong lines, and reads more input. The first
+    reads are small and grow to the buffer size, so a parse that stops after the header does not read the whole file.
+     */
+    private void fill() throws IOException {
+
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length)
+            buf = copyOf(buf, buf.length * 2);
+
+        int n = in.read(buf, limit, Math.min(buf.length - limit, readSize));
+        readSize = Math.min(readSize * 2, BUFFER_SIZE);
+        if (n < 0)
+            eof = true;
+        else
+            limit += n;
+    }
+
+    /*
+    Returns the end of the line once trailing '\r' and whitespace are dropped.
+     */
+    private int trimEnd(int start, int end) {
+        while (end > start && (buf[end - 1] == '\r' || buf[end - 1] == ' ' || buf[end - 1] == '\t'))
+            end--;
+        return end;
+    }
+
+    private NumberFormatException lineError(int start, int end) {
+        int eol = start;
+        while (eol < limit && buf[eol] != '\n')
+            eol++;
+        return new NumberFormatException("Invalid J-V data line: "
+                + new String(buf, start, trimEnd(start, Math.max(eol, end)) - start, StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,303 @@
+package csu.physics.pv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches a folder that measurement stations write J-V files into, and imports each new .txt file as soon as it has
+ * been fully written. A file counts as fully written once its size has not changed for a quiet period. Parsed files
+ * are appended to a running {@link JVData} per format, and the output of each format with new files is rewritten, so
+ * the results are only seconds behind the instrument. As a rewrite takes longer the more files the output holds, the
+ * next rewrite waits {@link JVWatcher#WRITE_BACKOFF} times as long as the last one took, batching the files settled
+ * meanwhile, so rewriting takes a bounded share of the time instead of growing quadratically over a long watch.
+ *
+ * Outputs are always named per format (see {@link JVWriter#formatFile(File, JVData)}), since a folder can start
+ * receiving a second format at any time. {@link JVWriter#write(File)} moves each output into place once complete, so
+ * readers never see a partial table. Files already in the folder are imported on start, and files changed after they
+ * were imported are not imported again. A file that cannot be read is skipped and an output that cannot be written
+ * is tried again later, so neither ends the watch.
+ */
+class JVWatcher {
+
+    private static final long POLL_MILLIS = 250;
+
+    /**
+     * How many times the duration of the last rewrite of the outputs passes before the next one.
+     */
+    static final int WRITE_BACKOFF = 4;
+
+    private final Path dir;
+    private final JVFormats formats;
+    private final File output;
+    private final ArrayList<Boolean> printOptions;
+    private final PrintStream log;
+
+    private long quietMillis;
+    private int threads;
+    private Pattern groupPattern;
+
+    private final LinkedHashMap<String, JVData> batches;           // running data of each format
+    private final HashMap<String, ArrayList<String>> names;         // file names of each format, in import order
+    private final LinkedHashMap<Path, long[]> pending;              // file -> {size, time of last change}
+    private final HashSet<Path> seen;                               // files imported or rejected
+    private final HashSet<String> unwritten;                        // formats with files not yet written
+    private long nextWrite;                                         // earliest time of the next rewrite
+
+    private volatile boolean running;
+
+    /**
+     * Constructor.
+     *
+     * @param dir           The folder to watch.
+     * @param formats       The formats new files are detected from.
+     * @param output        The output file, which gets the format name added.
+     * @param printOptions  The print options, see {@link JVWriter#setPrintOptions(ArrayList)}.
+     * @param log           Stream for progress messages.
+     */
+    JVWatcher(Path dir, JVFormats formats, File output, ArrayList<Boolean> printOptions, PrintStream log) {
+        this.dir = dir;
+        this.formats = formats;
+        this.output = output;
+        this.printOptions = printOptions;
+        this.log = log;
+        quietMillis = 2000;
+        threads = Runtime.getRuntime().availableProcessors();
+        batches = new LinkedHashMap<>();
+        names = new HashMap<>();
+        pending = new LinkedHashMap<>();
+        seen = new HashSet<>();
+        unwritten = new HashSet<>();
+        nextWrite = System.nanoTime();
+    }
+
+    /**
+     * Sets how long a file's size must stay unchanged before it is considered fully written.
+     *
+     * @param millis    The quiet period in milliseconds.
+     */
+    void setQuietMillis(long millis) {
+        quietMillis = millis;
+    }
+
+    /**
+     * Sets the number of threads new files are read on and the outputs are computed on, the number of cores by
+     * default.
+     *
+     * @param threads   The number of threads.
+     */
+    void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets how files are grouped into samples for the statistics table, see {@link JVWriter#setGroupPattern(Pattern)}.
+     *
+     * @param pattern   The grouping pattern, or null for {@link GroupStats#DEFAULT_PATTERN}.
+     */
+    void setGroupPattern(Pattern pattern) {
+        groupPattern = pattern;
+    }
+
+    /**
+     * Watches the folder until {@link JVWatcher#stop()} is called or the thread is interrupted.
+     *
+     * @throws IOException  If the folder cannot be watched.
+     */
+    void run() throws IOException {
+
+        WatchService watcher = dir.getFileSystem().newWatchService();
+        running = true;
+
+        try {
+            dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+
+            // files that are already there
+            try (DirectoryStream<Path> existing = Files.newDirectoryStream(dir, "*.txt")) {
+                TreeSet<Path> sorted = new TreeSet<>();
+                for (Path path : existing)
+                    sorted.add(path);
+                for (Path path : sorted)
+                    touch(path);
+            }
+
+            while (running) {
+
+                WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW)
+                            continue;
+                        Path path = dir.resolve((Path) event.context());
+                        if (path.getFileName().toString().endsWith(".txt"))
+                            touch(path);
+                    }
+                    key.reset();
+                }
+
+                importSettled();
+                writeOutputs(false);
+            }
+
+            // the files imported since the last rewrite
+            writeOutputs(true);
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        } finally {
+            running = false;
+            watcher.close();
+        }
+    }
+
+    /**
+     * Stops watching. The files already imported stay in the outputs.
+     */
+    void stop() {
+        running = false;
+    }
+
+    /*
+    Records that a file was created or changed.
+     */
+    private void touch(Path path) {
+
+        path = path.toAbsolutePath().normalize();
+        if (seen.contains(path))
+            return;
+
+        long size = path.toFile().length();
+        long[] state = pending.get(path);
+        if (state == null || state[0] != size)
+            pending.put(path, new long[]{size, System.nanoTime()});
+    }
+
+    /*
+    Imports the pending files whose size has not changed for the quiet period, in the order they appeared.
+     */
+    private void importSettled() throws IOException {
+
+        ArrayList<File> settled = new ArrayList<>();
+        long now = System.nanoTime();
+
+        Iterator<Map.Entry<Path, long[]>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, long[]> entry = it.next();
+            File file = entry.getKey().toFile();
+            long[] state = entry.getValue();
+
+            if (!file.exists()) {
+                it.remove();
+            } else if (file.length() != state[0]) {
+                state[0] = file.length();
+                state[1] = now;
+            } else if (now - state[1] >= TimeUnit.MILLISECONDS.toNanos(quietMillis)) {
+                settled.add(file);
+                seen.add(entry.getKey());
+                it.remove();
+            }
+        }
+
+        if (settled.isEmpty())
+            return;
+
+        // parse the new files and append them to the running data of their format
+        JVReader reader = new JVReader();
+        reader.setThreads(threads);
+        reader.setReadCurves(JVWriter.needsCurves(printOptions));
+        int skipped = 0;
+        try {
+            skipped = append(reader, settled.toArray(new File[settled.size()]));
+        } catch (IOException e) {
+            // one unreadable file fails the whole read, so read the files one at a time to import the others
+            for (File file : settled) {
+                try {
+                    skipped += append(reader, new File[]{file});
+                } catch (IOException f) {
+                    log.println("Skipped " + file.getName() + ", " + f.getMessage());
+                    skipped++;
+                    // a file that is gone is imported if it is written again
+                    if (!file.exists())
+                        seen.remove(file.toPath());
+                }
+            }
+        }
+
+        log.println("Imported " + (settled.size() - skipped) + " new file(s)");
+    }
+
+    /*
+    Reads files and appends them to the running data of their format, returning the number of files of no known
+    format.
+     */
+    private int append(JVReader reader, File[] files) throws IOException {
+
+        for (JVData part : reader.read(files, formats)) {
+            String format = part.getFormatName();
+            if (!batches.containsKey(format)) {
+                batches.put(format, part.newInstance());
+                names.put(format, new ArrayList<String>());
+            }
+            batches.get(format).append(part);
+            names.get(format).addAll(Arrays.asList(part.getFileNames()));
+            unwritten.add(format);
+        }
+
+        for (File rejected : reader.getRejectedFiles())
+            log.println("Skipped " + rejected.getName() + ", unknown format");
+
+        return reader.getRejectedFiles().size();
+    }
+
+    /*
+    Rewrites the outputs of the formats with new files, once the back-off after the last rewrite has passed or when
+    forced. An output that cannot be written is tried again with the next rewrite.
+     */
+    private void writeOutputs(boolean force) {
+
+        long start = System.nanoTime();
+        if (unwritten.isEmpty() || (!force && start - nextWrite < 0))
+            return;
+
+        Iterator<String> it = unwritten.iterator();
+        while (it.hasNext()) {
+            String format = it.next();
+            ArrayList<String> batchNames = names.get(format);
+            JVData data = batches.get(format);
+            data.setFileNames(batchNames.toArray(new String[batchNames.size()]));
+            File file = JVWriter.formatFile(output, data);
+            try {
+                write(data, file);
+                it.remove();
+            } catch (IOException e) {
+                // the output is left as it was and written again with the next rewrite
+                log.println("Could not write " + file.getName() + ", " + e.getMessage());
+            }
+        }
+
+        long end = System.nanoTime();
+        nextWrite = end + WRITE_BACKOFF * (end - start);
+    }
+
+    /*
+    Writes the output of one format. JVWriter writes to a temporary file and moves it into place.
+     */
+    private void write(JVData data, File file) throws IOException {
+
+        // never import our own output
+        seen.add(file.toPath().toAbsolutePath().normalize());
+
+        JVWriter writer = new JVWriter(data);
+        writer.setPrintOptions(printOptions);
+        writer.setThreads(threads);
+        if (groupPattern != null)
+            writer.setGroupPattern(groupPattern);
+        if (!writer.write(file))
+            throw new IOException("Cannot write " + file);
+    }
+}
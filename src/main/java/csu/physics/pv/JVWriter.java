@@ -1,12 +1,18 @@
 package csu.physics.pv;
 
-import javax.swing.*;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Pattern;
 
 /**
  *  Takes an input {@link JVData} object and converts its contents into a string that is written to file.
@@ -15,6 +21,11 @@ class JVWriter {
 
     private JVData data;
     private ArrayList<Boolean> printOptions;
+    private JVResampler resampler;
+    private Pattern groupPattern = Pattern.compile(GroupStats.DEFAULT_PATTERN);
+    private String format = TableWriter.FORMATS[0];
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService pool;
 
     /**
      * Constructor.
@@ -31,6 +42,8 @@ class JVWriter {
      *
      * [0] - print curves?
      * [1] - print parameters?
+     * [2] - print parameters computed from the curves by {@link JVAnalyzer}? (optional, off if missing)
+     * [3] - print statistics of the parameters per sample, see {@link GroupStats}? (optional, off if missing)
      *
      * @param options   The list of boolean flags to set the file printing options.
      */
@@ -41,92 +54,355 @@ class JVWriter {
     }
 
     /**
-     * Writes sorted data to file according to the print options set. Prompts the user for a save location, and returns
-     * a boolean indicating if the write process was successful.
+     * Sets the voltage grid the curves table is resampled onto, or null to print the curves as read. On a grid the
+     * table has one voltage column followed by one current density column per file, see {@link JVResampler}.
      *
-     * @return  Boolean indicating if the write was successful.
+     * @param resampler The resampler holding the grid.
      */
-    boolean write() {
+    void setResampler(JVResampler resampler) {
 
-        boolean writeSuccess = false;
-        ArrayList<String> lines = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
+        this.resampler = resampler;
+
+    }
+
+    /**
+     * Sets how files are grouped into samples for the statistics table, see {@link GroupStats}.
+     *
+     * @param pattern   The grouping pattern, {@link GroupStats#DEFAULT_PATTERN} by default.
+     */
+    void setGroupPattern(Pattern pattern) {
+
+        groupPattern = pattern;
+
+    }
+
+    /**
+     * Sets the number of threads the tables computed from the data are computed on, the number of cores by default.
+     *
+     * @param threads   The number of threads, 1 to compute on the calling thread.
+     */
+    void setThreads(int threads) {
+
+        this.threads = Math.max(1, threads);
+
+    }
+
+    /**
+     * Sets a pool of worker threads the tables computed from the data are computed on, eg. one kept by a server for
+     * all its requests, or null to start a pool for each table. The pool is not shut down by the writer.
+     *
+     * @param pool  The pool, or null.
+     */
+    void setPool(ExecutorService pool) {
+
+        this.pool = pool;
+
+    }
+
+    /**
+     * Sets the layout of the output file, tab separated by default.
+     *
+     * @param format    The name of the layout, see {@link TableWriter#FORMATS}.
+     */
+    void setFormat(String format) {
+
+        this.format = format;
+
+    }
+
+    /**
+     * Checks if the given print options print anything computed from the curves, so readers can skip decoding the
+     * curves otherwise, see {@link JVData#setReadCurves(boolean)}.
+     *
+     * @param options   The print options, see {@link JVWriter#setPrintOptions(ArrayList)}.
+     * @return          Boolean indicating if the curves are needed.
+     */
+    static boolean needsCurves(ArrayList<Boolean> options) {
+        return options.isEmpty() || options.get(0) || (options.size() > 2 && options.get(2));
+    }
+
+    /**
+     * Returns the output file for one format of a mixed batch, with the format name added before the extension.
+     *
+     * @param file  The output file chosen for the batch.
+     * @param data  The data of one format.
+     * @return      The output file for the format.
+     */
+    static File formatFile(File file, JVData data) {
+
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String suffixed = dot > 0
+                ? name.substring(0, dot) + "_" + data.getFormatName() + name.substring(dot)
+                : name + "_" + data.getFormatName();
+
+        return new File(file.getParentFile(), suffixed);
+    }
+
+    /**
+     * Writes sorted data to file according to the print options set, and returns a boolean indicating if the write
+     * process was successful. The data is written to a temporary file next to the output and moved into place once
+     * complete, so a failed write never leaves a partial output file.
+     *
+     * @param file  The file to write to.
+     * @return      Boolean indicating if the write was successful.
+     */
+    boolean write(File file) {
+
+        boolean writeSuccess;
+        File temp = new File(file.getPath() + ".part");
+        JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.WRITE, file.getName());
+
+        // try writing data out
+        try {
+            try (Writer out = new BufferedWriter(new FileWriter(temp))) {
+                write(out);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            writeSuccess = true;
+        } catch (IOException e) {
+            temp.delete();
+            writeSuccess = false;
+        }
+
+        SpilledCurves spill = data.getSpill();
+        timer.stop(writeSuccess ? file.length() : 0, spill != null ? spill.getTotalPoints()
+                : data.getCurves().getTotalPoints());
+
+        // return the results
+        return writeSuccess;
+
+    }
+
+    /**
+     * Streams sorted data to a writer according to the print options set, in the layout set. The curves table is
+     * emitted row by row straight from the {@link CurveStore}, or from the {@link SpilledCurves} in bounded memory
+     * mode, so no copy of the output is built in memory.
+     *
+     * @param out   The writer to write to, which should be buffered.
+     * @throws IOException  If the data could not be written.
+     */
+    void write(Writer out) throws IOException {
+        write(TableWriter.create(format, out));
+    }
+
+    /**
+     * Streams sorted data through a table writer according to the print options set.
+     *
+     * @param table The table writer.
+     * @throws IOException  If the data could not be written.
+     */
+    void write(TableWriter table) throws IOException {
 
         // if curves is enabled for printing, write it
         if (printOptions != null && printOptions.size() > 0
                 && printOptions.get(0)) {
 
-            // write the file names first
-            for (int i = 0; i < data.getNumFiles(); i++) {
-                sb.append((data.getFileNames())[i].substring(0, data.getFileNames()[i].lastIndexOf(".txt"))).append("_X").append('\t');
-                sb.append((data.getFileNames())[i].substring(0, data.getFileNames()[i].lastIndexOf(".txt"))).append("_Y").append('\t');
+            CurveStore curves = data.getCurves();
+            int numFiles = data.getNumFiles();
+
+            // name the columns by file, after the shared voltage column on a grid
+            String[] fileNames = data.getFileNames();
+            ArrayList<String> columns = new ArrayList<>();
+            if (resampler != null)
+                columns.add("V");
+            for (int i = 0; i < numFiles; i++) {
+                String name = JVData.stripTxt(fileNames[i]);
+                if (resampler == null)
+                    columns.add(name + "_X");
+                columns.add(name + "_Y");
+            }
+            table.startTable(TableWriter.Table.CURVES, columns.toArray(new String[columns.size()]));
+
+            // write the curves data, merging spilled curves from disk a block of rows at a time
+            if (resampler != null)
+                writeResampled(table, resampler, data, threads, pool);
+            else if (data.getSpill() != null)
+                writeSpilled(table, data.getSpill());
+            else
+                writeCurves(table, curves, numFiles);
+
+            table.endTable();
+        }
+
+
+        // if parameters is enable for printing, write it
+        if (printOptions != null && printOptions.size() > 1
+                && printOptions.get(1)) {
+            table.startTable(TableWriter.Table.PARAMS, data.getParamNames());
+            for (int i = 0; i < data.params.size(); i++) {
+                table.startRow(JVData.stripTxt(data.lightFileNames.get(i)));
+                for (BigDecimal value : data.params.get(i))
+                    table.number(value.toString());
+                table.endRow();
+            }
+            table.endTable();
+        }
+
+        // if the statistics per sample are enabled for printing, summarize the parameters and write them
+        if (printOptions != null && printOptions.size() > 3
+                && printOptions.get(3)) {
+            GroupStats stats = GroupStats.of(data, groupPattern, threads, pool);
+            table.startTable(TableWriter.Table.GROUPS, stats.getHeaders());
+            for (String group : stats.getGroups()) {
+                table.startRow(group);
+                table.number(String.valueOf(stats.getCount(group)));
+                for (double value : stats.getStats(group))
+                    table.significant(value);
+                table.endRow();
             }
-            lines.add(sb.toString());
+            table.endTable();
+        }
 
-            // figure out which file has most J-V points (ie. max num of lines to print)
-            int biggest = 0;
-            for (ArrayList<BigDecimal> file : data.getCurves()) {
-                if (file.size() >= biggest)
-                    biggest = file.size();
+        // if the computed parameters are enabled for printing, analyze the curves and write them
+        if (printOptions != null && printOptions.size() > 2
+                && printOptions.get(2)) {
+            JVAnalyzer analyzer = new JVAnalyzer();
+            analyzer.setThreads(threads);
+            analyzer.setPool(pool);
+            double[][] results = data.getSpill() == null ? analyzer.analyze(data.getCurves())
+                    : analyzeSpilled(analyzer, data.getSpill());
+            table.startTable(TableWriter.Table.ANALYSIS, JVAnalyzer.HEADERS);
+            for (int i = 0; i < results.length; i++) {
+                table.startRow(JVData.stripTxt(data.getFileNames()[i]));
+                for (double value : results[i])
+                    table.significant(value);
+                table.endRow();
             }
+            table.endTable();
+        }
+
+        table.finish();
+
+    }
 
-            // write the curves data
-            ArrayList<BigDecimal> currData;
-            String voltage, current;
-            for (int i = 0; i < biggest / 2; i++) { // line number
+    /*
+    Writes the rows of the curves table from a CurveStore.
+     */
+    private static void writeCurves(TableWriter table, CurveStore curves, int numFiles) throws IOException {
 
-                sb = new StringBuilder();
-                for (int j = 0; j < data.getNumFiles(); j++) { // file number
+        // figure out which file has most J-V points (ie. max num of lines to print)
+        int biggest = curves.getMaxPoints();
 
-                    // get the curve data
-                    currData = data.getCurves().get(j);
+        // write the curves data
+        for (int i = 0; i < biggest; i++) { // line number
 
-                    // write the voltage and current, tab separated
-                    voltage = i < currData.size() / 2 ? currData.get(2 * i).toString() : "";
-                    current = i < currData.size() / 2 ? currData.get(2 * i + 1).toString() : "";
-                    sb.append(voltage).append('\t').append(current).append('\t');
+            table.startRow(null);
+            for (int j = 0; j < numFiles; j++) { // file number
 
+                // write the voltage and current
+                if (i < curves.getNumPoints(j)) {
+                    table.decimal(curves.getUnscaledVoltage(j, i), curves.getVoltageScale(j, i));
+                    table.decimal(curves.getUnscaledCurrent(j, i), curves.getCurrentScale(j, i));
+                } else {
+                    table.empty();
+                    table.empty();
                 }
 
-                lines.add(sb.toString());
             }
 
-            lines.add("\n");
+            table.endRow();
         }
+    }
 
+    /*
+    Writes the rows of the curves table from a spill, reading one block of rows of every file at a time. The rows are
+    formatted exactly as from a CurveStore, so the output is the same as with the curves in memory.
+     */
+    private static void writeSpilled(TableWriter table, SpilledCurves spill) throws IOException {
 
-        // if parameters is enable for printing, write it
-        if (printOptions != null && printOptions.size() > 1
-                && printOptions.get(1)) {
-            ArrayList<String> paramsTable = data.makeParamsTable();
-            lines.addAll(paramsTable);
+        int numFiles = spill.getNumCurves();
+        int biggest = spill.getMaxPoints();
+        int rowsPerBlock = Math.min(spill.getRowsPerBlock(), Math.max(biggest, 1));
+        ByteBuffer block = ByteBuffer.allocate(numFiles * rowsPerBlock * SpilledCurves.RECORD_SIZE);
+
+        for (int from = 0; from < biggest; from += rowsPerBlock) {
+
+            int rows = Math.min(rowsPerBlock, biggest - from);
+            spill.readRows(from, rowsPerBlock, block);
+
+            for (int r = 0; r < rows; r++) { // line number
+
+                table.startRow(null);
+                for (int j = 0; j < numFiles; j++) { // file number
+
+                    // write the voltage and current
+                    if (from + r < spill.getNumPoints(j)) {
+                        int at = (j * rowsPerBlock + r) * SpilledCurves.RECORD_SIZE;
+                        table.decimal(block.getLong(at), block.get(at + 8));
+                        table.decimal(block.getLong(at + 9), block.get(at + 17));
+                    } else {
+                        table.empty();
+                        table.empty();
+                    }
+                }
+
+                table.endRow();
+            }
         }
+    }
 
-        // finally, write everything out to a string
-        StringBuilder output = new StringBuilder();
-        for (String line : lines)
-            output.append(line).append('\n');
+    /*
+    Writes the rows of the curves table on a voltage grid, one row per grid voltage. Spilled curves are resampled a few
+    hundred per thread at a time, so only the resampled currents are held in memory.
+     */
+    private static void writeResampled(TableWriter table, JVResampler resampler, JVData data, int threads,
+            ExecutorService pool) throws IOException {
 
-        // prompt for save location
-        JFileChooser fileChooser = new JFileChooser();
-        if (fileChooser.showSaveDialog(null) == JFileChooser.APPROVE_OPTION) {
-            File file = fileChooser.getSelectedFile();
-            File fileWithExt = new File(file.getPath() + ".txt");
+        resampler.setThreads(threads);
+        resampler.setPool(pool);
 
-            // try writing data out
-            try {
-                BufferedWriter out = new BufferedWriter(new FileWriter(fileWithExt));
-                out.write(output.toString());
-                out.close();
-                writeSuccess = true;
-            } catch (IOException e) {
-                writeSuccess = false;
+        double[][] currents;
+        int[] scales;
+        SpilledCurves spill = data.getSpill();
+        if (spill == null) {
+            currents = resampler.resample(data.getCurves());
+            scales = JVResampler.currentScales(data.getCurves());
+        } else {
+            currents = new double[spill.getNumCurves()][];
+            scales = new int[spill.getNumCurves()];
+            int block = JVResampler.CHUNK * threads;
+            for (int from = 0; from < currents.length; from += block) {
+                CurveStore chunk = spill.load(from, Math.min(from + block, currents.length));
+                System.arraycopy(resampler.resample(chunk), 0, currents, from, chunk.getNumCurves());
+                System.arraycopy(JVResampler.currentScales(chunk), 0, scales, from, chunk.getNumCurves());
+            }
+        }
+
+        for (int k = 0; k < resampler.getGrid().length; k++) { // line number
+
+            table.startRow(null);
+            table.number(resampler.formatVoltage(k));
+
+            for (int j = 0; j < currents.length; j++) { // file number
+                double value = currents[j][k];
+                if (Double.isNaN(value))
+                    table.empty();
+                else
+                    table.number(value, scales[j]);
             }
 
+            table.endRow();
         }
+    }
 
-        // return the results
-        return writeSuccess;
+    /*
+    Analyzes spilled curves a few hundred at a time, so only those are in memory at once.
+     */
+    private static double[][] analyzeSpilled(JVAnalyzer analyzer, SpilledCurves spill) throws IOException {
+
+        double[][] results = new double[spill.getNumCurves()][];
+        for (int from = 0; from < results.length; from += 256) {
+            int to = Math.min(from + 256, results.length);
+            double[][] chunk = analyzer.analyze(spill.load(from, to));
+            System.arraycopy(chunk, 0, results, from, chunk.length);
+        }
 
+        return results;
     }
 }
@@ -0,0 +1,83 @@
+package csu.physics.pv;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Newline delimited JSON layout, one object per row, for loading into scripts and databases without a table parser.
+ * Each object names its table, named rows have a "file" member, and the cells are members named by their columns.
+ * Empty cells, and infinite computed parameters, are left out. Eg.
+ *
+ * {"table":"params","file":"cell1_jvl","Area [cm^2]":0.430,...}
+ */
+class JsonLinesTableWriter extends TableWriter {
+
+    private String start;       // the opening of every object of the table
+    private String[] keys;      // the member names of the columns, quoted and followed by a colon
+    private int column;
+
+    JsonLinesTableWriter(Writer out) {
+        super(out, false);     // JSON has no infinities, so they are left out like NaN
+    }
+
+    @Override
+    void startTable(Table table, String[] columns) {
+
+        start = "{\"table\":" + quote(table.label);
+        keys = new String[columns.length];
+        for (int i = 0; i < columns.length; i++)
+            keys[i] = quote(columns[i]) + ":";
+    }
+
+    @Override
+    void startRow(String name) throws IOException {
+
+        out.write(start);
+        if (name != null) {
+            out.write(",\"file\":");
+            out.write(quote(name));
+        }
+        column = 0;
+    }
+
+    @Override
+    void number(char[] chars, int length) throws IOException {
+        out.write(',');
+        out.write(keys[column++]);
+        out.write(chars, 0, length);
+    }
+
+    @Override
+    void empty() {
+        column++;
+    }
+
+    @Override
+    void endRow() throws IOException {
+        out.write("}\n");
+    }
+
+    @Override
+    void endTable() {
+        // rows stand on their own
+    }
+
+    /*
+    Quotes a string, escaping quotes, backslashes and control characters.
+     */
+    static String quote(String value) {
+
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
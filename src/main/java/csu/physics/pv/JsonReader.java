@@ -0,0 +1,214 @@
+package csu.physics.pv;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Minimal JSON parser for the requests of {@link JVServer}. Objects are read as LinkedHashMaps, arrays as ArrayLists,
+ * numbers as BigDecimals, and strings, booleans and null as themselves.
+ */
+final class JsonReader {
+
+    /**
+     * Deepest nesting of objects and arrays accepted, so a hostile document cannot overflow the stack.
+     */
+    static final int MAX_DEPTH = 64;
+
+    private final String text;
+    private int pos;
+    private int depth;
+
+    private JsonReader(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses a JSON document.
+     *
+     * @param text  The document.
+     * @return      The value of the document.
+     * @throws IllegalArgumentException If the text is not valid JSON, or nested deeper than {@link #MAX_DEPTH}.
+     */
+    static Object parse(String text) {
+
+        JsonReader reader = new JsonReader(text);
+        Object value = reader.value();
+        reader.skipSpace();
+        if (reader.pos < text.length())
+            throw reader.error("Unexpected text after the document");
+
+        return value;
+    }
+
+    private Object value() {
+
+        skipSpace();
+        if (pos == text.length())
+            throw error("Unexpected end of the document");
+
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{':
+            case '[':
+                if (++depth > MAX_DEPTH)
+                    throw error("Nested deeper than " + MAX_DEPTH);
+                Object nested = c == '{' ? object() : array();
+                depth--;
+                return nested;
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9'))
+                    return number();
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private LinkedHashMap<String, Object> object() {
+
+        LinkedHashMap<String, Object> members = new LinkedHashMap<>();
+        pos++;
+        skipSpace();
+        if (peek() == '}') {
+            pos++;
+            return members;
+        }
+
+        while (true) {
+            skipSpace();
+            if (peek() != '"')
+                throw error("Expected a member name");
+            String name = string();
+            skipSpace();
+            expect(':');
+            members.put(name, value());
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+                return members;
+            }
+            expect(',');
+        }
+    }
+
+    private ArrayList<Object> array() {
+
+        ArrayList<Object> elements = new ArrayList<>();
+        pos++;
+        skipSpace();
+        if (peek() == ']') {
+            pos++;
+            return elements;
+        }
+
+        while (true) {
+            elements.add(value());
+            skipSpace();
+            if (peek() == ']') {
+                pos++;
+                return elements;
+            }
+            expect(',');
+        }
+    }
+
+    private String string() {
+
+        StringBuilder sb = new StringBuilder();
+        pos++;
+        while (true) {
+            if (pos >= text.length())
+                throw error("Unterminated string");
+            char c = text.charAt(pos++);
+            if (c == '"')
+                return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+
+            if (pos >= text.length())
+                throw error("Unterminated string");
+            char e = text.charAt(pos++);
+            switch (e) {
+                case '"':
+                case '\\':
+                case '/':
+                    sb.append(e);
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > text.length())
+                        throw error("Bad escape");
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("Bad escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    throw error("Bad escape \\" + e);
+            }
+        }
+    }
+
+    private BigDecimal number() {
+
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0)
+            pos++;
+        try {
+            return new BigDecimal(text.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw error("Bad number " + text.substring(start, pos));
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (!text.startsWith(word, pos))
+            throw error("Unexpected text");
+        pos += word.length();
+        return value;
+    }
+
+    private void expect(char c) {
+        if (peek() != c)
+            throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : 0;
+    }
+
+    private void skipSpace() {
+        while (pos < text.length() && " \t\r\n".indexOf(text.charAt(pos)) >= 0)
+            pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at character " + pos + " of the request");
+    }
+}
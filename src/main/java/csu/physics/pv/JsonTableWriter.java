@@ -0,0 +1,81 @@
+package csu.physics.pv;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Single JSON document layout, for callers that take one response, eg. the server of {@link JVServer}. The document
+ * has one member per table, named by the table, holding an array of rows. Rows are objects as in
+ * {@link JsonLinesTableWriter}, without the table member. Eg.
+ *
+ * {"curves":[{"cell1_jvl_X":-0.200,"cell1_jvl_Y":-21.50000},...],"params":[{"file":"cell1_jvl","Area [cm^2]":0.430,
+ * ...}]}
+ */
+class JsonTableWriter extends TableWriter {
+
+    private String[] keys;      // the member names of the columns, quoted and followed by a colon
+    private boolean started;    // whether the document was opened
+    private boolean firstRow;
+    private boolean firstMember;
+    private int column;
+
+    JsonTableWriter(Writer out) {
+        super(out, false);     // JSON has no infinities, so they are left out like NaN
+    }
+
+    @Override
+    void startTable(Table table, String[] columns) throws IOException {
+
+        out.write(started ? "," : "{");
+        started = true;
+        out.write(JsonLinesTableWriter.quote(table.label));
+        out.write(":[");
+
+        keys = new String[columns.length];
+        for (int i = 0; i < columns.length; i++)
+            keys[i] = JsonLinesTableWriter.quote(columns[i]) + ":";
+        firstRow = true;
+    }
+
+    @Override
+    void startRow(String name) throws IOException {
+
+        out.write(firstRow ? "{" : ",{");
+        firstRow = false;
+        firstMember = name == null;
+        if (name != null) {
+            out.write("\"file\":");
+            out.write(JsonLinesTableWriter.quote(name));
+        }
+        column = 0;
+    }
+
+    @Override
+    void number(char[] chars, int length) throws IOException {
+        if (!firstMember)
+            out.write(',');
+        firstMember = false;
+        out.write(keys[column++]);
+        out.write(chars, 0, length);
+    }
+
+    @Override
+    void empty() {
+        column++;
+    }
+
+    @Override
+    void endRow() throws IOException {
+        out.write('}');
+    }
+
+    @Override
+    void endTable() throws IOException {
+        out.write(']');
+    }
+
+    @Override
+    void finish() throws IOException {
+        out.write(started ? "}" : "{}");
+    }
+}
@@ -0,0 +1,165 @@
+package csu.physics.pv;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Formats numbers into a reusable char buffer, without allocating per value, for the output writers. The text is the
+ * same as the slower formatting it replaces: {@link NumberFormatter#format(double, int)} matches BigDecimal rounding,
+ * {@link NumberFormatter#format(long, int)} matches {@link BigDecimal#toString()} and
+ * {@link NumberFormatter#formatSignificant(double)} matches "%.5g".
+ *
+ * Values are rounded through a scaled long. The few values that would need more than a long, that land within a few
+ * ulps of a rounding tie or that print in exponent notation fall back to the slow path, so the text is always exact.
+ */
+final class NumberFormatter {
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+    private static final double MAX_SCALED = 1e15;      // well within the 2^53 doubles hold exactly
+
+    private char[] buf = new char[64];
+    private int length;
+
+    /**
+     * Returns the buffer holding the last formatted number.
+     *
+     * @return  The buffer, valid until the next number is formatted.
+     */
+    char[] chars() {
+        return buf;
+    }
+
+    /**
+     * Formats a value rounded half even to a number of decimal places, as
+     * new BigDecimal(value).setScale(scale, RoundingMode.HALF_EVEN).toString().
+     *
+     * @param value The value.
+     * @param scale The number of decimal places.
+     * @return      The length of the text in {@link NumberFormatter#chars()}.
+     */
+    int format(double value, int scale) {
+
+        if (scale >= 0 && scale < POW10.length) {
+            double scaled = value * POW10[scale];
+            if (Math.abs(scaled) < MAX_SCALED) {
+                double floor = Math.floor(scaled);
+                double fraction = scaled - floor;
+                if (Math.abs(fraction - 0.5) > 4 * Math.ulp(scaled))
+                    return format((long) floor + (fraction > 0.5 ? 1 : 0), scale);
+            }
+        }
+
+        return copy(new BigDecimal(value).setScale(scale, RoundingMode.HALF_EVEN).toString());
+    }
+
+    /**
+     * Formats a decimal number given as an unscaled value and a number of decimal places, as
+     * {@link BigDecimal#toString()} of BigDecimal.valueOf(unscaled, scale).
+     *
+     * @param unscaled  The value times 10^scale.
+     * @param scale     The number of decimal places.
+     * @return          The length of the text in {@link NumberFormatter#chars()}.
+     */
+    int format(long unscaled, int scale) {
+
+        int digits = digits(unscaled);
+        if (scale < 0 || unscaled == Long.MIN_VALUE || digits - 1 - scale < -6)
+            return copy(BigDecimal.valueOf(unscaled, scale).toString());    // exponent notation
+
+        ensure(digits + scale + 3);
+        int end = 0;
+        if (unscaled < 0) {
+            buf[end++] = '-';
+            unscaled = -unscaled;
+        }
+
+        // leading zeros of a number below one
+        if (digits <= scale) {
+            buf[end++] = '0';
+            buf[end++] = '.';
+            for (int i = digits; i < scale; i++)
+                buf[end++] = '0';
+        }
+
+        // the digits from the right, with the point among them
+        int last = end + digits + (digits > scale && scale > 0 ? 1 : 0) - 1;
+        int at = last;
+        for (int i = 0; i < digits; i++) {
+            if (i == scale && digits > scale && scale > 0)
+                buf[at--] = '.';
+            buf[at--] = (char) ('0' + unscaled % 10);
+            unscaled /= 10;
+        }
+
+        length = last + 1;
+        return length;
+    }
+
+    /**
+     * Formats a value with five significant digits, as String.format(Locale.US, "%.5g", value).
+     *
+     * @param value The value.
+     * @return      The length of the text in {@link NumberFormatter#chars()}.
+     */
+    int formatSignificant(double value) {
+
+        double abs = Math.abs(value);
+        if (abs >= 1e-4 && abs < 1e5) {
+
+            int exponent = (int) Math.floor(Math.log10(abs));
+            int scale = 4 - exponent;
+            if (scale >= 0 && scale < POW10.length) {
+                double scaled = abs * POW10[scale];
+
+                // log10 can be off by one next to a power of ten
+                if (scaled >= 1e5 && scale > 0)
+                    scaled = abs * POW10[--scale];
+                else if (scaled < 1e4 && scale + 1 < POW10.length)
+                    scaled = abs * POW10[++scale];
+
+                double floor = Math.floor(scaled);
+                double fraction = scaled - floor;
+                if (scaled >= 1e4 && scaled < 1e5 && Math.abs(fraction - 0.5) > 4 * Math.ulp(scaled)) {
+                    long rounded = (long) floor + (fraction >= 0.5 ? 1 : 0);
+                    if (rounded == 100000 && scale > 0) {
+                        rounded = 10000;
+                        scale--;
+                    }
+                    if (rounded < 100000)
+                        return format(value < 0 ? -rounded : rounded, scale);
+                }
+            }
+        }
+
+        return copy(String.format(Locale.US, "%.5g", value));
+    }
+
+    /**
+     * Copies a number that is already text, so it is written like a formatted one.
+     *
+     * @param text  The number.
+     * @return      The length of the text in {@link NumberFormatter#chars()}.
+     */
+    int copy(String text) {
+        ensure(text.length());
+        text.getChars(0, text.length(), buf, 0);
+        length = text.length();
+        return length;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        for (long v = Math.abs(value); v >= 10; v /= 10)
+            digits++;
+        return digits;
+    }
+
+    private void ensure(int capacity) {
+        if (buf.length < capacity)
+            buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+    }
+}
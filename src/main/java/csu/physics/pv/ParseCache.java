@@ -0,0 +1,233 @@
+package csu.physics.pv;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * On-disk cache of parsed files, so files that were imported before are loaded instead of parsed again. Entries are
+ * keyed by the SHA-256 of the file contents, the format, the format's {@link JVData#getCacheVariant(String)} and
+ * {@link ParseCache#PARSER_VERSION}, so a changed file or a changed parser never hits a stale entry.
+ *
+ * Each entry is one file holding the parameters as text and the curves in the binary form of
+ * {@link CurveStore#writeTo(ByteBuffer)}. The cache is bounded by size: reading an entry marks it as recently used, and
+ * when the total size goes over the limit the least recently used entries are deleted.
+ */
+class ParseCache {
+
+    /**
+     * Version of the parsers. Increase it whenever parsing results change, to invalidate every cached entry.
+     */
+    static final int PARSER_VERSION = 5;
+
+    private static final int MAGIC = 0x4A564331;      // "JVC1"
+    private static final String SUFFIX = ".jvc";
+
+    private final File dir;
+    private final long maxBytes;
+    private long totalBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param dir       The cache folder, created if needed.
+     * @param maxBytes  The largest total size of the entries.
+     * @throws IOException  If the folder cannot be created.
+     */
+    ParseCache(File dir, long maxBytes) throws IOException {
+
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir.toPath());
+
+        for (File entry : entries())
+            totalBytes += entry.length();
+    }
+
+    /**
+     * Computes the hash of file contents used as the cache key.
+     *
+     * @param contents  The file contents.
+     * @param length    The number of valid bytes.
+     * @return          The hash.
+     */
+    static byte[] hash(byte[] contents, int length) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(contents, 0, length);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);     // every JVM has SHA-256
+        }
+    }
+
+    /**
+     * Loads a cached file.
+     *
+     * @param hash      The hash of the file contents.
+     * @param format    An instance of the format of the file.
+     * @param fileName  The name of the file.
+     * @return          The parsed file as a new instance of the format, or null if it is not cached.
+     */
+    JVData get(byte[] hash, JVData format, String fileName) {
+
+        File entry = entry(hash, format, fileName);
+        if (!entry.isFile())
+            return null;
+
+        try (FileChannel channel = FileChannel.open(entry.toPath(), StandardOpenOption.READ)) {
+
+            ByteBuffer in = ByteBuffer.allocate((int) channel.size());
+            while (in.hasRemaining() && channel.read(in) >= 0) { }
+            in.flip();
+
+            if (in.getInt() != MAGIC)
+                return null;
+
+            JVData part = format.newInstance();
+
+            // parameter rows, each belonging to the file
+            int rows = in.getInt();
+            for (int i = 0; i < rows; i++) {
+                ArrayList<BigDecimal> row = new ArrayList<>();
+                int n = in.getInt();
+                for (int j = 0; j < n; j++) {
+                    byte[] text = new byte[in.getShort()];
+                    in.get(text);
+                    row.add(new BigDecimal(new String(text, StandardCharsets.US_ASCII)));
+                }
+                part.params.add(row);
+                part.lightFileNames.add(fileName);
+            }
+
+            part.curves = CurveStore.readFrom(in);
+
+            // mark as recently used
+            entry.setLastModified(System.currentTimeMillis());
+
+            return part;
+
+        } catch (IOException | RuntimeException e) {
+            return null;    // unreadable entry, parse the file again
+        }
+    }
+
+    /**
+     * Stores a parsed file.
+     *
+     * @param hash      The hash of the file contents.
+     * @param part      The file, parsed into its own instance of its format.
+     * @param fileName  The name of the file.
+     * @throws IOException  If the entry cannot be written.
+     */
+    void put(byte[] hash, JVData part, String fileName) throws IOException {
+
+        // encode the parameters first to know the size
+        ArrayList<byte[]> values = new ArrayList<>();
+        int size = 8 + part.curves.serializedSize();
+        for (ArrayList<BigDecimal> row : part.params) {
+            size += 4;
+            for (BigDecimal value : row) {
+                byte[] text = value.toString().getBytes(StandardCharsets.US_ASCII);
+                values.add(text);
+                size += 2 + text.length;
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC);
+        out.putInt(part.params.size());
+        int v = 0;
+        for (ArrayList<BigDecimal> row : part.params) {
+            out.putInt(row.size());
+            for (int j = 0; j < row.size(); j++) {
+                byte[] text = values.get(v++);
+                out.putShort((short) text.length);
+                out.put(text);
+            }
+        }
+        part.curves.writeTo(out);
+        out.flip();
+
+        // write to a temporary file and move it in place, so readers never see a partial entry
+        File entry = entry(hash, part, fileName);
+        Path temp = Files.createTempFile(dir.toPath(), "entry", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining())
+                    channel.write(out);
+            }
+            Files.move(temp, entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        evict(size);
+    }
+
+    /*
+    Adds the size of a new entry to the total, deleting the least recently used entries when over the limit.
+     */
+    private synchronized void evict(long added) {
+
+        totalBytes += added;
+        if (totalBytes <= maxBytes)
+            return;
+
+        // drop the oldest entries until well under the limit, so eviction does not run on every put
+        File[] entries = entries();
+        final long[] used = new long[entries.length];
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            used[i] = entries[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.compare(used[a], used[b]);
+            }
+        });
+
+        totalBytes = 0;
+        for (File entry : entries)
+            totalBytes += entry.length();
+
+        for (int i = 0; i < order.length && totalBytes > maxBytes * 9 / 10; i++) {
+            File entry = entries[order[i]];
+            long length = entry.length();
+            if (entry.delete())
+                totalBytes -= length;
+        }
+    }
+
+    private File entry(byte[] hash, JVData format, String fileName) {
+
+        String hex = String.format("%064x", new BigInteger(1, hash));
+        String variant = format.getCacheVariant(fileName);
+        return new File(dir, hex + "-" + format.getFormatName() + (variant.isEmpty() ? "" : "-" + variant)
+                + "-v" + PARSER_VERSION + SUFFIX);
+    }
+
+    private File[] entries() {
+
+        File[] entries = dir.listFiles(new java.io.FileFilter() {
+            public boolean accept(File file) {
+                return file.getName().endsWith(SUFFIX);
+            }
+        });
+
+        return entries == null ? new File[0] : entries;
+    }
+}
@@ -1,6 +1,9 @@
 package csu.physics.pv;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 import static java.util.Arrays.copyOfRange;
@@ -24,6 +27,23 @@ Inner list: each element corresponds to a parameter, defined by the order:
  */
 public class PhysicsData extends JVData {
 
+    private static final String MARKER = "Voltage [V]\tCurrent Density [mA/cm2]";
+
+    // header fields of light files, in the order of the params, with their lines in the original layout
+    private static final JVHeader HEADER = new JVHeader(MARKER,
+            new String[]{"Area", "Jsc", "Voc", "FF", "Efficiency", "Jsc fit", "Voc fit"},
+            new int[]{2, 8, 9, 6, 7, 4, 5});
+
+    // names of the params, with units
+    private static final String[] PARAM_NAMES = {
+            "Area [cm^2]", "Jsc_meas [mA/cm^2]", "Voc_meas [V]", "FF [%]", "Eff [%]", "Jsc_fit [mA/cm^2]", "Voc_fit [V]"
+    };
+
+    /**
+     * Constructor for the streaming parse path, see {@link JVData#parse(String, JVTokenizer)}.
+     */
+    PhysicsData() { }
+
     /**
      * Constructor
      *
@@ -34,6 +54,30 @@ public class PhysicsData extends JVData {
         fileData = data;
     }
 
+    /**
+     * See {@link JVData#getFormatName()} for more information.
+     */
+    @Override
+    public String getFormatName() {
+        return "physics";
+    }
+
+    /**
+     * See {@link JVData#getCacheVariant(String)} for more information. Light and dark files have different headers.
+     */
+    @Override
+    public String getCacheVariant(String fileName) {
+        return fileName.contains("jvl") ? "light" : "dark";
+    }
+
+    /**
+     * See {@link JVData#sniff(byte[], int, int)} for more information.
+     */
+    @Override
+    public boolean sniff(byte[] head, int offset, int length) {
+        return contains(head, offset, length, MARKER);
+    }
+
     /**
      * See {@link JVData#isValidData()} for more information.
      *
@@ -42,10 +86,11 @@ public class PhysicsData extends JVData {
     @Override
     public boolean isValidData() {
 
+        JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.VALIDATE, null);
         boolean isValid = false;
 
         for (String file : fileData) {
-            if (file.contains("Voltage [V]\tCurrent Density [mA/cm2]")) {
+            if (file.contains(MARKER)) {
                 isValid = true;
             } else {
                 isValid = false;
@@ -53,6 +98,7 @@ public class PhysicsData extends JVData {
             }
         }
 
+        timer.stop(length(fileData), 0);
         return isValid;
     }
 
@@ -62,6 +108,7 @@ public class PhysicsData extends JVData {
     @Override
     public void extractData() {
 
+        JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.EXTRACT, null);
         ArrayList<String> extractedCurves = new ArrayList<>();
         ArrayList<String> extractedParams = new ArrayList<>();
 
@@ -74,21 +121,16 @@ public class PhysicsData extends JVData {
             lines = str.split("\n");
 
             String[] par, cur;
-            int index;
-            boolean illumination;
+            boolean illumination = fileNames[i].contains("jvl");
 
-            // Check for light or dark data and set the line number where curve data begin
-            if (fileNames[i].contains("jvl")) {
-                index = 12;
-                illumination = true;
-            } else {
-                index = 6;
-                illumination = false;
-            }
+            // Curve data begin after the column header
+            int index = HEADER.indexOf(lines);
+            if (index < 0)
+                throw new IllegalArgumentException("Malformed file " + fileNames[i] + ", no column header");
 
             // Copy the sub-array of parameter and curve data
             par = copyOfRange(lines, 0, index);
-            cur = copyOfRange(lines, index, lines.length);
+            cur = copyOfRange(lines, index + 1, lines.length);
 
             // Build light parameter data back into a string
             StringBuilder sb;
@@ -108,9 +150,45 @@ public class PhysicsData extends JVData {
 
         }
 
-        curves = sortCurves(extractedCurves);
+        curves = readCurves ? sortCurves(extractedCurves) : emptyCurves(extractedCurves.size());
         params = sortParams(extractedParams);
 
+        timer.stop(length(fileData), curves.getTotalPoints());
+
+    }
+
+    /**
+     * See {@link JVData#parse(String, JVTokenizer)} for more information.
+     */
+    @Override
+    public boolean parse(String fileName, JVTokenizer in) throws IOException {
+
+        // read only the header lines, up to the column header
+        String[] header = HEADER.read(in);
+        if (header == null)
+            return false;
+
+        // light files carry the cell parameters
+        if (fileName.contains("jvl")) {
+            params.add(HEADER.parse(header));
+            lightFileNames.add(fileName);
+        }
+
+        // the rest of the stream is the J-V curve, left unread when only the header is wanted
+        if (readCurves)
+            parseCurve(in, curves);
+        else
+            curves.endCurve();
+
+        return true;
+    }
+
+    /**
+     * See {@link JVData#newInstance()} for more information.
+     */
+    @Override
+    public JVData newInstance() {
+        return new PhysicsData();
     }
 
     /**
@@ -129,51 +207,14 @@ public class PhysicsData extends JVData {
     @Override
     public ArrayList<ArrayList<BigDecimal>> sortParams(ArrayList<String> p) {
 
-        ArrayList<BigDecimal> currFile;
+        JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.SORT_PARAMS, null);
         ArrayList<ArrayList<BigDecimal>> sorted = new ArrayList<>();
 
-        String Jsc_m, Voc_m, FF, eff, Jsc_f, Voc_f, area;
-        String [] lines;
-
-        for (String aP : p) {
-
-            currFile = new ArrayList<>();
-
-            // split into lines
-            lines = aP.split("\n");
-
-            // area
-            area = (lines[2]).substring(lines[2].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(area));
-
-            // measured Jsc
-            Jsc_m = (lines[8]).substring(lines[8].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(Jsc_m));
-
-            // measured Voc
-            Voc_m = (lines[9]).substring(lines[9].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(Voc_m));
-
-            // fill factor
-            FF = (lines[6]).substring(lines[6].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(FF));
-
-            // efficiency
-            eff = (lines[7]).substring(lines[7].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(eff));
-
-            // fit Jsc
-            Jsc_f = (lines[4]).substring(lines[4].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(Jsc_f));
-
-            // fit Voc
-            Voc_f = (lines[5]).substring(lines[5].lastIndexOf('\t') + 1);
-            currFile.add(new BigDecimal(Voc_f));
-
-            // add to final list
-            sorted.add(currFile);
-        }
+        // split each file into lines and add to final list
+        for (String aP : p)
+            sorted.add(HEADER.parse(aP.split("\n")));
 
+        timer.stop(length(p), 0);
         return sorted;
     }
 
@@ -181,40 +222,51 @@ public class PhysicsData extends JVData {
      * See {@link JVData#sortCurves(ArrayList)} for more information.
      */
     @Override
-    public ArrayList<ArrayList<BigDecimal>> sortCurves(ArrayList<String> c) {
+    public CurveStore sortCurves(ArrayList<String> c) {
 
-        ArrayList<BigDecimal> currFile;
-        ArrayList<ArrayList<BigDecimal>> sorted = new ArrayList<>();
+        JVMetrics.Timer timer = JVMetrics.start(JVMetrics.Stage.SORT_CURVES, null);
+        CurveStore sorted = new CurveStore();
 
-        String [] lines;
-        String voltage, current;
+        byte[] bytes;
         for (int i = 0; i < fileData.size(); i++) {
 
-            currFile = new ArrayList<>();
-
-            // split into lines
-            lines = (c.get(i)).split("\n");
-
-            for (String line : lines) {
-
-                // get voltage from line
-                voltage = (line).substring(0, line.lastIndexOf('\t'));
-                currFile.add(new BigDecimal(voltage));
-
-                // get current from line
-                current = (line).substring(line.lastIndexOf('\t')+1);
-                currFile.add(new BigDecimal(current));
-
+            // tokenize the curve text of this file
+            bytes = c.get(i).getBytes(StandardCharsets.ISO_8859_1);
+            try {
+                parseCurve(new JVTokenizer(bytes, bytes.length), sorted);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);     // not thrown for in-memory input
             }
 
-            // add to final list
-            sorted.add(currFile);
-
         }
 
+        timer.stop(length(c), sorted.getTotalPoints());
         return sorted;
     }
 
+    /**
+     * Tokenizes curve lines until the end of the input, appending the points to the store as one curve.
+     *
+     * @param in    The tokenizer positioned at the first curve line.
+     * @param store The store the curve is appended to.
+     * @throws IOException  If the input could not be read.
+     */
+    private static void parseCurve(JVTokenizer in, CurveStore store) throws IOException {
+
+        while (in.nextPoint(0))
+            store.addPoint(in.getUnscaledVoltage(), in.getVoltageScale(), in.getUnscaledCurrent(),
+                    in.getCurrentScale());
+        store.endCurve();
+    }
+
+    /**
+     * See {@link JVData#getParamNames()} for more information.
+     */
+    @Override
+    public String[] getParamNames() {
+        return PARAM_NAMES.clone();
+    }
+
     /**
      * See {@link JVData#makeParamsTable()} for more information.
      */
@@ -224,13 +276,10 @@ public class PhysicsData extends JVData {
         ArrayList<String> table = new ArrayList<>();
 
         // write the table header
-        table.add("" + '\t' + "Area [cm^2]" + '\t'
-                            + "Jsc_meas [mA/cm^2]" + '\t'
-                            + "Voc_meas [V]" + '\t'
-                            + "FF [%]" + '\t'
-                            + "Eff [%]" + '\t'
-                            + "Jsc_fit [mA/cm^2]" + '\t'
-                            + "Voc_fit [V]");
+        StringBuilder header = new StringBuilder();
+        for (String name : PARAM_NAMES)
+            header.append('\t').append(name);
+        table.add(header.toString());
 
         // write the table lines
         ArrayList<BigDecimal> p;
@@ -242,9 +291,7 @@ public class PhysicsData extends JVData {
 
             // list cell name first
             sb = new StringBuilder();
-            String fileName = lightFileNames.get(i);
-            String name = fileName.substring(0, fileName.lastIndexOf(".txt"));
-            sb.append(name).append('\t');
+            sb.append(stripTxt(lightFileNames.get(i))).append('\t');
 
             // build a line of the parameters,
             for (BigDecimal aP : p)
@@ -0,0 +1,169 @@
+package csu.physics.pv;
+
+import java.util.Arrays;
+
+/**
+ * Streaming quantile estimate in bounded memory, for the medians of {@link GroupStats}. Values are kept exactly until
+ * the sketch holds {@link QuantileSketch#CAPACITY} of them, after which full levels are compacted: a level is sorted
+ * and every other value is promoted to the next level with twice the weight. Memory then grows with the logarithm of
+ * the number of values only, and the rank of a quantile is off by about log2(n / CAPACITY) / CAPACITY of n.
+ *
+ * Sketches of parts of a stream, eg. kept by different threads, are combined with
+ * {@link QuantileSketch#merge(QuantileSketch)}. Compaction alternates between the odd and even values of each level
+ * rather than picking at random, so the same values added and merged in the same order always give the same result.
+ */
+final class QuantileSketch {
+
+    /**
+     * Number of values a level holds before it is compacted.
+     */
+    static final int CAPACITY = 256;
+
+    private double[][] levels = {new double[CAPACITY]};     // level h holds values of weight 2^h
+    private int[] sizes = new int[1];
+    private boolean[] odd = new boolean[1];                 // which half of level h is promoted next
+    private long count;
+
+    /**
+     * Adds a value, NaN being ignored.
+     *
+     * @param value The value.
+     */
+    void add(double value) {
+
+        if (Double.isNaN(value))
+            return;
+        append(0, value);
+        count++;
+        compact();
+    }
+
+    /**
+     * Adds the values of another sketch, which is left unchanged.
+     *
+     * @param other The sketch to merge.
+     */
+    void merge(QuantileSketch other) {
+
+        for (int h = 0; h < other.sizes.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++)
+                append(h, other.levels[h][i]);
+        }
+        count += other.count;
+        compact();
+    }
+
+    /**
+     * Returns the number of values added.
+     *
+     * @return  The number of values.
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the median, exact while no level was compacted, where an even number of values gives the mean of the two
+     * middle values.
+     *
+     * @return  The median, or NaN if no values were added.
+     */
+    double getMedian() {
+
+        if (count == 0)
+            return Double.NaN;
+
+        if (sizes.length == 1) {
+            double[] sorted = Arrays.copyOf(levels[0], sizes[0]);
+            Arrays.sort(sorted);
+            int half = sorted.length / 2;
+            return sorted.length % 2 == 1 ? sorted[half] : (sorted[half - 1] + sorted[half]) / 2;
+        }
+
+        return getQuantile(0.5);
+    }
+
+    /**
+     * Returns an estimate of a quantile, the smallest value whose weighted rank reaches the fraction.
+     *
+     * @param fraction  The quantile, from 0 to 1.
+     * @return          The value, or NaN if no values were added.
+     */
+    double getQuantile(double fraction) {
+
+        if (count == 0)
+            return Double.NaN;
+
+        // the values with their weights, sorted by value
+        int total = 0;
+        for (int size : sizes)
+            total += size;
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        Integer[] order = new Integer[total];
+        int at = 0;
+        long weight = 0;
+        for (int h = 0; h < sizes.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[at] = levels[h][i];
+                weights[at] = 1L << h;
+                order[at] = at;
+                weight += 1L << h;
+                at++;
+            }
+        }
+        final double[] keys = values;
+        Arrays.sort(order, (a, b) -> Double.compare(keys[a], keys[b]));
+
+        double target = fraction * weight;
+        long rank = 0;
+        for (int i : order) {
+            rank += weights[i];
+            if (rank >= target)
+                return values[i];
+        }
+
+        return values[order[total - 1]];
+    }
+
+    private void append(int h, double value) {
+
+        while (h >= sizes.length) {
+            int top = sizes.length;
+            levels = Arrays.copyOf(levels, top + 1);
+            levels[top] = new double[CAPACITY];
+            sizes = Arrays.copyOf(sizes, top + 1);
+            odd = Arrays.copyOf(odd, top + 1);
+        }
+        if (sizes[h] == levels[h].length)
+            levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+        levels[h][sizes[h]++] = value;
+    }
+
+    /*
+    Compacts every full level, from the bottom up so promoted values are compacted in turn. An odd value out stays.
+     */
+    private void compact() {
+
+        for (int h = 0; h < sizes.length; h++) {
+            if (sizes[h] < CAPACITY)
+                continue;
+
+            double[] level = levels[h];
+            int size = sizes[h];
+            Arrays.sort(level, 0, size);
+            int pairs = size / 2;
+            int first = odd[h] ? 1 : 0;
+            odd[h] = !odd[h];
+            for (int i = 0; i < pairs; i++)
+                append(h + 1, level[2 * i + first]);
+
+            // keep the odd value out, the largest, at the bottom of the level
+            if (size % 2 == 1)
+                level[0] = level[size - 1];
+            sizes[h] = size % 2;
+            if (level.length > CAPACITY)
+                levels[h] = Arrays.copyOf(level, CAPACITY);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package csu.physics.pv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static java.util.Arrays.copyOf;
+
+/**
+ * Curves spilled to a temporary file as they are parsed, so a batch of any size is imported in bounded memory. Each
+ * curve is stored as one run of fixed-size point records (voltage, current and their scales), and only the number of
+ * points of each curve is kept in memory.
+ *
+ * The wide curves table is merged back in blocks of rows: for each block, the slice of every curve that falls in it is
+ * read with one positioned read per curve, so memory is capped at the block size given to the constructor however
+ * many files and points there are.
+ */
+class SpilledCurves implements Closeable {
+
+    static final int RECORD_SIZE = 18;      // unscaled voltage long and its scale byte, then the same for current
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer out;
+    private final long blockBytes;
+
+    private int[] numPoints;        // number of points of each curve
+    private long[] starts;          // index of the first point record of each curve
+    private int numCurves;
+    private long totalPoints;
+    private int maxPoints;
+
+    /**
+     * Constructor, creating the temporary file.
+     *
+     * @param dir           The folder of the temporary file.
+     * @param blockBytes    The largest number of bytes read into memory at once when merging.
+     * @throws IOException  If the temporary file cannot be created.
+     */
+    SpilledCurves(File dir, long blockBytes) throws IOException {
+
+        file = Files.createTempFile(dir.toPath(), "curves", ".spill").toFile();
+        file.deleteOnExit();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.blockBytes = blockBytes;
+
+        numPoints = new int[16];
+        starts = new long[16];
+    }
+
+    /**
+     * Appends all curves of a store, in order, writing their points out.
+     *
+     * @param curves    The curves to append.
+     * @throws IOException  If the temporary file cannot be written.
+     */
+    synchronized void append(CurveStore curves) throws IOException {
+
+        for (int i = 0; i < curves.getNumCurves(); i++) {
+
+            if (numCurves == numPoints.length) {
+                numPoints = copyOf(numPoints, numCurves * 2);
+                starts = copyOf(starts, numCurves * 2);
+            }
+
+            int n = curves.getNumPoints(i);
+            numPoints[numCurves] = n;
+            starts[numCurves] = totalPoints;
+            numCurves++;
+            totalPoints += n;
+            maxPoints = Math.max(maxPoints, n);
+
+            for (int k = 0; k < n; k++) {
+                if (out.remaining() < RECORD_SIZE)
+                    flush();
+                curves.putPoint(i, k, out);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of curves, ie. the number of files.
+     *
+     * @return  The number of curves.
+     */
+    int getNumCurves() {
+        return numCurves;
+    }
+
+    /**
+     * Returns the number of J-V points of a curve.
+     *
+     * @param curve The curve number.
+     * @return      The number of points.
+     */
+    int getNumPoints(int curve) {
+        return numPoints[curve];
+    }
+
+    /**
+     * Returns the number of J-V points of all curves together.
+     *
+     * @return  The number of points.
+     */
+    long getTotalPoints() {
+        return totalPoints;
+    }
+
+    /**
+     * Returns the largest number of J-V points of any curve.
+     *
+     * @return  The largest number of points.
+     */
+    int getMaxPoints() {
+        return maxPoints;
+    }
+
+    /**
+     * Returns how many rows of the wide table fit in one block.
+     *
+     * @return  The number of rows, at least 1.
+     */
+    int getRowsPerBlock() {
+        long bytes = Math.min(blockBytes, Integer.MAX_VALUE);
+        return (int) Math.max(1, bytes / Math.max(1L, numCurves * (long) RECORD_SIZE));
+    }
+
+    /**
+     * Reads a block of rows of the wide table. The records of curve j for rows [fromRow, fromRow + rows) are placed at
+     * (j * rows + r) * RECORD_SIZE in the block, and curves with fewer points leave the rest of their slice unread.
+     *
+     * @param fromRow   The first row.
+     * @param rows      The number of rows, at most {@link SpilledCurves#getRowsPerBlock()}.
+     * @param block     The buffer to read into, of at least numCurves * rows * RECORD_SIZE bytes.
+     * @throws IOException  If the temporary file cannot be read.
+     */
+    synchronized void readRows(int fromRow, int rows, ByteBuffer block) throws IOException {
+
+        flush();
+
+        for (int j = 0; j < numCurves; j++) {
+            int n = Math.min(rows, numPoints[j] - fromRow);
+            if (n <= 0)
+                continue;
+
+            int at = j * rows * RECORD_SIZE;
+            block.limit(at + n * RECORD_SIZE);
+            block.position(at);
+            long position = (starts[j] + fromRow) * RECORD_SIZE;
+            while (block.hasRemaining()) {
+                int read = channel.read(block, position);
+                if (read < 0)
+                    throw new IOException("Spill file truncated");
+                position += read;
+            }
+        }
+
+        block.clear();
+    }
+
+    /**
+     * Loads a range of curves back into memory, eg. to analyze them a few at a time.
+     *
+     * @param from  The first curve.
+     * @param to    The curve after the last.
+     * @return      The curves.
+     * @throws IOException  If the temporary file cannot be read.
+     */
+    synchronized CurveStore load(int from, int to) throws IOException {
+
+        flush();
+
+        CurveStore store = new CurveStore();
+        if (from >= to)
+            return store;
+
+        long first = starts[from];
+        long last = starts[to - 1] + numPoints[to - 1];
+        ByteBuffer in = ByteBuffer.allocate((int) ((last - first) * RECORD_SIZE));
+        long position = first * RECORD_SIZE;
+        while (in.hasRemaining()) {
+            int read = channel.read(in, position);
+            if (read < 0)
+                throw new IOException("Spill file truncated");
+            position += read;
+        }
+        in.flip();
+
+        for (int i = from; i < to; i++) {
+            for (int k = 0; k < numPoints[i]; k++)
+                store.addPoint(in.getLong(), in.get(), in.getLong(), in.get());
+            store.endCurve();
+        }
+
+        return store;
+    }
+
+    /**
+     * Deletes the temporary file.
+     *
+     * @throws IOException  If the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        long position = channel.size();
+        while (out.hasRemaining())
+            position += channel.write(out, position);
+        out.clear();
+    }
+}
@@ -0,0 +1,65 @@
+package csu.physics.pv;
+
+/**
+ * Cumulative metrics of one stage of the import pipeline, registered with the platform MBean server as
+ * csu.physics.pv:type=Stage,name=STAGE so a running import can be watched with JConsole, VisualVM or jcmd. See
+ * {@link JVMetrics}.
+ */
+public interface StageMetricsMXBean {
+
+    /**
+     * @return  The number of times the stage ran.
+     */
+    long getCount();
+
+    /**
+     * @return  The bytes read or written by the stage.
+     */
+    long getBytes();
+
+    /**
+     * @return  The J-V points handled by the stage.
+     */
+    long getPoints();
+
+    /**
+     * @return  The total time spent in the stage, in milliseconds.
+     */
+    double getTotalMillis();
+
+    /**
+     * @return  The mean duration, in milliseconds.
+     */
+    double getMeanMillis();
+
+    /**
+     * @return  The longest duration, in milliseconds.
+     */
+    double getMaxMillis();
+
+    /**
+     * @return  The median duration in milliseconds, as the upper bound of its histogram bucket.
+     */
+    double getP50Millis();
+
+    /**
+     * @return  The 99th percentile duration in milliseconds, as the upper bound of its histogram bucket.
+     */
+    double getP99Millis();
+
+    /**
+     * @return  The latency histogram, the number of durations in each bucket of {@link #getHistogramBoundsMicros()}.
+     */
+    long[] getHistogram();
+
+    /**
+     * @return  The exclusive upper bound of each histogram bucket, in microseconds. Bucket k holds durations from
+     *          2^(k-1) up to 2^k microseconds.
+     */
+    long[] getHistogramBoundsMicros();
+
+    /**
+     * Clears all counters and the histogram.
+     */
+    void reset();
+}
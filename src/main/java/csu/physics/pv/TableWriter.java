@@ -0,0 +1,195 @@
+package csu.physics.pv;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Layout of an output file. {@link JVWriter} streams the tables of a {@link JVData} through this interface one cell at
+ * a time, so every layout gets the same tables without an intermediate copy, and a new layout is added by extending
+ * this class and registering it in {@link TableWriter#create(String, Writer)}.
+ *
+ * Each table is started with its columns, then filled row by row, and the output is finished after the last table.
+ * Numbers are formatted by a shared {@link NumberFormatter}, straight into the writer.
+ */
+abstract class TableWriter {
+
+    /**
+     * The names of the layouts, the first being the default.
+     */
+    static final String[] FORMATS = {"tsv", "csv", "jsonl", "json"};
+
+    /**
+     * The tables written. Curves rows have no name, params and analysis rows are named by file and groups rows by
+     * sample, see {@link GroupStats}.
+     */
+    enum Table {
+        CURVES("curves", false),
+        PARAMS("params", true),
+        GROUPS("groups", true),
+        ANALYSIS("analysis", true);
+
+        final String label;
+        final boolean named;
+
+        Table(String label, boolean named) {
+            this.label = label;
+            this.named = named;
+        }
+    }
+
+    protected final Writer out;
+    protected final NumberFormatter numbers;
+    private final boolean infinities;
+
+    /**
+     * Constructor.
+     *
+     * @param out   The writer to write to, which should be buffered and is not closed.
+     */
+    TableWriter(Writer out) {
+        this(out, true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param out           The writer to write to, which should be buffered and is not closed.
+     * @param infinities    Whether the layout has infinite numbers, which are written as empty cells otherwise.
+     */
+    TableWriter(Writer out, boolean infinities) {
+        this.out = out;
+        this.infinities = infinities;
+        numbers = new NumberFormatter();
+    }
+
+    /**
+     * Creates the writer of a layout.
+     *
+     * @param format    The name of the layout, see {@link TableWriter#FORMATS}.
+     * @param out       The writer to write to, which should be buffered and is not closed.
+     * @return          The table writer.
+     * @throws IllegalArgumentException If there is no layout of the name.
+     */
+    static TableWriter create(String format, Writer out) {
+
+        switch (format) {
+            case "tsv":
+                return new TsvTableWriter(out);
+            case "csv":
+                return new CsvTableWriter(out);
+            case "jsonl":
+                return new JsonLinesTableWriter(out);
+            case "json":
+                return new JsonTableWriter(out);
+            default:
+                throw new IllegalArgumentException("Unknown output format " + format);
+        }
+    }
+
+    /**
+     * Starts a table.
+     *
+     * @param table     The table.
+     * @param columns   The column names, not counting the row name of named tables.
+     * @throws IOException  If the output could not be written.
+     */
+    abstract void startTable(Table table, String[] columns) throws IOException;
+
+    /**
+     * Starts a row.
+     *
+     * @param name  The row name, or null in the curves table.
+     * @throws IOException  If the output could not be written.
+     */
+    abstract void startRow(String name) throws IOException;
+
+    /**
+     * Writes a number cell from the first characters of a buffer.
+     *
+     * @param chars     The buffer.
+     * @param length    The number of characters.
+     * @throws IOException  If the output could not be written.
+     */
+    abstract void number(char[] chars, int length) throws IOException;
+
+    /**
+     * Writes an empty cell.
+     *
+     * @throws IOException  If the output could not be written.
+     */
+    abstract void empty() throws IOException;
+
+    /**
+     * Ends a row.
+     *
+     * @throws IOException  If the output could not be written.
+     */
+    abstract void endRow() throws IOException;
+
+    /**
+     * Ends a table.
+     *
+     * @throws IOException  If the output could not be written.
+     */
+    abstract void endTable() throws IOException;
+
+    /**
+     * Finishes the output after the last table, for layouts that close a document.
+     *
+     * @throws IOException  If the output could not be written.
+     */
+    void finish() throws IOException {
+        // most layouts end with their last table
+    }
+
+    /**
+     * Writes a number cell rounded to a number of decimal places, see {@link NumberFormatter#format(double, int)}.
+     *
+     * @param value The value.
+     * @param scale The number of decimal places.
+     * @throws IOException  If the output could not be written.
+     */
+    void number(double value, int scale) throws IOException {
+        int length = numbers.format(value, scale);     // may grow the buffer, so before chars()
+        number(numbers.chars(), length);
+    }
+
+    /**
+     * Writes a fixed point number cell exactly, see {@link NumberFormatter#format(long, int)}.
+     *
+     * @param unscaled  The value times 10^scale.
+     * @param scale     The number of decimal places.
+     * @throws IOException  If the output could not be written.
+     */
+    void decimal(long unscaled, int scale) throws IOException {
+        int length = numbers.format(unscaled, scale);
+        number(numbers.chars(), length);
+    }
+
+    /**
+     * Writes a number cell with five significant digits, or an empty cell for NaN and, in layouts without them,
+     * infinities.
+     *
+     * @param value The value.
+     * @throws IOException  If the output could not be written.
+     */
+    void significant(double value) throws IOException {
+        if (Double.isNaN(value) || (!infinities && Double.isInfinite(value))) {
+            empty();
+        } else {
+            int length = numbers.formatSignificant(value);
+            number(numbers.chars(), length);
+        }
+    }
+
+    /**
+     * Writes a number cell that is already text.
+     *
+     * @param text  The number.
+     * @throws IOException  If the output could not be written.
+     */
+    void number(String text) throws IOException {
+        int length = numbers.copy(text);
+        number(numbers.chars(), length);
+    }
+}
@@ -0,0 +1,289 @@
+package csu.physics.pv;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sequential reader of the regular files of a tar archive, as written by tar, GNU tar and most archivers (ustar, with
+ * GNU long names and pax path and size records). Each entry is read straight from the archive stream, which may itself
+ * be decompressed on the fly, eg. for .tar.gz.
+ */
+class TarReader {
+
+    private static final int BLOCK = 512;
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK];
+    private final byte[] scratch = new byte[8192];
+
+    private String name;
+    private long size;
+    private long remaining;     // bytes of the current entry not yet read
+    private long padding;       // bytes after the current entry up to the next header
+
+    /**
+     * Constructor.
+     *
+     * @param in    The archive stream, which is not closed by the reader.
+     */
+    TarReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Moves to the next regular file, skipping the rest of the current one and any directories, links or other
+     * entries.
+     *
+     * @return  False at the end of the archive.
+     * @throws IOException  If the archive cannot be read or is not a tar archive.
+     */
+    boolean next() throws IOException {
+
+        skip(remaining + padding);
+        remaining = 0;
+        padding = 0;
+
+        String longName = null;
+        long paxSize = -1;
+
+        while (true) {
+            if (!readHeader())
+                return false;
+
+            long entrySize = parseSize();
+            long entryPadding = (BLOCK - entrySize % BLOCK) % BLOCK;
+            byte type = header[156];
+
+            if (type == 'L' || type == 'x') {
+                // the name, or pax records, of the next entry
+                byte[] data = readFully(entrySize);
+                skip(entryPadding);
+                if (type == 'L') {
+                    longName = cString(data, 0, data.length);
+                } else {
+                    String path = paxRecord(data, "path");
+                    String paxLength = paxRecord(data, "size");
+                    if (path != null)
+                        longName = path;
+                    if (paxLength != null)
+                        paxSize = Long.parseLong(paxLength);
+                }
+                continue;
+            }
+
+            if (paxSize >= 0) {
+                entrySize = paxSize;
+                entryPadding = (BLOCK - entrySize % BLOCK) % BLOCK;
+            }
+
+            if (type == '0' || type == 0 || type == '7') {
+                name = longName != null ? longName : headerName();
+                size = entrySize;
+                remaining = entrySize;
+                padding = entryPadding;
+                return true;
+            }
+
+            // not a regular file
+            skip(entrySize + entryPadding);
+            longName = null;
+            paxSize = -1;
+        }
+    }
+
+    /**
+     * Returns the path of the current entry in the archive.
+     *
+     * @return  The path, with / separators.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the size of the current entry.
+     *
+     * @return  The size in bytes.
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns a stream of the contents of the current entry, ending at the end of the entry. Closing it does not close
+     * the archive.
+     *
+     * @return  The stream, valid until the next call of {@link TarReader#next()}.
+     */
+    InputStream getEntry() {
+
+        return new FilterInputStream(in) {
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining == 0)
+                    return -1;
+                int n = in.read(b, off, (int) Math.min(len, remaining));
+                if (n < 0)
+                    throw new EOFException("Tar entry " + name + " truncated");
+                remaining -= n;
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = Math.min(n, remaining);
+                TarReader.this.skip(skipped);
+                remaining -= skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() throws IOException {
+                return (int) Math.min(in.available(), remaining);
+            }
+
+            @Override
+            public void close() {
+                // the archive stays open for the next entry
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    /*
+    Reads the next header block, returning false at the end of archive marker or the end of the stream.
+     */
+    private boolean readHeader() throws IOException {
+
+        int n = 0;
+        while (n < BLOCK) {
+            int read = in.read(header, n, BLOCK - n);
+            if (read < 0) {
+                if (n == 0)
+                    return false;
+                throw new EOFException("Tar archive truncated");
+            }
+            n += read;
+        }
+
+        // a zero block ends the archive
+        long sum = 0;
+        boolean zero = true;
+        for (int i = 0; i < BLOCK; i++) {
+            int b = header[i] & 0xFF;
+            zero &= b == 0;
+            sum += i >= 148 && i < 156 ? ' ' : b;
+        }
+        if (zero)
+            return false;
+
+        if (sum != parseOctal(148, 8))
+            throw new IOException("Not a tar archive, bad header checksum");
+        return true;
+    }
+
+    /*
+    The path from the name field, prefixed by the ustar prefix field when there is one.
+     */
+    private String headerName() {
+        String entry = cString(header, 0, 100);
+        boolean ustar = header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a'
+                && header[261] == 'r';
+        String prefix = ustar ? cString(header, 345, 155) : "";
+        return prefix.isEmpty() ? entry : prefix + "/" + entry;
+    }
+
+    /*
+    The size field, in octal or in the base-256 form GNU tar uses for sizes over 8 GB.
+     */
+    private long parseSize() throws IOException {
+        if ((header[124] & 0x80) == 0)
+            return parseOctal(124, 12);
+        long value = 0;
+        for (int i = 125; i < 136; i++)
+            value = (value << 8) | (header[i] & 0xFF);
+        return value;
+    }
+
+    private long parseOctal(int off, int len) throws IOException {
+        long value = 0;
+        int end = off + len;
+        int i = off;
+        while (i < end && (header[i] == ' ' || header[i] == 0))
+            i++;
+        for (; i < end && header[i] >= '0' && header[i] <= '7'; i++)
+            value = value * 8 + (header[i] - '0');
+        if (i < end && header[i] != ' ' && header[i] != 0)
+            throw new IOException("Not a tar archive, bad number in header");
+        return value;
+    }
+
+    /*
+    Finds a record in pax extended header data, made of "length key=value\n" records.
+     */
+    private static String paxRecord(byte[] data, String key) {
+        int i = 0;
+        while (i < data.length) {
+            int space = i;
+            while (space < data.length && data[space] != ' ')
+                space++;
+            if (space == data.length)
+                break;
+            int length = Integer.parseInt(new String(data, i, space - i, StandardCharsets.US_ASCII));
+            if (length <= 0 || i + length > data.length)
+                break;
+            String record = new String(data, space + 1, i + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith(key + "="))
+                return record.substring(key.length() + 1);
+            i += length;
+        }
+        return null;
+    }
+
+    private static String cString(byte[] bytes, int off, int len) {
+        int end = off;
+        while (end < off + len && bytes[end] != 0)
+            end++;
+        return new String(bytes, off, end - off, StandardCharsets.UTF_8);
+    }
+
+    private byte[] readFully(long n) throws IOException {
+        if (n > Integer.MAX_VALUE)
+            throw new IOException("Tar header too large");
+        byte[] data = new byte[(int) n];
+        int off = 0;
+        while (off < data.length) {
+            int read = in.read(data, off, data.length - off);
+            if (read < 0)
+                throw new EOFException("Tar archive truncated");
+            off += read;
+        }
+        return data;
+    }
+
+    /*
+    Skips bytes by reading them, since skip() of a decompressing stream may skip less than asked before the end.
+     */
+    private void skip(long n) throws IOException {
+        while (n > 0) {
+            int read = in.read(scratch, 0, (int) Math.min(scratch.length, n));
+            if (read < 0)
+                throw new EOFException("Tar archive truncated");
+            n -= read;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package csu.physics.pv;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The tab separated layout the importer has always written. Every curves cell is followed by a tab, named tables have
+ * an empty first header cell, the curves table is followed by two blank lines and the groups and analysis tables are
+ * preceded by one blank line.
+ */
+class TsvTableWriter extends TableWriter {
+
+    private Table table;
+
+    TsvTableWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    void startTable(Table table, String[] columns) throws IOException {
+
+        this.table = table;
+        if (table == Table.GROUPS || table == Table.ANALYSIS)
+            out.write('\n');
+
+        for (String column : columns) {
+            if (table.named) {
+                out.write('\t');
+                out.write(column);
+            } else {
+                out.write(column);
+                out.write('\t');
+            }
+        }
+        out.write('\n');
+    }
+
+    @Override
+    void startRow(String name) throws IOException {
+        if (name != null) {
+            out.write(name);
+            out.write('\t');
+        }
+    }
+
+    @Override
+    void number(char[] chars, int length) throws IOException {
+        out.write(chars, 0, length);
+        out.write('\t');
+    }
+
+    @Override
+    void empty() throws IOException {
+        out.write('\t');
+    }
+
+    @Override
+    void endRow() throws IOException {
+        out.write('\n');
+    }
+
+    @Override
+    void endTable() throws IOException {
+        if (table == Table.CURVES)
+            out.write("\n\n");
+    }
+}
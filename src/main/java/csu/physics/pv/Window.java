@@ -7,7 +7,12 @@ import java.awt.event.*;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class Window extends JPanel {
 
@@ -19,17 +24,34 @@ public class Window extends JPanel {
     private JPanel leftPanel, rightPanel;
     private JScrollPane listScroller;
     private JTextField dirField;
+    private JLabel summaryLabel;
+    private JList<String> fileList;
 
-    private String [] fileNames;
-    private File [] filePaths;
+    // the selected files
+    private final FileListModel fileModel = new FileListModel();
     private JVReader reader;
     private JVWriter writer;
 
+    // progress of a running import
+    private JButton goButton, cancelButton;
+    private JProgressBar progressBar;
+    private JLabel progressLabel;
+    private ImportWorker worker;
+    private ScanWorker scanWorker;
+
+    // cache of parsed files, off unless chosen
+    private static final File CACHE_DIR = new File(System.getProperty("user.home"),
+            ".jv-importer" + File.separator + "cache");
+    private static final long CACHE_SIZE = 512L * 1024 * 1024;
+    private boolean useCache = false;
+
     // input format
-    private String dataFormat = "physics";
+    private String dataFormat = "auto";
     // output format
     private boolean printCurves = true;
     private boolean printParams = true;
+    private boolean printAnalysis = false;
+    private boolean printGroups = false;
 
 
     /**
@@ -72,6 +94,7 @@ public class Window extends JPanel {
         createGoButton();
         createDirField();
         createScroller();
+        createProgressPanel();
 
         // set UI theme
         try {
@@ -88,7 +111,8 @@ public class Window extends JPanel {
     }
 
     /**
-     * Creates the "Select Files" and "Clear Files" buttons and updates the directory and file list in the UI.
+     * Creates the "Select Files", "Scan Folder", "Remove Files" and "Clear Files" buttons and updates the directory and
+     * file list in the UI.
      */
     private void createFilesButtons() {
 
@@ -103,23 +127,61 @@ public class Window extends JPanel {
                 fileChooser.setMultiSelectionEnabled(true);
                 fileChooser.setAcceptAllFileFilterUsed(false);
 
-                // Add the files to the scroller, otherwise throw a warning
+                // Add the files to the selection
                 if (fileChooser.showOpenDialog(Window.this) == JFileChooser.APPROVE_OPTION) {
-                    filePaths = fileChooser.getSelectedFiles();
-                    updateFileNames();
+                    File[] added = fileModel.addAll(fileChooser.getSelectedFiles());
                     updateDirField();
-                    updateScroller();
+                    sizeFiles(added);
                 }
             }
         }
 
+        class ScanFolderListener implements ActionListener {
+
+            public void actionPerformed(ActionEvent e) {
+
+                if (scanWorker != null) {
+                    JOptionPane.showMessageDialog(panel,
+                            "A folder is being scanned",
+                            "Warning",
+                            JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
+
+                // Setup the folder choosing dialog
+                JFileChooser fileChooser = new JFileChooser();
+                fileChooser.setCurrentDirectory(new java.io.File(""));
+                fileChooser.setDialogTitle("Scan J-V Folder");
+                fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+                if (fileChooser.showOpenDialog(Window.this) != JFileChooser.APPROVE_OPTION)
+                    return;
+
+                DirectoryScan scan = askFilters(fileChooser.getSelectedFile());
+                if (scan != null) {
+                    scanWorker = new ScanWorker(scan);
+                    scanWorker.execute();
+                }
+            }
+        }
+
+        class RemoveFilesListener implements ActionListener {
+
+            public void actionPerformed(ActionEvent e) {
+
+                fileModel.remove(fileList.getSelectedIndices());
+                fileList.clearSelection();
+                updateDirField();
+
+            }
+        }
+
         class ClearFilesListener implements ActionListener {
 
             public void actionPerformed(ActionEvent e) {
 
-                fileNames = new String[0];
-                filePaths = new File[0];
-                updateScroller();
+                if (scanWorker != null)
+                    scanWorker.stop();
+                fileModel.clear();
                 updateDirField();
 
             }
@@ -139,6 +201,16 @@ public class Window extends JPanel {
         selectButton.setFocusPainted(false);
         selectButton.addActionListener(new SelectFilesListener());
 
+        JButton scanButton = new JButton("Scan Folder");
+        scanButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        scanButton.setFocusPainted(false);
+        scanButton.addActionListener(new ScanFolderListener());
+
+        JButton removeButton = new JButton("Remove Files");
+        removeButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        removeButton.setFocusPainted(false);
+        removeButton.addActionListener(new RemoveFilesListener());
+
         JButton clearButton = new JButton("Clear Files");
         clearButton.setAlignmentX(Component.CENTER_ALIGNMENT);
         clearButton.setFocusPainted(false);
@@ -148,14 +220,197 @@ public class Window extends JPanel {
         filesPanel.add(Box.createVerticalGlue());
         filesPanel.add(selectButton);
         filesPanel.add(Box.createVerticalGlue());
+        filesPanel.add(scanButton);
+        filesPanel.add(Box.createVerticalGlue());
+        filesPanel.add(removeButton);
+        filesPanel.add(Box.createVerticalGlue());
         filesPanel.add(clearButton);
         filesPanel.add(Box.createVerticalGlue());
         leftPanel.add(filesPanel);
     }
 
     /**
-     * Creates radio buttons for the input format (physics, engineering, etc.) and updates the dataFormat flag
-     * appropriately.
+     * Asks for the filters of a folder scan.
+     *
+     * @param folder    The folder to scan.
+     * @return          The scan, not yet started, or null if cancelled.
+     */
+    private DirectoryScan askFilters(File folder) {
+
+        JTextField includeField = new JTextField(20);
+        JTextField excludeField = new JTextField(20);
+        JTextField afterField = new JTextField(20);
+        JTextField beforeField = new JTextField(20);
+
+        JPanel filterPanel = new JPanel(new GridLayout(0, 2, 5, 5));
+        filterPanel.add(new JLabel("Include (globs)"));
+        filterPanel.add(includeField);
+        filterPanel.add(new JLabel("Exclude (globs)"));
+        filterPanel.add(excludeField);
+        filterPanel.add(new JLabel("Modified after (YYYY-MM-DD)"));
+        filterPanel.add(afterField);
+        filterPanel.add(new JLabel("Modified before (YYYY-MM-DD)"));
+        filterPanel.add(beforeField);
+
+        while (JOptionPane.showConfirmDialog(frame, filterPanel, "Scan " + folder.getName(),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) == JOptionPane.OK_OPTION) {
+
+            DirectoryScan scan = new DirectoryScan(new File[]{folder}, Runtime.getRuntime().availableProcessors());
+            try {
+                // globs are separated by spaces
+                for (String glob : includeField.getText().trim().split("\\s+"))
+                    if (!glob.isEmpty())
+                        scan.include(glob);
+                for (String glob : excludeField.getText().trim().split("\\s+"))
+                    if (!glob.isEmpty())
+                        scan.exclude(glob);
+                if (!afterField.getText().trim().isEmpty())
+                    scan.setModifiedAfter(DirectoryScan.parseTime(afterField.getText().trim()));
+                if (!beforeField.getText().trim().isEmpty())
+                    scan.setModifiedBefore(DirectoryScan.parseTime(beforeField.getText().trim()));
+                return scan;
+            } catch (IllegalArgumentException e) {
+                scan.close();
+                JOptionPane.showMessageDialog(frame,
+                        e.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Scans a folder tree on a background thread, adding the files to the list as they are found. An import started
+     * during the scan is fed the files still to come through a {@link FileFeed}.
+     */
+    private class ScanWorker extends SwingWorker<Void, File> {
+
+        private final DirectoryScan scan;
+        private final ConcurrentLinkedQueue<File> found = new ConcurrentLinkedQueue<>();
+        private FileFeed feed;
+
+        ScanWorker(DirectoryScan scan) {
+            this.scan = scan;
+        }
+
+        /*
+        Hands the files found from now on to an import as well, on the event thread.
+         */
+        void setFeed(FileFeed feed) {
+            this.feed = feed;
+        }
+
+        /*
+        Stops the scan, keeping the files found so far.
+         */
+        void stop() {
+            scan.close();
+            cancel(true);
+        }
+
+        @Override
+        protected Void doInBackground() throws IOException {
+            try {
+                File file;
+                while ((file = scan.next()) != null && !isCancelled()) {
+                    found.add(file);
+                    publish(file);
+                }
+            } finally {
+                scan.close();
+            }
+            return null;
+        }
+
+        /*
+        Lists the files found since last called. Published chunks may still be pending when done() is called, so the
+        files are taken from the found queue, not from the chunks, and done() takes the last of them before ending
+        the feed.
+         */
+        private void addFound() {
+
+            ArrayList<File> files = new ArrayList<>();
+            File file;
+            while ((file = found.poll()) != null)
+                files.add(file);
+            if (files.isEmpty())
+                return;
+
+            File[] added = fileModel.addAll(files.toArray(new File[files.size()]));
+            updateDirField();
+            sizeFiles(added);
+            if (feed != null)
+                feed.add(added);
+        }
+
+        @Override
+        protected void process(java.util.List<File> chunks) {
+            // once done, done() lists the rest
+            if (!isDone())
+                addFound();
+        }
+
+        @Override
+        protected void done() {
+
+            addFound();
+            scanWorker = null;
+            if (feed != null)
+                feed.close();
+
+            try {
+                get();
+            } catch (CancellationException | InterruptedException e) {
+                // cleared
+            } catch (ExecutionException e) {
+                JOptionPane.showMessageDialog(frame,
+                        "Scan stopped: " + e.getCause().getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * The files of an import started while a folder is scanned: the files listed when it started, then the files
+     * found after, until the scan ends.
+     */
+    private static final class FileFeed implements JVInput.FileSource {
+
+        private static final File END = new File("");
+
+        private final LinkedBlockingQueue<File> queue = new LinkedBlockingQueue<>();
+        private volatile boolean ended;
+
+        void add(File[] files) {
+            for (File file : files)
+                queue.add(file);
+        }
+
+        void close() {
+            queue.add(END);
+        }
+
+        public File next() throws IOException {
+
+            if (ended)
+                return null;
+            try {
+                File file = queue.take();
+                ended = file == END;
+                return ended ? null : file;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Import was interrupted");
+            }
+        }
+    }
+
+    /**
+     * Creates radio buttons for the input format (auto-detect, physics, engineering, etc.) and updates the dataFormat
+     * flag appropriately.
      */
     private void createFormatSelection() {
 
@@ -164,7 +419,9 @@ public class Window extends JPanel {
             public void actionPerformed(ActionEvent e) {
 
                 // update dataFormat depending on which radio button was selected
-                if ("physics".equals(e.getActionCommand())) {
+                if ("auto".equals(e.getActionCommand())) {
+                    dataFormat = "auto";
+                } else if ("physics".equals(e.getActionCommand())) {
                     dataFormat = "physics";
                 } else if ("engr".equals(e.getActionCommand())) {
                     dataFormat = "engr";
@@ -173,12 +430,18 @@ public class Window extends JPanel {
         }
 
         // create the buttons
+        JRadioButton autoButton = new JRadioButton("Auto-detect");
+        autoButton.setBorder(new EmptyBorder(10,10,5,10));
+        autoButton.addActionListener(new SelectFormatListener());
+        autoButton.setActionCommand("auto");
+        autoButton.setFocusPainted(false);
+        autoButton.setSelected(true);
+
         JRadioButton physButton = new JRadioButton("Physics");
-        physButton.setBorder(new EmptyBorder(10,10,5,10));
+        physButton.setBorder(new EmptyBorder(0,10,5,10));
         physButton.addActionListener(new SelectFormatListener());
         physButton.setActionCommand("physics");
         physButton.setFocusPainted(false);
-        physButton.setSelected(true);
 
         JRadioButton engrButton = new JRadioButton("ERC");
         engrButton.setBorder(new EmptyBorder(0,10,0,10));
@@ -188,6 +451,7 @@ public class Window extends JPanel {
 
         // group buttons
         ButtonGroup group = new ButtonGroup();
+        group.add(autoButton);
         group.add(physButton);
         group.add(engrButton);
 
@@ -201,18 +465,22 @@ public class Window extends JPanel {
         radioPanel.setBorder(title);
 
         // add the buttons
+        radioPanel.add(autoButton);
         radioPanel.add(physButton);
         radioPanel.add(engrButton);
         leftPanel.add(radioPanel);
     }
 
     /**
-     * Sets the print options to be used by {@link JVWriter}.
+     * Sets the print options to be used by {@link JVWriter}, and whether parsed files are cached.
      */
     private void createOutputSelection() {
 
         final JCheckBox curvesButton = new JCheckBox("Curves");
         final JCheckBox summaryButton = new JCheckBox("Summary");
+        final JCheckBox analysisButton = new JCheckBox("Computed parameters");
+        final JCheckBox groupsButton = new JCheckBox("Sample statistics");
+        final JCheckBox cacheButton = new JCheckBox("Cache parsed files");
 
         class OutputSelectionListener implements ItemListener {
 
@@ -226,6 +494,12 @@ public class Window extends JPanel {
                     printCurves = true;
                 } else if (source == summaryButton) {
                     printParams = true;
+                } else if (source == analysisButton) {
+                    printAnalysis = true;
+                } else if (source == groupsButton) {
+                    printGroups = true;
+                } else if (source == cacheButton) {
+                    useCache = true;
                 }
 
                 // if the button was deselected, toggle the print token to false
@@ -235,6 +509,12 @@ public class Window extends JPanel {
                         printCurves = false;
                     } else if (source == summaryButton) {
                         printParams = false;
+                    } else if (source == analysisButton) {
+                        printAnalysis = false;
+                    } else if (source == groupsButton) {
+                        printGroups = false;
+                    } else if (source == cacheButton) {
+                        useCache = false;
                     }
                 }
 
@@ -249,6 +529,15 @@ public class Window extends JPanel {
         summaryButton.setSelected(true);
         summaryButton.addItemListener(new OutputSelectionListener());
 
+        // computed parameters and statistics per sample are off by default
+        analysisButton.addItemListener(new OutputSelectionListener());
+        groupsButton.addItemListener(new OutputSelectionListener());
+
+        // the cache writes to the home folder, so it is off until chosen
+        cacheButton.setToolTipText("Keep up to " + (CACHE_SIZE >> 20) + " MB of parsed files in " + CACHE_DIR
+                + ", so files imported again load faster");
+        cacheButton.addItemListener(new OutputSelectionListener());
+
         // make a sub-panel
         JPanel outputPanel = new JPanel();
         outputPanel.setLayout(new BoxLayout(outputPanel, BoxLayout.Y_AXIS));
@@ -261,6 +550,9 @@ public class Window extends JPanel {
         // add the buttons
         outputPanel.add(curvesButton);
         outputPanel.add(summaryButton);
+        outputPanel.add(analysisButton);
+        outputPanel.add(groupsButton);
+        outputPanel.add(cacheButton);
         leftPanel.add(outputPanel);
 
     }
@@ -273,67 +565,47 @@ public class Window extends JPanel {
         class GoListener implements ActionListener {
 
             public void actionPerformed(ActionEvent e) {
-                // begin by reading the files in
-                reader = new JVReader();
-                try {
-
-                    if (filePaths == null || filePaths.length == 0) {
-                        JOptionPane.showMessageDialog(panel,
-                                "No files were selected",
-                                "Warning",
-                                JOptionPane.WARNING_MESSAGE);
-                        return;
-                    }
-                    reader.read(filePaths);
-                } catch (IOException e1) {
-                    e1.printStackTrace();
-                }
-
-                // convert data into appropriate JVData type
-                JVData data = null;
-                if (dataFormat.equals("physics")) {
-                    data = new PhysicsData(reader.getFileData());
-                } else if (dataFormat.equals("engr")) {
-                    data = new EngrData(reader.getFileData());
-                }
 
-                if (data == null || !data.isValidData()) {
-                    JOptionPane.showMessageDialog(frame,
-                            "Invalid input, check files and try again",
-                            "Error",
-                            JOptionPane.ERROR_MESSAGE);
+                if (fileModel.getSize() == 0) {
+                    JOptionPane.showMessageDialog(panel,
+                            "No files were selected",
+                            "Warning",
+                            JOptionPane.WARNING_MESSAGE);
                     return;
                 }
 
-                // pass file names and extract param and curves data
-                data.setFileNames(fileNames);
-                data.extractData();
+                // prompt for save location first, the import then runs without further questions
+                JFileChooser fileChooser = new JFileChooser();
+                if (fileChooser.showSaveDialog(null) != JFileChooser.APPROVE_OPTION)
+                    return;
+                File file = new File(fileChooser.getSelectedFile().getPath() + ".txt");
 
-                // setup the writer
-                writer = new JVWriter(data);
                 // set the print options
                 ArrayList<Boolean> printOptions = new ArrayList<>();
                 printOptions.add(printCurves);
                 printOptions.add(printParams);
-                writer.setPrintOptions(printOptions);
-                // do it
-                boolean success = writer.write();
-
-                // display dialog reporting results
-                if (success) {
-
-                    JOptionPane.showMessageDialog(frame,
-                            "J-V import complete",
-                            "Success",
-                            JOptionPane.PLAIN_MESSAGE);
-
-                } else {
-                    JOptionPane.showMessageDialog(frame,
-                            "Process cancelled",
-                            "Error",
-                            JOptionPane.ERROR_MESSAGE);
+                printOptions.add(printAnalysis);
+                printOptions.add(printGroups);
+
+                // run the import in the background
+                goButton.setEnabled(false);
+                cancelButton.setEnabled(true);
+                File[] files = fileModel.getFiles();
+                progressBar.setMaximum(files.length);
+                progressBar.setValue(0);
+                progressLabel.setText("Reading " + files.length + " files");
+
+                // during a scan, files found later are read as well
+                FileFeed feed = null;
+                if (scanWorker != null) {
+                    feed = new FileFeed();
+                    feed.add(files);
+                    scanWorker.setFeed(feed);
+                    progressLabel.setText("Reading files as they are found");
                 }
 
+                worker = new ImportWorker(files, feed, dataFormat, file, printOptions, useCache);
+                worker.execute();
             }
         }
 
@@ -343,7 +615,7 @@ public class Window extends JPanel {
         goPanel.setBorder(new EmptyBorder(10,10,10,10));
 
         // Create button
-        JButton goButton = new JButton("Go!");
+        goButton = new JButton("Go!");
         goButton.addActionListener(new GoListener());
         goButton.setPreferredSize(new Dimension(80,50));
         goButton.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -356,79 +628,274 @@ public class Window extends JPanel {
     }
 
     /**
-     * Creates the Component that displays the current directory of selected files.
+     * Creates the Component that shows the progress of a running import, with a button to cancel it.
+     */
+    private void createProgressPanel() {
+
+        class CancelListener implements ActionListener {
+
+            public void actionPerformed(ActionEvent e) {
+                if (worker != null) {
+                    worker.stop();
+                    cancelButton.setEnabled(false);
+                    progressLabel.setText("Cancelling...");
+                }
+            }
+        }
+
+        progressLabel = new JLabel(" ");
+        progressBar = new JProgressBar();
+        progressBar.setStringPainted(true);
+
+        cancelButton = new JButton("Cancel");
+        cancelButton.setFocusPainted(false);
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(new CancelListener());
+
+        // make a sub-panel
+        JPanel progressPanel = new JPanel();
+        progressPanel.setLayout(new BorderLayout(5, 5));
+        progressPanel.setBorder(new EmptyBorder(10, 0, 0, 0));
+        progressPanel.add(progressLabel, BorderLayout.PAGE_START);
+        progressPanel.add(progressBar, BorderLayout.CENTER);
+        progressPanel.add(cancelButton, BorderLayout.LINE_END);
+        rightPanel.add(progressPanel, BorderLayout.PAGE_END);
+    }
+
+    /**
+     * Reads, parses and writes the selected files on a background thread, so the window stays responsive during large
+     * imports. Progress and throughput are shown after each file. A cancelled import stops before the next file and
+     * writes nothing; once writing has begun the outputs are completed, and {@link JVWriter#write(File)} never leaves a
+     * partial file behind.
+     */
+    private class ImportWorker extends SwingWorker<Void, Integer> implements JVReader.Progress {
+
+        private final File[] files;
+        private final FileFeed feed;
+        private final String format;
+        private final File output;
+        private final ArrayList<Boolean> printOptions;
+        private final boolean useCache;
+
+        private final long start = System.nanoTime();
+        private volatile long bytesRead;
+        private volatile boolean stopped;
+        private volatile int total;
+        private int imported;
+
+        ImportWorker(File[] files, FileFeed feed, String format, File output, ArrayList<Boolean> printOptions,
+                     boolean useCache) {
+            this.files = files;
+            this.feed = feed;
+            total = feed != null ? -1 : files.length;
+            this.format = format;
+            this.output = output;
+            this.printOptions = printOptions;
+            this.useCache = useCache;
+        }
+
+        /*
+        Asks the import to stop at the next file.
+         */
+        void stop() {
+            stopped = true;
+            if (feed != null)
+                feed.close();
+        }
+
+        public boolean shouldStop() {
+            return stopped;
+        }
+
+        public void fileRead(File file, long bytes, int done, int total) {
+            bytesRead += Math.max(0, bytes);
+            this.total = total;
+            publish(done);
+        }
+
+        @Override
+        protected Void doInBackground() throws IOException {
+
+            reader = new JVReader();
+            reader.setThreads(Runtime.getRuntime().availableProcessors());
+            reader.setProgress(this);
+            reader.setReadCurves(JVWriter.needsCurves(printOptions));
+
+            // files imported before are loaded from the cache of parsed files, if chosen
+            if (useCache) {
+                try {
+                    reader.setCache(new ParseCache(CACHE_DIR, CACHE_SIZE));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            // stream the files through the parser of the selected format, or of the format detected for each
+            // file, extracting param and curves data
+            ArrayList<JVData> batches = new ArrayList<>();
+            boolean isValid = false;
+            try {
+                JVInput.Listing listing = feed != null ? new JVInput.Listing(feed) : new JVInput.Listing(files);
+                if (format.equals("auto")) {
+                    batches = reader.read(listing, JVFormats.defaults());
+                    isValid = !batches.isEmpty();
+                } else {
+                    JVData data = JVFormats.defaults().get(format).newInstance();
+                    isValid = reader.read(listing, data);
+                    batches.add(data);
+                }
+            } catch (CancellationException e) {
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+
+            if (!isValid)
+                throw new IllegalArgumentException("Invalid input, check files and try again");
+            if (stopped)
+                throw new CancellationException();
+            for (JVData data : batches)
+                imported += data.getFileNames().length;
+
+            // write, one file per format
+            for (JVData data : batches) {
+                writer = new JVWriter(data);
+                writer.setPrintOptions(printOptions);
+                File file = batches.size() > 1 ? JVWriter.formatFile(output, data) : output;
+                if (!writer.write(file))
+                    throw new IOException("Cannot write " + file);
+            }
+
+            return null;
+        }
+
+        @Override
+        protected void process(java.util.List<Integer> chunks) {
+
+            int done = chunks.get(chunks.size() - 1);
+            double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-3);
+            progressBar.setIndeterminate(total < 0);
+            progressBar.setMaximum(Math.max(total, 0));
+            progressBar.setValue(done);
+            progressLabel.setText(String.format("%d of %s files, %.0f files/s, %.1f MB/s", done,
+                    total < 0 ? "?" : String.valueOf(total), done / seconds, bytesRead / seconds / (1024 * 1024)));
+        }
+
+        @Override
+        protected void done() {
+
+            goButton.setEnabled(true);
+            cancelButton.setEnabled(false);
+            worker = null;
+
+            // display dialog reporting results
+            try {
+                get();
+                progressLabel.setText(String.format("Imported %d files in %.1f s",
+                        imported, (System.nanoTime() - start) / 1e9));
+
+                // warn about files of no known format, which were left out
+                int rejected = reader.getRejectedFiles().size();
+                if (rejected > 0) {
+                    JOptionPane.showMessageDialog(frame,
+                            rejected + " file(s) of unknown format were skipped",
+                            "Warning",
+                            JOptionPane.WARNING_MESSAGE);
+                }
+
+                JOptionPane.showMessageDialog(frame,
+                        "J-V import complete",
+                        "Success",
+                        JOptionPane.PLAIN_MESSAGE);
+
+            } catch (ExecutionException | CancellationException | InterruptedException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                String message = cause instanceof CancellationException ? "Process cancelled, nothing was written"
+                        : cause.getMessage();
+                progressLabel.setText(message);
+                JOptionPane.showMessageDialog(frame,
+                        message,
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * Creates the Component that displays the current directory of selected files, with the number and size of the
+     * files below it.
      */
     private void createDirField() {
 
         dirField = new JTextField(20);
         dirField.setEditable(false);
-        rightPanel.add(dirField, BorderLayout.PAGE_START);
+        summaryLabel = new JLabel(fileModel.getSummary());
+        summaryLabel.setBorder(new EmptyBorder(5, 0, 5, 0));
+
+        JPanel dirPanel = new JPanel(new BorderLayout());
+        dirPanel.add(dirField, BorderLayout.PAGE_START);
+        dirPanel.add(summaryLabel, BorderLayout.PAGE_END);
+        rightPanel.add(dirPanel, BorderLayout.PAGE_START);
 
     }
 
     /**
-     * Updates what's displayed in the directory field if the filepath has changed.
+     * Updates the directory field and the summary after the selected files changed.
      */
     private void updateDirField() {
 
-        rightPanel.remove(dirField);
-        String dir = filePaths.length > 0 ? filePaths[0].getPath() : "";
-        dirField = !dir.equals("") ?
-                new JTextField(dir.substring(0, dir.lastIndexOf(File.separator))) : new JTextField();
-        dirField.setEditable(false);
-        rightPanel.add(dirField, BorderLayout.PAGE_START);
-        rightPanel.revalidate();
-        rightPanel.repaint();
+        String dir = fileModel.getSize() > 0 ? fileModel.getFile(0).getPath() : "";
+        dirField.setText(dir.contains(File.separator) ? dir.substring(0, dir.lastIndexOf(File.separator)) : "");
+        summaryLabel.setText(fileModel.getSummary());
 
     }
 
     /**
-     * Updates the list of file names, used after the JScrollPane has been updated with new files.
+     * Looks up the sizes of newly selected files on a background thread, updating the summary once known.
      */
-    private void updateFileNames() {
-        fileNames = new String[filePaths.length];
-        for (int i = 0; i < filePaths.length; i++)
-            fileNames[i] = filePaths[i].getName();
+    private void sizeFiles(final File[] files) {
+
+        if (files.length == 0)
+            return;
+
+        new SwingWorker<long[], Void>() {
+
+            @Override
+            protected long[] doInBackground() {
+                long[] lengths = new long[files.length];
+                for (int i = 0; i < files.length; i++)
+                    lengths[i] = files[i].length();
+                return lengths;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    fileModel.setLengths(files, get());
+                    summaryLabel.setText(fileModel.getSummary());
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
     }
 
     /**
-     * Creates the Component which displays the list of current files.
+     * Creates the Component which displays the list of current files. The list paints only the visible rows of the
+     * model, each row being as high and wide as the prototype, so it is not measured row by row.
      */
     private void createScroller() {
 
         // Add the scroller to files panel
-        JList fileList = new JList();
+        fileList = new JList<>(fileModel);
         fileList.setLayoutOrientation(JList.VERTICAL);
+        fileList.setPrototypeCellValue("cell00_2018-05-01_jvl.txt");
         listScroller = new JScrollPane(fileList,
                 JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
                 JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         rightPanel.add(listScroller, BorderLayout.CENTER);
     }
 
-    /**
-     * Updates the contents of the file scroller if the list of file has been updated.
-     */
-    private void updateScroller() {
-        rightPanel.remove(listScroller);
-
-        // selection model to disable selection in the JScrollPane
-        class DisabledItemSelectionModel extends DefaultListSelectionModel {
-
-            @Override
-            public void setSelectionInterval(int index0, int index1) {
-                super.setSelectionInterval(-1, -1);
-            }
-        }
-
-        updateDirField();
-        JList list = new JList(fileNames);
-        list.setSelectionModel(new DisabledItemSelectionModel());
-        listScroller = new JScrollPane(list);
-        rightPanel.add(listScroller);
-        rightPanel.revalidate();
-        rightPanel.repaint();
-    }
-
     public static void main(String[] args) {
         new Window();
     }
@@ -0,0 +1,30 @@
+package csu.physics.pv;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for one run of a pipeline stage, on one file or on a whole batch. Only loaded when the JVM has
+ * the flight recorder, see {@link StageRecorder}.
+ */
+@Name("csu.physics.pv.Stage")
+@Label("J-V Import Stage")
+@Category("J-V Importer")
+@Description("One stage of the J-V import pipeline on a file or a batch")
+@StackTrace(false)
+class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("File")
+    @Description("The file, empty for a stage run on a whole batch")
+    String file;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Points")
+    @Description("The J-V points handled")
+    long points;
+}
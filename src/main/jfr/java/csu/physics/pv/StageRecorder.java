@@ -0,0 +1,28 @@
+package csu.physics.pv;
+
+/**
+ * Emits a {@link StageEvent} for each timed run of a stage. The only class touching the flight recorder outside the
+ * event itself, loaded by {@link JVMetrics} when the JVM has the flight recorder.
+ */
+class StageRecorder implements JVMetrics.Recorder {
+
+    public Object begin() {
+        StageEvent event = new StageEvent();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+    public void commit(Object started, JVMetrics.Stage stage, String file, long bytes, long points) {
+        StageEvent event = (StageEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = stage.label;
+            event.file = file == null ? "" : file;
+            event.bytes = bytes;
+            event.points = points;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+
+public class CurveStoreTest {
+
+    @Test
+    public void formatsValuesAsRead() {
+
+        String[] values = {"0.500", "-0.000", "1.23E-4", "-21.53012", "1E+2", "0.00000001", "841.2",
+                "0.123456789012345", "-98765.4321098765"};
+
+        CurveStore store = new CurveStore();
+        for (String value : values) {
+            BigDecimal v = new BigDecimal(value);
+            BigDecimal j = v.multiply(new BigDecimal(1000));
+            store.addPoint(v.unscaledValue().longValue(), v.scale(), j.unscaledValue().longValue(), j.scale());
+        }
+        store.endCurve();
+
+        Assert.assertEquals(1, store.getNumCurves());
+        Assert.assertEquals(values.length, store.getNumPoints(0));
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(new BigDecimal(values[i]).toString(), store.formatVoltage(0, i));
+            Assert.assertEquals(new BigDecimal(values[i]).multiply(new BigDecimal(1000)).toString(),
+                    store.formatCurrent(0, i));
+        }
+    }
+
+    @Test
+    public void indexesCurvesByOffset() {
+
+        CurveStore store = new CurveStore();
+        for (int c = 0; c < 40; c++) {
+            for (int p = 0; p < c * 50; p++)
+                store.addPoint(p, 0, c, 0);
+            store.endCurve();
+        }
+
+        Assert.assertEquals(40, store.getNumCurves());
+        Assert.assertEquals(39 * 50, store.getMaxPoints());
+        for (int c = 0; c < 40; c++) {
+            Assert.assertEquals(c * 50, store.getNumPoints(c));
+            if (c > 0) {
+                Assert.assertEquals(c * 50 - 1, store.getVoltage(c, c * 50 - 1), 0);
+                Assert.assertEquals(c, store.getCurrent(c, 0), 0);
+            }
+        }
+    }
+
+    @Test
+    public void convertsToNearestDouble() {
+
+        Random random = new Random(3);
+        for (int i = 0; i < 100000; i++) {
+            long unscaled = random.nextLong() >> random.nextInt(64);
+            int scale = random.nextInt(60) - 20;
+            Assert.assertEquals(BigDecimal.valueOf(unscaled, scale).doubleValue(), CurveStore.toDouble(unscaled, scale),
+                    0);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class DirectoryScanTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void walksTreeInOrder() throws IOException {
+
+        File root = tree();
+        for (int run = 0; run < 5; run++) {
+            try (DirectoryScan scan = new DirectoryScan(new File[]{root}, 4)) {
+                Assert.assertEquals(Arrays.asList("top.txt", "2018-05-01/a_jvl.txt", "2018-05-01/b_jvd.txt",
+                        "2018-05-01/old/c_jvl.txt", "2018-05-02/d_jvl.txt", "2018-05-02/e.zip"), names(root, scan));
+            }
+        }
+    }
+
+    @Test
+    public void filters() throws IOException {
+
+        File root = tree();
+
+        DirectoryScan scan = new DirectoryScan(new File[]{root}, 2);
+        scan.include("*_jvl.txt");
+        scan.exclude("old");
+        Assert.assertEquals(Arrays.asList("2018-05-01/a_jvl.txt", "2018-05-02/d_jvl.txt"), names(root, scan));
+        scan.close();
+
+        scan = new DirectoryScan(new File[]{root}, 2);
+        scan.include("2018-05-0[2-9]/*");
+        Assert.assertEquals(Arrays.asList("2018-05-02/d_jvl.txt", "2018-05-02/e.zip"), names(root, scan));
+        scan.close();
+
+        scan = new DirectoryScan(new File[]{root}, 2);
+        scan.setModifiedAfter(DirectoryScan.parseTime("2018-05-02"));
+        scan.setModifiedBefore(DirectoryScan.parseTime("2018-05-03T00:00"));
+        Assert.assertEquals(Arrays.asList("2018-05-02/d_jvl.txt", "2018-05-02/e.zip"), names(root, scan));
+        scan.close();
+    }
+
+    @Test
+    public void skipsUnreadableFolder() throws IOException {
+
+        File root = tree();
+        File old = new File(root, "2018-05-01/old");
+        Assert.assertTrue(old.setReadable(false));
+        try {
+            Assume.assumeFalse("the user can read any folder", old.canRead());
+            try (DirectoryScan scan = new DirectoryScan(new File[]{root}, 2)) {
+                Assert.assertEquals(Arrays.asList("top.txt", "2018-05-01/a_jvl.txt", "2018-05-01/b_jvd.txt",
+                        "2018-05-02/d_jvl.txt", "2018-05-02/e.zip"), names(root, scan));
+            }
+        } finally {
+            Assert.assertTrue(old.setReadable(true));
+        }
+    }
+
+    @Test
+    public void feedsReader() throws IOException {
+
+        File root = folder.newFolder("data");
+        for (int day = 1; day <= 3; day++) {
+            File dir = new File(root, "2018-05-0" + day);
+            for (int cell = 0; cell < 4; cell++)
+                SampleFiles.write(dir, "cell" + cell + "_jvl.txt", SampleFiles.physics(true, 10 + day));
+        }
+
+        DirectoryScan scan = new DirectoryScan(new File[]{root}, 3);
+        JVReader reader = new JVReader();
+        reader.setThreads(4);
+        JVData data = new PhysicsData();
+        Assert.assertTrue(reader.read(new JVInput.Listing(scan), data));
+        scan.close();
+
+        Assert.assertEquals(12, data.getFileNames().length);
+        Assert.assertEquals("cell0_jvl.txt", data.getFileNames()[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBadTime() {
+        DirectoryScan.parseTime("May 2018");
+    }
+
+    /*
+    A tree of dated folders, each file modified on the day of its folder.
+     */
+    private File tree() throws IOException {
+
+        File root = folder.newFolder("data");
+        touch(SampleFiles.write(root, "top.txt", "top"), "2018-04-30");
+        touch(SampleFiles.write(root, "notes.log", "notes"), "2018-04-30");
+        File first = new File(root, "2018-05-01");
+        touch(SampleFiles.write(first, "b_jvd.txt", "b"), "2018-05-01");
+        touch(SampleFiles.write(first, "a_jvl.txt", "a"), "2018-05-01");
+        touch(SampleFiles.write(new File(first, "old"), "c_jvl.txt", "c"), "2018-05-01");
+        File second = new File(root, "2018-05-02");
+        touch(SampleFiles.write(second, "d_jvl.txt", "d"), "2018-05-02T12:00");
+        touch(SampleFiles.write(second, "e.zip", "e"), "2018-05-02");
+        return root;
+    }
+
+    private static File touch(File file, String time) {
+        Assert.assertTrue(file.setLastModified(DirectoryScan.parseTime(time)));
+        return file;
+    }
+
+    private static List<String> names(File root, DirectoryScan scan) throws IOException {
+        ArrayList<String> names = new ArrayList<>();
+        File file;
+        while ((file = scan.next()) != null)
+            names.add(root.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'));
+        return names;
+    }
+}
@@ -0,0 +1,74 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+public class FileListModelTest {
+
+    @Test
+    public void addsAndRemovesInPlace() {
+
+        FileListModel model = new FileListModel();
+        final ArrayList<String> events = new ArrayList<>();
+        model.addListDataListener(new ListDataListener() {
+            public void intervalAdded(ListDataEvent e) {
+                events.add("+" + e.getIndex0() + "-" + e.getIndex1());
+            }
+
+            public void intervalRemoved(ListDataEvent e) {
+                events.add("-" + e.getIndex0() + "-" + e.getIndex1());
+            }
+
+            public void contentsChanged(ListDataEvent e) {
+                events.add("~");
+            }
+        });
+
+        File[] files = new File[50000];
+        for (int i = 0; i < files.length; i++)
+            files[i] = new File("day", "cell" + i + "_jvl.txt");
+
+        Assert.assertEquals(files.length, model.addAll(files).length);
+        Assert.assertArrayEquals(new File[]{new File("extra.txt")},
+                model.addAll(new File[]{files[3], new File("extra.txt")}));
+        Assert.assertEquals(50001, model.getSize());
+        Assert.assertEquals("cell7_jvl.txt", model.getElementAt(7));
+
+        model.remove(new int[]{5, 2, 3, 50000});
+        Assert.assertEquals(49997, model.getSize());
+        Assert.assertEquals(files[4], model.getFile(2));
+        Assert.assertEquals(files[6], model.getFile(3));
+        Assert.assertEquals(Arrays.asList("+0-49999", "+50000-50000", "-50000-50000", "-5-5", "-2-3"), events);
+
+        model.clear();
+        Assert.assertEquals(0, model.getSize());
+        Assert.assertEquals(1, model.addAll(new File[]{files[0]}).length);
+    }
+
+    @Test
+    public void summarizesCountAndSize() {
+
+        FileListModel model = new FileListModel();
+        File[] files = {new File("a.txt"), new File("b.txt"), new File("c.txt")};
+        model.addAll(files);
+        Assert.assertEquals("3 files, 0.0 kB, sizing...", model.getSummary());
+
+        model.setLengths(files, new long[]{1 << 20, 1 << 20, 512 << 10});
+        Assert.assertEquals("3 files, 2.5 MB", model.getSummary());
+
+        model.remove(new int[]{0});
+        Assert.assertEquals("2 files, 1.5 MB", model.getSummary());
+
+        // sizes of files removed before they were sized are ignored
+        model.remove(new int[]{0, 1});
+        model.setLengths(files, new long[]{1, 1, 1});
+        Assert.assertEquals("0 files, 0.0 kB", model.getSummary());
+    }
+}
@@ -0,0 +1,139 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+
+public class GroupStatsTest {
+
+    private static final String[] NAMES = {"Area [cm^2]", "Jsc [mA/cm^2]", "Voc [mV]", "FF [%]", "Eff [%]"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void summarizesPerSample() {
+
+        GroupStats stats = new GroupStats(Pattern.compile(GroupStats.DEFAULT_PATTERN), NAMES);
+        stats.add("S12-1_jvl", params("0.4", "21.0", "840", "70.0", "12.0"));
+        stats.add("S7_2_jvl", params("0.4", "19.0", "800", "60.0", "9.0"));
+        stats.add("S12-2_jvl", params("0.4", "23.0", "850", "74.0", "14.0"));
+        stats.add("S12-10_jvl", params("0.4", "22.0", "860", "78.0", "15.0"));
+
+        Assert.assertArrayEquals(new String[]{"S12", "S7"}, stats.getGroups());
+        Assert.assertEquals(3, stats.getCount("S12"));
+        Assert.assertEquals(21, stats.getHeaders().length);
+        Assert.assertEquals("Jsc [mA/cm^2] mean", stats.getHeaders()[1]);
+        Assert.assertEquals("Eff [%] median", stats.getHeaders()[20]);
+
+        // Jsc: mean, sample std, min, max, median
+        double[] s12 = stats.getStats("S12");
+        Assert.assertEquals(22.0, s12[0], 1e-12);
+        Assert.assertEquals(1.0, s12[1], 1e-12);
+        Assert.assertEquals(21.0, s12[2], 0);
+        Assert.assertEquals(23.0, s12[3], 0);
+        Assert.assertEquals(22.0, s12[4], 0);
+        Assert.assertEquals(74.0, s12[14], 0);     // FF median
+
+        double[] s7 = stats.getStats("S7");
+        Assert.assertEquals(19.0, s7[0], 0);
+        Assert.assertTrue(Double.isNaN(s7[1]));
+    }
+
+    @Test
+    public void mergedPartsMatchOneStream() {
+
+        Random random = new Random(42);
+        GroupStats whole = new GroupStats(Pattern.compile("^(\\w+)-"), NAMES);
+        GroupStats merged = new GroupStats(Pattern.compile("^(\\w+)-"), NAMES);
+        GroupStats part = null;
+        double[] values = new double[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 15 + 10 * random.nextGaussian();
+            String name = (i % 10 == 0 ? "B" : "A") + "-" + i;
+            List<BigDecimal> p = params("0.4", String.valueOf(values[i]), "800", "70", "12");
+            whole.add(name, p);
+
+            if (i % 7000 == 0) {
+                if (part != null)
+                    merged.merge(part);
+                part = new GroupStats(Pattern.compile("^(\\w+)-"), NAMES);
+            }
+            part.add(name, p);
+        }
+        merged.merge(part);
+
+        Assert.assertArrayEquals(whole.getGroups(), merged.getGroups());
+        for (String group : whole.getGroups()) {
+            Assert.assertEquals(whole.getCount(group), merged.getCount(group));
+            double[] a = whole.getStats(group);
+            double[] b = merged.getStats(group);
+            for (int i = 0; i < 4; i++)
+                Assert.assertEquals(a[i], b[i], 1e-9 * Math.abs(a[i]) + 1e-9);
+        }
+
+        // the medians of one sketch and of merged sketches are close in rank to the exact one
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        QuantileSketch one = new QuantileSketch();
+        QuantileSketch parts = new QuantileSketch();
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            one.add(values[i]);
+            sketch.add(values[i]);
+            if (i % 5000 == 4999) {
+                parts.merge(sketch);
+                sketch = new QuantileSketch();
+            }
+        }
+        Assert.assertEquals(values.length, parts.getCount());
+        for (double estimate : new double[]{one.getMedian(), parts.getMedian()}) {
+            int rank = Arrays.binarySearch(sorted, estimate);
+            Assert.assertEquals(values.length / 2, rank, values.length / 100);
+        }
+    }
+
+    @Test
+    public void writesTableAfterParams() throws IOException {
+
+        File[] files = {
+                SampleFiles.write(folder.getRoot(), "S1-1_jvl.txt", SampleFiles.physics(true, 10)),
+                SampleFiles.write(folder.getRoot(), "S1-2_jvl.txt", SampleFiles.physics(true, 10)),
+                SampleFiles.write(folder.getRoot(), "S2-1_jvl.txt", SampleFiles.physics(true, 10))
+        };
+        JVData data = new PhysicsData();
+        Assert.assertTrue(new JVReader().read(files, data));
+
+        ArrayList<Boolean> options = new ArrayList<>(Arrays.asList(false, true, false, true));
+        JVWriter writer = new JVWriter(data);
+        writer.setPrintOptions(options);
+        StringWriter out = new StringWriter();
+        writer.write(out);
+
+        String[] lines = out.toString().split("\n");
+        Assert.assertEquals(8, lines.length);
+        Assert.assertEquals("", lines[4]);
+        Assert.assertTrue(lines[5].startsWith("\tFiles\tJsc_meas [mA/cm^2] mean\tJsc_meas [mA/cm^2] std\t"));
+        Assert.assertTrue(lines[6].startsWith("S1\t2\t21.500\t0.0000\t21.500\t21.500\t21.500\t0.84000\t"));
+        Assert.assertTrue(lines[7].startsWith("S2\t1\t21.500\t\t21.500\t"));
+    }
+
+    private static List<BigDecimal> params(String... values) {
+        ArrayList<BigDecimal> params = new ArrayList<>();
+        for (String value : values)
+            params.add(new BigDecimal(value));
+        return params;
+    }
+}
@@ -0,0 +1,143 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+public class JVAnalyzerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // the sample light curve is J = -21.5 + 1e-8 exp(V / 0.04) mA/cm^2
+    private static final double JSC = 21.5;
+    private static final double VOC = 0.04 * Math.log(21.5e8 + 1);
+
+    @Test
+    public void analyzesDiodeCurve() {
+
+        int n = 2000;
+        double[] v = new double[n], j = new double[n];
+        for (int i = 0; i < n; i++) {
+            v[i] = -0.2 + 1.2 * i / n;
+            j[i] = -JSC + 1.0E-8 * Math.exp(v[i] / 0.04);
+        }
+
+        // brute force maximum power on a fine grid
+        double pmax = 0;
+        for (double x = 0; x < VOC; x += 1e-6)
+            pmax = Math.max(pmax, x * (JSC - 1.0E-8 * Math.exp(x / 0.04)));
+
+        double[] r = JVAnalyzer.analyze(v, j, n);
+        Assert.assertEquals(JSC, r[JVAnalyzer.JSC], 1e-6);
+        Assert.assertEquals(VOC, r[JVAnalyzer.VOC], 1e-4);
+        Assert.assertEquals(pmax, r[JVAnalyzer.PMAX], 1e-3);
+        Assert.assertEquals(r[JVAnalyzer.PMAX], r[JVAnalyzer.JMP] * r[JVAnalyzer.VMP], 1e-9);
+        Assert.assertEquals(100 * pmax / (JSC * VOC), r[JVAnalyzer.FF], 0.01);
+        Assert.assertEquals(pmax, r[JVAnalyzer.EFF], 1e-3);     // one sun is 100 mW/cm^2
+
+        // the curve has no shunt, and the diode's slope at Voc is Vt / Jsc
+        Assert.assertTrue(r[JVAnalyzer.RSH] > 1e6);
+        Assert.assertEquals(1000 * 0.04 / JSC, r[JVAnalyzer.RS], 0.1);
+    }
+
+    @Test
+    public void signAndSweepDirectionDoNotMatter() {
+
+        int n = 500;
+        double[] v = new double[n], j = new double[n];
+        for (int i = 0; i < n; i++) {
+            v[i] = -0.2 + 1.2 * i / n;
+            j[i] = -JSC + 1.0E-8 * Math.exp(v[i] / 0.04);
+        }
+        double[] expected = JVAnalyzer.analyze(v.clone(), j.clone(), n);
+
+        // positive generated current, swept from high to low voltage
+        double[] rv = new double[n], rj = new double[n];
+        for (int i = 0; i < n; i++) {
+            rv[i] = v[n - 1 - i];
+            rj[i] = -j[n - 1 - i];
+        }
+
+        Assert.assertArrayEquals(expected, JVAnalyzer.analyze(rv, rj, n), 1e-12);
+    }
+
+    @Test
+    public void darkCurveHasNoPowerParameters() {
+
+        int n = 100;
+        double[] v = new double[n], j = new double[n];
+        for (int i = 0; i < n; i++) {
+            v[i] = -0.2 + 1.2 * i / n;
+            j[i] = 1.0E-8 * Math.exp(v[i] / 0.04);
+        }
+
+        double[] r = JVAnalyzer.analyze(v, j, n);
+        Assert.assertEquals(0, r[JVAnalyzer.JSC], 1e-6);
+        Assert.assertTrue(Double.isNaN(r[JVAnalyzer.VOC]));
+        Assert.assertTrue(Double.isNaN(r[JVAnalyzer.PMAX]));
+        Assert.assertTrue(Double.isNaN(r[JVAnalyzer.FF]));
+    }
+
+    @Test
+    public void tableKeepsNamesWithoutTxt() throws IOException {
+
+        File[] files = {
+                SampleFiles.write(folder.getRoot(), "cell1_jvl.txt", SampleFiles.physics(true, 30)),
+                SampleFiles.write(folder.getRoot(), "cell2_jvl.dat", SampleFiles.physics(true, 30))
+        };
+        JVData data = new PhysicsData();
+        Assert.assertTrue(new JVReader().read(files, data));
+
+        ArrayList<Boolean> options = new ArrayList<>(Arrays.asList(false, false, true));
+        JVWriter writer = new JVWriter(data);
+        writer.setPrintOptions(options);
+        StringWriter out = new StringWriter();
+        writer.write(out);
+
+        // after the blank line that separates the tables
+        String[] lines = out.toString().split("\n");
+        Assert.assertTrue(lines[1].startsWith("\t" + JVAnalyzer.HEADERS[0]));
+        Assert.assertTrue(lines[2].startsWith("cell1_jvl\t"));
+        Assert.assertTrue(lines[3].startsWith("cell2_jvl.dat\t"));
+    }
+
+    @Test
+    public void parallelMatchesSequentialForEveryFormat() throws IOException {
+
+        File[] files = new File[700];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = SampleFiles.write(folder.getRoot(), "cell" + i + (i % 3 == 1 ? "_jvl" : "_jvd") + ".txt",
+                    i % 3 == 0 ? SampleFiles.engr(50 + i % 7) : SampleFiles.physics(i % 3 == 1, 50 + i % 5));
+        }
+
+        double[][] sequential = new double[0][], parallel = new double[0][];
+        for (JVData data : new JVReader().read(files, JVFormats.defaults())) {
+            JVAnalyzer analyzer = new JVAnalyzer();
+            sequential = concat(sequential, analyzer.analyze(data.getCurves()));
+            analyzer.setThreads(4);
+            parallel = concat(parallel, analyzer.analyze(data.getCurves()));
+        }
+
+        Assert.assertEquals(files.length, sequential.length);
+        for (int i = 0; i < sequential.length; i++)
+            Assert.assertArrayEquals(sequential[i], parallel[i], 0);
+
+        // ERC files are converted to mA/cm^2, so they give the same cell as the physics light files
+        Assert.assertEquals(sequential[0][JVAnalyzer.VOC], sequential[files.length / 3 * 2][JVAnalyzer.VOC], 2e-3);
+    }
+
+    private static double[][] concat(double[][] a, double[][] b) {
+        double[][] c = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, c, a.length, b.length);
+        return c;
+    }
+}
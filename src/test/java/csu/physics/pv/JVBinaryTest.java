@@ -0,0 +1,87 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+
+
+public class JVBinaryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsCurvesAndParams() throws IOException {
+
+        File[] files = {
+                SampleFiles.write(folder.getRoot(), "cell1_jvl.txt", SampleFiles.physics(true, 50)),
+                SampleFiles.write(folder.getRoot(), "cell1_jvd.txt", SampleFiles.physics(false, 40)),
+                SampleFiles.write(folder.getRoot(), "cell2_jvl.txt", SampleFiles.physics(true, 60))
+        };
+
+        JVData data = new PhysicsData();
+        data.setFileNames(new String[]{files[0].getName(), files[1].getName(), files[2].getName()});
+        Assert.assertTrue(new JVReader().read(files, data));
+
+        File out = new File(folder.getRoot(), "out.jvb");
+        JVBinaryWriter.write(data, out);
+        JVBinaryReader reader = new JVBinaryReader(out);
+
+        Assert.assertEquals("physics", reader.getFormatName());
+        Assert.assertEquals(3, reader.getNumCurves());
+        Assert.assertEquals("cell1_jvd", reader.getCurveName(1));
+
+        CurveStore curves = data.getCurves();
+        for (int i = 0; i < curves.getNumCurves(); i++) {
+            Assert.assertEquals(curves.getNumPoints(i), reader.getNumPoints(i));
+            DoubleBuffer v = reader.getVoltage(i), j = reader.getCurrent(i);
+            Assert.assertEquals(curves.getNumPoints(i), v.remaining());
+            for (int k = 0; k < curves.getNumPoints(i); k++) {
+                Assert.assertEquals(curves.getVoltage(i, k), v.get(k), 0);
+                Assert.assertEquals(curves.getCurrent(i, k), j.get(k), 0);
+            }
+        }
+
+        // light files only, named by the parameters table
+        Assert.assertEquals(2, reader.getNumParamRows());
+        Assert.assertEquals("cell2_jvl", reader.getParamRowName(1));
+        Assert.assertEquals("Area [cm^2]", reader.getParamNames()[0]);
+        Assert.assertEquals(data.params.get(1).get(1).doubleValue(), reader.getParam(1, 1), 0);
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+
+        File text = SampleFiles.write(folder.getRoot(), "a.txt", SampleFiles.engr(100));
+        try {
+            new JVBinaryReader(text);
+            Assert.fail("text file was read as binary");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void importerWritesBinary() throws IOException {
+
+        File input = SampleFiles.write(folder.getRoot(), "a.txt", SampleFiles.engr(30));
+        File output = new File(folder.getRoot(), "out.jvb");
+
+        PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+        Assert.assertEquals(JVImporter.EXIT_OK, JVImporter.run(new String[]{"--binary", "-o", output.getPath(),
+                input.getPath()}, quiet, quiet));
+
+        JVBinaryReader reader = new JVBinaryReader(output);
+        Assert.assertEquals("engr", reader.getFormatName());
+        Assert.assertEquals(30, reader.getNumPoints(0));
+        Assert.assertFalse(Files.exists(new File(output.getPath() + ".part").toPath()));
+    }
+}
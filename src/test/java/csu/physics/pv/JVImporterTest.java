@@ -0,0 +1,161 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class JVImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+
+    @Test
+    public void importsGlob() throws IOException {
+
+        File day = folder.newFolder("2018-05-01");
+        SampleFiles.write(day, "cell1_jvl.txt", SampleFiles.physics(true, 20));
+        SampleFiles.write(day, "cell1_jvd.txt", SampleFiles.physics(false, 10));
+        SampleFiles.write(day, "notes.log", "not a J-V file");
+        File output = new File(folder.getRoot(), "out.txt");
+
+        String glob = folder.getRoot().getPath() + "/2018-*/*.txt";
+        int code = JVImporter.run(new String[]{"-f", "physics", "-o", output.getPath(), glob}, quiet, quiet);
+
+        Assert.assertEquals(JVImporter.EXIT_OK, code);
+        List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.US_ASCII);
+        Assert.assertEquals("cell1_jvd_X\tcell1_jvd_Y\tcell1_jvl_X\tcell1_jvl_Y\t", lines.get(0));
+        Assert.assertTrue(lines.contains("cell1_jvl\t0.430\t21.50\t0.8400\t76.10\t13.78\t21.53\t0.8412\t"));
+    }
+
+    @Test
+    public void expandsFolderToTextFilesAndArchives() throws IOException {
+
+        File day = folder.newFolder("2018-05-01");
+        File text = SampleFiles.write(day, "cell1_jvl.txt", SampleFiles.physics(true, 20));
+        File zip = SampleFiles.write(day, "cell2.zip", "");
+        SampleFiles.write(day, "notes.log", "not a J-V file");
+
+        Assert.assertEquals(Arrays.asList(text, zip), JVImporter.expand(day.getPath()));
+    }
+
+    @Test
+    public void scansFolders() throws IOException {
+
+        File data = folder.newFolder("data");
+        SampleFiles.write(new File(data, "2018-05-01"), "cell1_jvl.txt", SampleFiles.physics(true, 20));
+        SampleFiles.write(new File(data, "2018-05-02"), "cell2_jvl.txt", SampleFiles.physics(true, 20));
+        SampleFiles.write(new File(data, "2018-05-02"), "cell2_jvd.txt", SampleFiles.physics(false, 10));
+        File output = new File(folder.getRoot(), "out.txt");
+
+        int code = JVImporter.run(new String[]{"-f", "physics", "--no-curves", "--include", "*_jvl.txt",
+                "-o", output.getPath(), "--scan", data.getPath()}, quiet, quiet);
+
+        Assert.assertEquals(JVImporter.EXIT_OK, code);
+        List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.US_ASCII);
+        Assert.assertEquals(3, lines.size());
+        Assert.assertTrue(lines.get(1).startsWith("cell1_jvl\t"));
+        Assert.assertTrue(lines.get(2).startsWith("cell2_jvl\t"));
+
+        Assert.assertEquals(JVImporter.EXIT_INVALID, JVImporter.run(new String[]{"--include", "*.csv",
+                "-o", output.getPath(), "--scan", data.getPath()}, quiet, quiet));
+        Assert.assertEquals(JVImporter.EXIT_USAGE, JVImporter.run(new String[]{"--include", "*.txt",
+                "-o", output.getPath(), data.getPath()}, quiet, quiet));
+    }
+
+    @Test
+    public void summaryOnly() throws IOException {
+
+        SampleFiles.write(folder.getRoot(), "a.txt", SampleFiles.engr(20));
+        File output = new File(folder.getRoot(), "out.txt");
+
+        int code = JVImporter.run(new String[]{"--format", "engr", "--no-curves", "-o", output.getPath(),
+                folder.getRoot().getPath()}, quiet, quiet);
+
+        Assert.assertEquals(JVImporter.EXIT_OK, code);
+        List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.US_ASCII);
+        Assert.assertEquals("\tArea [cm^2]\tJsc [mA/cm^2]\tVoc [mV]\tFF [%]\tEff [%]\tJmp [mA/cm^2]\tVmp [mV]",
+                lines.get(0));
+        Assert.assertEquals(2, lines.size());
+    }
+
+    @Test
+    public void exitCodes() throws IOException {
+
+        File engr = SampleFiles.write(folder.getRoot(), "a.txt", SampleFiles.engr(20));
+        File output = new File(folder.getRoot(), "out.txt");
+
+        Assert.assertEquals(JVImporter.EXIT_USAGE, JVImporter.run(new String[]{engr.getPath()}, quiet, quiet));
+        Assert.assertEquals(JVImporter.EXIT_USAGE,
+                JVImporter.run(new String[]{"-f", "xyz", "-o", output.getPath(), engr.getPath()}, quiet, quiet));
+        Assert.assertEquals(JVImporter.EXIT_INVALID,
+                JVImporter.run(new String[]{"-f", "physics", "-o", output.getPath(), engr.getPath()}, quiet, quiet));
+        File junk = SampleFiles.write(folder.getRoot(), "junk.txt", "not a J-V file\n");
+        Assert.assertEquals(JVImporter.EXIT_INVALID,
+                JVImporter.run(new String[]{"-o", output.getPath(), junk.getPath()}, quiet, quiet));
+        Assert.assertEquals(JVImporter.EXIT_INVALID,
+                JVImporter.run(new String[]{"-o", output.getPath(), folder.getRoot() + "/*.dat"}, quiet, quiet));
+        Assert.assertEquals(JVImporter.EXIT_IO,
+                JVImporter.run(new String[]{"-o", output.getPath(), folder.getRoot() + "/missing.txt"}, quiet, quiet));
+        for (String option : new String[]{"-f", "--no-curves", "--analysis", "-t", "--groups"})
+            Assert.assertEquals(option, JVImporter.EXIT_USAGE,
+                    JVImporter.run(new String[]{"-j", "2", "--serve", "0", option, "json"}, quiet, quiet));
+    }
+
+    @Test
+    public void mixedBatchWritesOneFilePerFormat() throws IOException {
+
+        SampleFiles.write(folder.getRoot(), "a_jvl.txt", SampleFiles.physics(true, 20));
+        SampleFiles.write(folder.getRoot(), "b.txt", SampleFiles.engr(20));
+        SampleFiles.write(folder.getRoot(), "c_jvl.txt", SampleFiles.physics(true, 20));
+        File output = new File(folder.newFolder("out"), "result.txt");
+
+        int code = JVImporter.run(new String[]{"-o", output.getPath(), folder.getRoot().getPath()}, quiet, quiet);
+
+        Assert.assertEquals(JVImporter.EXIT_OK, code);
+        List<String> physics = Files.readAllLines(new File(output.getParentFile(), "result_physics.txt").toPath(),
+                StandardCharsets.US_ASCII);
+        List<String> engr = Files.readAllLines(new File(output.getParentFile(), "result_engr.txt").toPath(),
+                StandardCharsets.US_ASCII);
+        Assert.assertEquals("a_jvl_X\ta_jvl_Y\tc_jvl_X\tc_jvl_Y\t", physics.get(0));
+        Assert.assertEquals("b_X\tb_Y\t", engr.get(0));
+    }
+
+    @Test
+    public void spillMatchesInMemory() throws IOException {
+
+        File in = folder.newFolder("in");
+        for (int i = 0; i < 12; i++) {
+            SampleFiles.write(in, "cell" + i + "_jvl.txt", SampleFiles.physics(true, 20 + 7 * i));
+            SampleFiles.write(in, "cell" + i + "_erc.txt", SampleFiles.engr(90 - 5 * i));
+        }
+        File spill = folder.newFolder("spill");
+        File memory = new File(folder.getRoot(), "memory.txt");
+        File spilled = new File(folder.getRoot(), "spilled.txt");
+
+        Assert.assertEquals(JVImporter.EXIT_OK, JVImporter.run(new String[]{"--analysis", "-o", memory.getPath(),
+                in.getPath()}, quiet, quiet));
+        // a zero block size merges one row at a time
+        Assert.assertEquals(JVImporter.EXIT_OK, JVImporter.run(new String[]{"--analysis", "--spill", spill.getPath(),
+                "--spill-block", "0", "-o", spilled.getPath(), in.getPath()}, quiet, quiet));
+
+        for (String format : new String[]{"physics", "engr"}) {
+            File a = new File(folder.getRoot(), "memory_" + format + ".txt");
+            File b = new File(folder.getRoot(), "spilled_" + format + ".txt");
+            Assert.assertArrayEquals(Files.readAllBytes(a.toPath()), Files.readAllBytes(b.toPath()));
+        }
+        Assert.assertEquals(0, spill.list().length);
+    }
+}
@@ -0,0 +1,202 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+
+public class JVInputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] NAMES = {"cell1_jvl.txt", "cell1_jvd.txt", "cell2_jvl.txt"};
+    private static final String[] CONTENTS = {
+            SampleFiles.physics(true, 50), SampleFiles.physics(false, 40), SampleFiles.physics(true, 60)};
+
+    @Test
+    public void archivesReadLikeFiles() throws IOException {
+
+        File[] plain = new File[NAMES.length];
+        for (int i = 0; i < NAMES.length; i++)
+            plain[i] = SampleFiles.write(folder.newFolder("plain" + i), NAMES[i], CONTENTS[i]);
+        JVData expected = new PhysicsData();
+        Assert.assertTrue(new JVReader().read(plain, expected));
+
+        // zip with a folder and a file that is not J-V data
+        File zip = folder.newFile("day.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("run/"));
+            out.putNextEntry(new ZipEntry("README.md"));
+            out.write("notes".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < 2; i++) {
+                out.putNextEntry(new ZipEntry("run/" + NAMES[i]));
+                out.write(CONTENTS[i].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        // single file gzip
+        File gz = folder.newFile(NAMES[2] + ".gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gz))) {
+            out.write(CONTENTS[2].getBytes(StandardCharsets.UTF_8));
+        }
+
+        // tar.gz with a long name and a hidden macOS file
+        File tgz = folder.newFile("day.tar.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(tgz))) {
+            char[] deep = new char[120];
+            Arrays.fill(deep, 'd');
+            tarEntry(out, "run/._" + NAMES[0], "junk");
+            tarEntry(out, new String(deep) + "/" + NAMES[0], CONTENTS[0]);
+            tarEntry(out, "run/" + NAMES[1], CONTENTS[1]);
+            out.write(new byte[1024]);
+        }
+
+        for (int threads : new int[]{1, 3}) {
+            JVReader reader = new JVReader();
+            reader.setThreads(threads);
+
+            JVData fromZip = new PhysicsData();
+            Assert.assertTrue(reader.read(new File[]{zip, gz}, fromZip));
+            assertSameData(expected, fromZip);
+
+            ArrayList<JVData> fromTar = reader.read(new File[]{tgz, gz}, JVFormats.defaults());
+            Assert.assertEquals(1, fromTar.size());
+            assertSameData(expected, fromTar.get(0));
+            Assert.assertTrue(reader.getRejectedFiles().isEmpty());
+        }
+    }
+
+    @Test
+    public void rejectedEntriesAreNamedBelowTheArchive() throws IOException {
+
+        File tar = folder.newFile("day.tar");
+        try (OutputStream out = new FileOutputStream(tar)) {
+            tarEntry(out, "run/" + NAMES[0], CONTENTS[0]);
+            tarEntry(out, "run/notes.txt", "not a J-V file\n");
+            out.write(new byte[1024]);
+        }
+
+        final ArrayList<Integer> totals = new ArrayList<>();
+        JVReader reader = new JVReader();
+        reader.setProgress(new JVReader.Progress() {
+            public void fileRead(File file, long bytes, int done, int total) {
+                totals.add(total);
+            }
+
+            public boolean shouldStop() {
+                return false;
+            }
+        });
+
+        Assert.assertEquals(1, reader.read(new File[]{tar}, JVFormats.defaults()).size());
+        Assert.assertEquals(new File(tar, "run/notes.txt"), reader.getRejectedFiles().get(0));
+        Assert.assertEquals(Arrays.asList(-1, -1), totals);
+    }
+
+    @Test
+    public void zipClosedOnceItsEntriesAreRead() throws IOException {
+
+        File[] zips = new File[2];
+        for (int i = 0; i < zips.length; i++) {
+            zips[i] = folder.newFile("day" + i + ".zip");
+            try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zips[i]))) {
+                out.putNextEntry(new ZipEntry(NAMES[i]));
+                out.write(CONTENTS[i].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        try (JVInput.Listing listing = new JVInput.Listing(zips)) {
+            JVInput first = listing.next();
+            Assert.assertEquals(CONTENTS[0], new String(first.readAll(), StandardCharsets.UTF_8));
+
+            // listing past the first archive closes it, its only entry having been read
+            JVInput second = listing.next();
+            try {
+                first.open().close();
+                Assert.fail("archive was left open");
+            } catch (IOException | IllegalStateException e) {
+                // expected
+            }
+            Assert.assertEquals(CONTENTS[1], new String(second.readAll(), StandardCharsets.UTF_8));
+            Assert.assertNull(listing.next());
+        }
+    }
+
+    @Test
+    public void corruptTarFails() throws IOException {
+
+        File tar = SampleFiles.write(folder.getRoot(), "bad.tar", SampleFiles.physics(true, 200));
+        try {
+            new JVReader().read(new File[]{tar}, new PhysicsData());
+            Assert.fail("corrupt archive was read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static void assertSameData(JVData expected, JVData actual) {
+
+        Assert.assertArrayEquals(NAMES, actual.getFileNames());
+        Assert.assertEquals(expected.params, actual.params);
+
+        CurveStore a = expected.getCurves(), b = actual.getCurves();
+        Assert.assertEquals(a.getNumCurves(), b.getNumCurves());
+        for (int i = 0; i < a.getNumCurves(); i++) {
+            Assert.assertEquals(a.getNumPoints(i), b.getNumPoints(i));
+            for (int k = 0; k < a.getNumPoints(i); k++) {
+                Assert.assertEquals(a.getVoltage(i, k), b.getVoltage(i, k), 0);
+                Assert.assertEquals(a.getCurrent(i, k), b.getCurrent(i, k), 0);
+            }
+        }
+    }
+
+    /*
+    Writes one ustar entry, with a GNU long name entry before it when the name does not fit the header.
+     */
+    private static void tarEntry(OutputStream out, String name, String contents) throws IOException {
+
+        byte[] data = contents.getBytes(StandardCharsets.UTF_8);
+        byte[] path = name.getBytes(StandardCharsets.UTF_8);
+        if (path.length > 100) {
+            tarBlock(out, "././@LongLink", path.length + 1, 'L');
+            out.write(path);
+            out.write(new byte[512 - path.length % 512]);
+        }
+        tarBlock(out, path.length > 100 ? name.substring(0, 100) : name, data.length, '0');
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    private static void tarBlock(OutputStream out, String name, long size, char type) throws IOException {
+
+        byte[] header = new byte[512];
+        byte[] path = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(path, 0, header, 0, path.length);
+        octal(header, 100, 8, 0644);
+        octal(header, 124, 12, size);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header)
+            sum += b & 0xFF;
+        octal(header, 148, 7, sum);
+        out.write(header);
+    }
+
+    private static void octal(byte[] header, int off, int len, long value) {
+        String digits = String.format("%0" + (len - 1) + "o", value);
+        System.arraycopy(digits.getBytes(StandardCharsets.US_ASCII), 0, header, off, len - 1);
+    }
+}
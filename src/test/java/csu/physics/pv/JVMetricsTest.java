@@ -0,0 +1,48 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+
+public class JVMetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void countsStagesInMBeans() throws Exception {
+
+        File[] files = {
+                SampleFiles.write(folder.getRoot(), "a.txt", SampleFiles.engr(30)),
+                SampleFiles.write(folder.getRoot(), "b.txt", SampleFiles.engr(40))
+        };
+
+        StageMetricsMXBean read = JVMetrics.get(JVMetrics.Stage.READ);
+        long count = read.getCount();
+        long points = read.getPoints();
+
+        JVData data = new EngrData();
+        data.setFileNames(new String[]{"a.txt", "b.txt"});
+        Assert.assertTrue(new JVReader().read(files, data));
+
+        Assert.assertEquals(count + 2, read.getCount());
+        Assert.assertEquals(points + 70, read.getPoints());
+
+        long histogram = 0;
+        for (long c : read.getHistogram())
+            histogram += c;
+        Assert.assertEquals(read.getCount(), histogram);
+        Assert.assertTrue(read.getP99Millis() >= read.getP50Millis());
+
+        // the same counters through the platform MBean server
+        Object remote = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName("csu.physics.pv:type=Stage,name=read"), "Count");
+        Assert.assertEquals(read.getCount(), remote);
+    }
+}
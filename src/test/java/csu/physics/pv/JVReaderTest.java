@@ -0,0 +1,280 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+public class JVReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void streamingMatchesExtractData() throws IOException {
+
+        File[] files = {
+                SampleFiles.write(folder.getRoot(), "cell1_jvl.txt", SampleFiles.physics(true, 50)),
+                SampleFiles.write(folder.getRoot(), "cell1_jvd.txt", SampleFiles.physics(false, 40)),
+                SampleFiles.write(folder.getRoot(), "cell2_jvl.txt", SampleFiles.physics(true, 60))
+        };
+        String[] names = {files[0].getName(), files[1].getName(), files[2].getName()};
+
+        // legacy path
+        JVReader reader = new JVReader();
+        reader.read(files);
+        JVData legacy = new PhysicsData(reader.getFileData());
+        Assert.assertTrue(legacy.isValidData());
+        legacy.setFileNames(names);
+        legacy.extractData();
+
+        // streaming path
+        JVData streamed = new PhysicsData();
+        streamed.setFileNames(names);
+        Assert.assertTrue(new JVReader().read(files, streamed));
+
+        Assert.assertEquals(SampleFiles.dump(legacy.getCurves()), SampleFiles.dump(streamed.getCurves()));
+        Assert.assertEquals(legacy.makeParamsTable(), streamed.makeParamsTable());
+    }
+
+    @Test
+    public void streamingEngrMatchesExtractData() throws IOException {
+
+        File[] files = {
+                SampleFiles.write(folder.getRoot(), "a.txt", SampleFiles.engr(30)),
+                SampleFiles.write(folder.getRoot(), "b.txt", SampleFiles.engr(45))
+        };
+        String[] names = {files[0].getName(), files[1].getName()};
+
+        JVReader reader = new JVReader();
+        reader.read(files);
+        JVData legacy = new EngrData(reader.getFileData());
+        Assert.assertTrue(legacy.isValidData());
+        legacy.setFileNames(names);
+        legacy.extractData();
+
+        JVData streamed = new EngrData();
+        streamed.setFileNames(names);
+        Assert.assertTrue(new JVReader().read(files, streamed));
+
+        Assert.assertEquals(SampleFiles.dump(legacy.getCurves()), SampleFiles.dump(streamed.getCurves()));
+        Assert.assertEquals(legacy.makeParamsTable(), streamed.makeParamsTable());
+    }
+
+    @Test
+    public void streamingRejectsWrongFormat() throws IOException {
+
+        File[] files = {SampleFiles.write(folder.getRoot(), "a.txt", SampleFiles.engr(10))};
+
+        JVData data = new PhysicsData();
+        data.setFileNames(new String[]{files[0].getName()});
+        Assert.assertFalse(new JVReader().read(files, data));
+    }
+
+    @Test
+    public void parallelKeepsSelectionOrder() throws IOException {
+
+        // files of very different sizes so they finish out of order
+        File[] files = new File[40];
+        String[] names = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            names[i] = "cell" + i + (i % 3 == 0 ? "_jvd.txt" : "_jvl.txt");
+            files[i] = SampleFiles.write(folder.getRoot(), names[i],
+                    SampleFiles.physics(i % 3 != 0, (i * 37) % 400 + 1));
+        }
+
+        JVData sequential = new PhysicsData();
+        sequential.setFileNames(names);
+        Assert.assertTrue(new JVReader().read(files, sequential));
+
+        JVReader reader = new JVReader();
+        reader.setThreads(4);
+        JVData parallel = new PhysicsData();
+        parallel.setFileNames(names);
+        Assert.assertTrue(reader.read(files, parallel));
+
+        Assert.assertEquals(files.length, parallel.getNumFiles());
+        for (int i = 0; i < files.length; i++)
+            Assert.assertEquals((i * 37) % 400 + 1, parallel.getCurves().getNumPoints(i));
+        Assert.assertEquals(SampleFiles.dump(sequential.getCurves()), SampleFiles.dump(parallel.getCurves()));
+        Assert.assertEquals(sequential.makeParamsTable(), parallel.makeParamsTable());
+    }
+
+    @Test
+    public void parallelRejectsWrongFormat() throws IOException {
+
+        File[] files = new File[10];
+        for (int i = 0; i < files.length; i++)
+            files[i] = SampleFiles.write(folder.getRoot(), "c" + i + "_jvl.txt",
+                    i == 7 ? SampleFiles.engr(10) : SampleFiles.physics(true, 10));
+
+        JVReader reader = new JVReader();
+        reader.setThreads(3);
+        Assert.assertFalse(reader.read(files, new PhysicsData()));
+    }
+
+    @Test
+    public void detectsFormatPerFile() throws IOException {
+
+        File[] files = new File[30];
+        for (int i = 0; i < files.length; i++) {
+            String contents = i % 5 == 4 ? "unrelated text\n" : i % 2 == 0 ? SampleFiles.physics(true, 10 + i)
+                    : SampleFiles.engr(10 + i);
+            files[i] = SampleFiles.write(folder.getRoot(), "f" + i + "_jvl.txt", contents);
+        }
+
+        for (int threads : new int[]{1, 4}) {
+            JVReader reader = new JVReader();
+            reader.setThreads(threads);
+            ArrayList<JVData> batches = reader.read(files, JVFormats.defaults());
+
+            Assert.assertEquals(2, batches.size());
+            Assert.assertEquals("physics", batches.get(0).getFormatName());
+            Assert.assertEquals("engr", batches.get(1).getFormatName());
+            Assert.assertEquals(6, reader.getRejectedFiles().size());
+
+            // files keep their selection order within each format
+            JVData physics = batches.get(0);
+            Assert.assertEquals(12, physics.getNumFiles());
+            Assert.assertEquals("f0_jvl.txt", physics.getFileNames()[0]);
+            Assert.assertEquals("f2_jvl.txt", physics.getFileNames()[1]);
+            Assert.assertEquals(12, physics.getCurves().getNumPoints(1));
+            JVData engr = batches.get(1);
+            Assert.assertEquals(12, engr.getNumFiles());
+            Assert.assertEquals("f1_jvl.txt", engr.getFileNames()[0]);
+            Assert.assertEquals(11, engr.getCurves().getNumPoints(0));
+        }
+    }
+
+    @Test
+    public void progressStopsAtFileBoundary() throws IOException {
+
+        File[] files = new File[6];
+        for (int i = 0; i < files.length; i++)
+            files[i] = SampleFiles.write(folder.getRoot(), "cell" + i + "_jvl.txt", SampleFiles.physics(true, 20));
+
+        for (int threads : new int[]{1, 3}) {
+            final ArrayList<Integer> done = new ArrayList<>();
+            JVReader reader = new JVReader();
+            reader.setThreads(threads);
+            reader.setProgress(new JVReader.Progress() {
+                public void fileRead(File file, long bytes, int count, int total) {
+                    done.add(count);
+                }
+
+                public boolean shouldStop() {
+                    return done.size() >= 2;
+                }
+            });
+
+            try {
+                reader.read(files, new PhysicsData());
+                Assert.fail("read was not cancelled");
+            } catch (java.util.concurrent.CancellationException e) {
+                Assert.assertEquals(1, (int) done.get(0));
+                Assert.assertEquals(2, (int) done.get(1));
+            }
+        }
+    }
+
+    @Test
+    public void headerOnlyStopsAtCurveData() throws IOException {
+
+        // a long curve followed by a line that would not parse
+        String contents = SampleFiles.physics(true, 20000) + "not a number\n";
+        final int[] read = new int[1];
+        java.io.InputStream in = new java.io.ByteArrayInputStream(contents.getBytes(StandardCharsets.US_ASCII)) {
+            public synchronized int read(byte[] b, int off, int len) {
+                int n = super.read(b, off, len);
+                read[0] += Math.max(n, 0);
+                return n;
+            }
+        };
+
+        JVData data = new PhysicsData();
+        data.setReadCurves(false);
+        Assert.assertTrue(data.parse("cell_jvl.txt", new JVTokenizer(in)));
+        Assert.assertTrue(read[0] < contents.length() / 10);
+
+        // the parameters are the same as a full parse, and the file still has its curve
+        File file = SampleFiles.write(folder.getRoot(), "cell_jvl.txt", SampleFiles.physics(true, 50));
+        JVData full = new PhysicsData();
+        full.setFileNames(new String[]{file.getName()});
+        new JVReader().read(new File[]{file}, full);
+
+        Assert.assertEquals(full.makeParamsTable(), data.makeParamsTable());
+        Assert.assertEquals(1, data.getNumFiles());
+        Assert.assertEquals(0, data.getCurves().getNumPoints(0));
+    }
+
+    @Test
+    public void headerFieldsAreFoundByLabel() throws IOException {
+
+        // an added line and swapped lines in the header of each format
+        String physics = SampleFiles.physics(true, 30);
+        String moved = "Operator\tlab\n" + physics.replace("FF (%)\t76.10\nEfficiency (%)\t13.78\n",
+                "Efficiency (%)\t13.78\nFF (%)\t76.10\n");
+        String engr = SampleFiles.engr(30);
+        String added = engr.replace("Light\t1 sun\n", "Light\t1 sun\nFirmware\t2.1\n");
+
+        String[][] cases = {{physics, moved}, {engr, added}};
+        for (String[] contents : cases) {
+            JVData[] parsed = new JVData[2];
+            for (int i = 0; i < 2; i++) {
+                byte[] bytes = contents[i].getBytes(StandardCharsets.US_ASCII);
+                parsed[i] = contents == cases[0] ? new PhysicsData() : new EngrData();
+                Assert.assertTrue(parsed[i].parse("cell_jvl.txt", new JVTokenizer(bytes, bytes.length)));
+            }
+            Assert.assertEquals(parsed[0].makeParamsTable(), parsed[1].makeParamsTable());
+            Assert.assertEquals(SampleFiles.dump(parsed[0].getCurves()), SampleFiles.dump(parsed[1].getCurves()));
+        }
+    }
+
+    @Test
+    public void unknownLabelIsReadFromItsOriginalLine() throws IOException {
+
+        // the Voc label spelled differently, still on the line it has always been on
+        String renamed = SampleFiles.physics(true, 30).replace("Voc (V)", "Voc meas (V)");
+        File file = SampleFiles.write(folder.getRoot(), "cell_jvl.txt", renamed);
+
+        PrintStream err = System.err;
+        ByteArrayOutputStream warnings = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(warnings, true, "UTF-8"));
+        List<JVData> data;
+        JVReader reader = new JVReader();
+        try {
+            data = reader.read(new File[]{file}, JVFormats.defaults());
+        } finally {
+            System.setErr(err);
+        }
+
+        Assert.assertTrue(reader.getRejectedFiles().isEmpty());
+        Assert.assertEquals(1, data.size());
+        Assert.assertTrue(data.get(0).makeParamsTable().toString().contains("0.8400"));
+        Assert.assertTrue(new String(warnings.toByteArray(), StandardCharsets.UTF_8).contains("Voc"));
+    }
+
+    @Test
+    public void headerWithoutALabelIsMalformed() {
+
+        // without the column header, the legacy path names the file
+        JVData legacy = new PhysicsData(new ArrayList<>(Collections.singletonList("Area\t0.43\n")));
+        legacy.setFileNames(new String[]{"cell_jvl.txt"});
+        try {
+            legacy.extractData();
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("cell_jvl.txt"));
+        }
+    }
+}
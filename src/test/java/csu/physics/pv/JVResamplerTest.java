@@ -0,0 +1,83 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class JVResamplerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsPointsAndLines() {
+
+        double[] grid = new JVResampler(new BigDecimal("-1"), new BigDecimal("3"), new BigDecimal("0.25")).getGrid();
+        Assert.assertEquals(17, grid.length);
+
+        // a line is reproduced exactly, measured points are kept, and there is no extrapolation
+        double[] v = {2, 0, 1, 0.5};
+        double[] j = {5, 1, 3, 2};
+        double[] out = new double[grid.length];
+        JVResampler.resample(v, j, new double[4], 4, grid, out);
+
+        for (int k = 0; k < grid.length; k++) {
+            if (grid[k] < 0 || grid[k] > 2)
+                Assert.assertTrue(Double.isNaN(out[k]));
+            else
+                Assert.assertEquals(1 + 2 * grid[k], out[k], 1e-12);
+        }
+    }
+
+    @Test
+    public void staysMonotone() {
+
+        // a step, which an unconstrained cubic spline overshoots
+        double[] v = {0, 1, 2, 3, 4, 5};
+        double[] j = {0, 0, 0, 10, 10, 10};
+        double[] grid = new JVResampler(new BigDecimal("0"), new BigDecimal("5"), new BigDecimal("0.01")).getGrid();
+        double[] out = new double[grid.length];
+        JVResampler.resample(v, j, new double[6], 6, grid, out);
+
+        for (int k = 1; k < grid.length; k++) {
+            Assert.assertTrue(out[k] >= out[k - 1]);
+            Assert.assertTrue(out[k] >= 0 && out[k] <= 10);
+        }
+    }
+
+    @Test
+    public void importerWritesOneVoltageColumn() throws IOException {
+
+        File a = SampleFiles.write(folder.getRoot(), "a.txt", SampleFiles.engr(30));
+        File b = SampleFiles.write(folder.getRoot(), "b.txt", SampleFiles.engr(50));
+        File output = new File(folder.getRoot(), "out.txt");
+
+        PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+        Assert.assertEquals(JVImporter.EXIT_OK, JVImporter.run(new String[]{"--grid", "0:0.5:0.1", "--no-summary",
+                "-j", "1", "-o", output.getPath(), a.getPath(), b.getPath()}, quiet, quiet));
+
+        List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.US_ASCII);
+        Assert.assertEquals("V\ta_Y\tb_Y\t", lines.get(0));
+        // the header, one row per grid voltage from 0.0 to 0.5, then the two blank lines ending the curves table
+        Assert.assertEquals(1 + 6 + 2, lines.size());
+        Assert.assertEquals(Arrays.asList("", ""), lines.subList(7, 9));
+        Assert.assertTrue(lines.get(1).startsWith("0.0\t"));
+        Assert.assertTrue(lines.get(6).startsWith("0.5\t"));
+        Assert.assertEquals(4, lines.get(3).split("\t", -1).length);
+
+        Assert.assertEquals(JVImporter.EXIT_USAGE, JVImporter.run(new String[]{"--grid", "1:0:0.1",
+                "-o", output.getPath(), a.getPath()}, quiet, quiet));
+    }
+}
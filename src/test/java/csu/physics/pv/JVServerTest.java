@@ -0,0 +1,201 @@
+package csu.physics.pv;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+public class JVServerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JVServer server;
+
+    @Before
+    public void start() throws IOException {
+        server = new JVServer(0, 2);
+        server.start();
+    }
+
+    @After
+    public void stop() {
+        server.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void importsContentsAndPaths() throws IOException {
+
+        File dark = SampleFiles.write(folder.getRoot(), "cell1_jvd.txt", SampleFiles.physics(false, 40));
+        String request = "{\"files\":[{\"name\":\"cell1_jvl.txt\",\"contents\":"
+                + JsonLinesTableWriter.quote(SampleFiles.physics(true, 50)) + "},"
+                + JsonLinesTableWriter.quote(dark.getPath()) + ",{\"name\":\"notes.txt\",\"contents\":\"hello\"}],"
+                + "\"analysis\":true}";
+
+        HttpURLConnection connection = post("/import", request);
+        Assert.assertEquals(200, connection.getResponseCode());
+        Assert.assertNotNull(connection.getHeaderField("X-Elapsed-Ms"));
+
+        Map<String, Object> response = (Map<String, Object>) JsonReader.parse(read(connection.getInputStream()));
+        Map<String, Object> batch = ((List<Map<String, Object>>) response.get("batches")).get(0);
+        Assert.assertEquals("physics", batch.get("format"));
+        Assert.assertEquals(Arrays.asList("cell1_jvl.txt", "cell1_jvd.txt"), batch.get("files"));
+        Assert.assertEquals(Collections.singletonList("notes.txt"), response.get("rejected"));
+        Assert.assertTrue(response.get("elapsedMs") instanceof BigDecimal);
+
+        Map<String, Object> tables = (Map<String, Object>) batch.get("tables");
+        Assert.assertEquals(50, ((List<?>) tables.get("curves")).size());
+        Map<String, Object> params = ((List<Map<String, Object>>) tables.get("params")).get(0);
+        Assert.assertEquals(new BigDecimal("0.430"), params.get("Area [cm^2]"));
+        Assert.assertEquals(2, ((List<?>) tables.get("analysis")).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void answersBatchesInOrder() throws IOException {
+
+        String one = "{\"files\":[{\"name\":\"a_jvl.txt\",\"contents\":"
+                + JsonLinesTableWriter.quote(SampleFiles.physics(true, 10)) + "}],\"curves\":false}";
+        String two = "{\"files\":[{\"name\":\"b.txt\",\"contents\":"
+                + JsonLinesTableWriter.quote(SampleFiles.engr(10)) + "}],\"format\":\"engr\"}";
+
+        HttpURLConnection connection = post("/import", "[" + one + "," + two + "]");
+        Assert.assertEquals(200, connection.getResponseCode());
+
+        List<Map<String, Object>> responses = (List<Map<String, Object>>) JsonReader.parse(
+                read(connection.getInputStream()));
+        Assert.assertEquals(2, responses.size());
+        Map<String, Object> first = ((List<Map<String, Object>>) responses.get(0).get("batches")).get(0);
+        Assert.assertFalse(((Map<String, Object>) first.get("tables")).containsKey("curves"));
+        Map<String, Object> second = ((List<Map<String, Object>>) responses.get(1).get("batches")).get(0);
+        Assert.assertEquals("engr", second.get("format"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void keepsNamesWithoutTxt() throws IOException {
+
+        String request = "{\"files\":[{\"name\":\"cell1_jvl.dat\",\"contents\":"
+                + JsonLinesTableWriter.quote(SampleFiles.physics(true, 10)) + "}],\"analysis\":true}";
+
+        HttpURLConnection connection = post("/import", request);
+        Assert.assertEquals(200, connection.getResponseCode());
+        Map<String, Object> response = (Map<String, Object>) JsonReader.parse(read(connection.getInputStream()));
+        Map<String, Object> batch = ((List<Map<String, Object>>) response.get("batches")).get(0);
+        Map<String, Object> tables = (Map<String, Object>) batch.get("tables");
+        Assert.assertEquals("cell1_jvl.dat", ((List<Map<String, Object>>) tables.get("params")).get(0).get("file"));
+        Assert.assertTrue(((List<Map<String, Object>>) tables.get("curves")).get(0).containsKey("cell1_jvl.dat_X"));
+    }
+
+    @Test
+    public void returnsBinary() throws IOException {
+
+        String request = "{\"files\":[{\"name\":\"cell1_jvl.txt\",\"contents\":"
+                + JsonLinesTableWriter.quote(SampleFiles.physics(true, 50)) + "}],\"output\":\"binary\"}";
+
+        HttpURLConnection connection = post("/import", request);
+        Assert.assertEquals(200, connection.getResponseCode());
+
+        File file = folder.newFile("out.jvb");
+        try (InputStream in = connection.getInputStream(); OutputStream out = new FileOutputStream(file)) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0)
+                out.write(buf, 0, n);
+        }
+        JVBinaryReader reader = new JVBinaryReader(file);
+        Assert.assertEquals(1, reader.getNumCurves());
+        Assert.assertEquals(50, reader.getNumPoints(0));
+    }
+
+    @Test
+    public void answersErrors() throws IOException {
+
+        Assert.assertEquals(400, post("/import", "{\"files\":[").getResponseCode());
+        Assert.assertEquals(400, post("/import", "{\"files\":[]}").getResponseCode());
+        Assert.assertEquals(422, post("/import", "{\"files\":[{\"name\":\"a.txt\",\"contents\":\"x\"}]}")
+                .getResponseCode());
+        Assert.assertEquals(404, post("/import/more", "{}").getResponseCode());
+
+        // nesting deep enough to overflow the stack of a recursive parser
+        StringBuilder nested = new StringBuilder();
+        for (int i = 0; i < 100000; i++)
+            nested.append('[');
+        HttpURLConnection deep = post("/import", nested.toString());
+        Assert.assertEquals(400, deep.getResponseCode());
+        Assert.assertTrue(read(deep.getErrorStream()).contains("Nested deeper than " + JsonReader.MAX_DEPTH));
+
+        HttpURLConnection health = (HttpURLConnection) url("/health").openConnection();
+        Assert.assertEquals(200, health.getResponseCode());
+    }
+
+    @Test
+    public void refusesBrowserRequests() throws IOException {
+
+        String request = "{\"files\":[\"/etc/hosts\"]}";
+        Assert.assertTrue(send("localhost:" + server.getPort(), "text/plain", request).startsWith("HTTP/1.1 415"));
+        Assert.assertTrue(send("evil.example:" + server.getPort(), "application/json", request)
+                .startsWith("HTTP/1.1 403"));
+        Assert.assertTrue(send("127.0.0.1:1", "application/json", request).startsWith("HTTP/1.1 403"));
+        Assert.assertTrue(send("localhost", "application/json; charset=utf-8", "{\"files\":[]}")
+                .startsWith("HTTP/1.1 400"));
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getPort() + path);
+    }
+
+    private HttpURLConnection post(String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url(path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    /*
+    Posts to /import over a plain socket, as HttpURLConnection does not let the Host header be set, and returns the
+    status line.
+     */
+    private String send(String host, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /import HTTP/1.1\r\nHost: " + host + "\r\nContent-Type: " + contentType
+                    + "\r\nContent-Length: " + bytes.length + "\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.write(bytes);
+            out.flush();
+            return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+                    .readLine();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0)
+            out.write(buf, 0, n);
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+
+
+public class JVTokenizerTest {
+
+    private static JVTokenizer tokenizer(String text) {
+        return new JVTokenizer(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void parsesLikeBigDecimal() throws IOException {
+
+        String[] values = {"0", "-0.000", "0.500", "1.23E-4", "-1.23e+4", "+7", "841.2", "1E+2", ".5",
+                "-21.530125", "0.00000000001", "123456789012345678901.5", "9.999999999999999E22",
+                "0.123456789012345678", "-987654321.987654321"};
+
+        StringBuilder sb = new StringBuilder();
+        for (String v : values)
+            sb.append(v).append('\t').append(v).append("\r\n");
+        JVTokenizer in = tokenizer(sb.toString());
+
+        for (String v : values) {
+            Assert.assertTrue(in.nextPoint(3));
+            BigDecimal expected = new BigDecimal(v).round(new MathContext(CurveStore.MAX_DIGITS));
+            BigDecimal milli = expected.multiply(new BigDecimal(1000));
+            Assert.assertEquals(v, expected.doubleValue(), in.getVoltage(), 0);
+            Assert.assertEquals(v, expected, BigDecimal.valueOf(in.getUnscaledVoltage(), in.getVoltageScale()));
+            Assert.assertEquals(v, milli.doubleValue(), in.getCurrent(), 0);
+            BigDecimal current = BigDecimal.valueOf(in.getUnscaledCurrent(), in.getCurrentScale());
+            Assert.assertEquals(v, 0, milli.compareTo(current));
+            if (milli.precision() <= CurveStore.MAX_DIGITS)
+                Assert.assertEquals(v, expected.scale(), in.getCurrentScale());
+        }
+        Assert.assertFalse(in.nextPoint(0));
+    }
+
+    @Test
+    public void readsHeaderThenPoints() throws IOException {
+
+        JVTokenizer in = tokenizer("Area (cm2)\t0.430\r\nV(V)\tJ(A/cm^2)\n\n-0.1\t2.5\n0.2\t-3\n\n");
+
+        Assert.assertEquals("Area (cm2)\t0.430", in.readLine());
+        Assert.assertEquals("V(V)\tJ(A/cm^2)", in.readLine());
+        Assert.assertTrue(in.nextPoint(0));
+        Assert.assertEquals(-0.1, in.getVoltage(), 0);
+        Assert.assertTrue(in.nextPoint(0));
+        Assert.assertEquals(-3, in.getCurrent(), 0);
+        Assert.assertFalse(in.nextPoint(0));
+        Assert.assertNull(in.readLine());
+    }
+
+    @Test
+    public void readsAcrossBufferRefills() throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+            sb.append(i).append(".25\t-").append(i).append(".125\n");
+        sb.append("20000.25\t-20000.125");     // no final newline
+
+        JVTokenizer in = tokenizer(sb.toString());
+        for (int i = 0; i <= 20000; i++) {
+            Assert.assertTrue(in.nextPoint(0));
+            Assert.assertEquals(i + 0.25, in.getVoltage(), 0);
+            Assert.assertEquals(-(i + 0.125), in.getCurrent(), 0);
+        }
+        Assert.assertFalse(in.nextPoint(0));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsText() throws IOException {
+        tokenizer("Voltage [V]\tCurrent Density [mA/cm2]\n").nextPoint(0);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsSingleColumn() throws IOException {
+        tokenizer("0.5\n").nextPoint(0);
+    }
+}
@@ -0,0 +1,117 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class JVWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 30000)
+    public void importsNewFiles() throws Exception {
+
+        File dir = folder.newFolder("station");
+        SampleFiles.write(dir, "a_jvl.txt", SampleFiles.physics(true, 10));
+        File output = new File(folder.getRoot(), "live.txt");
+        File physicsOut = new File(folder.getRoot(), "live_physics.txt");
+        File engrOut = new File(folder.getRoot(), "live_engr.txt");
+
+        ArrayList<Boolean> options = new ArrayList<>();
+        options.add(false);
+        options.add(true);
+        final JVWatcher watcher = new JVWatcher(dir.toPath(), JVFormats.defaults(), output, options,
+                new PrintStream(new ByteArrayOutputStream()));
+        watcher.setQuietMillis(100);
+
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    watcher.run();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+
+        try {
+            // existing file is imported on start
+            waitForLines(physicsOut, 2);
+
+            // new files of both formats are appended
+            SampleFiles.write(dir, "b_jvl.txt", SampleFiles.physics(true, 10));
+            SampleFiles.write(dir, "c.txt", SampleFiles.engr(10));
+            waitForLines(physicsOut, 3);
+            waitForLines(engrOut, 2);
+
+            List<String> lines = Files.readAllLines(physicsOut.toPath(), StandardCharsets.US_ASCII);
+            Assert.assertTrue(lines.get(1).startsWith("a_jvl\t"));
+            Assert.assertTrue(lines.get(2).startsWith("b_jvl\t"));
+        } finally {
+            watcher.stop();
+            thread.join();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void unreadableFileIsSkipped() throws Exception {
+
+        // a folder named like a J-V file settles like one but cannot be read
+        File dir = folder.newFolder("station");
+        Assert.assertTrue(new File(dir, "bad.txt").mkdir());
+        SampleFiles.write(dir, "a_jvl.txt", SampleFiles.physics(true, 10));
+        File physicsOut = new File(folder.getRoot(), "live_physics.txt");
+
+        ArrayList<Boolean> options = new ArrayList<>();
+        options.add(false);
+        options.add(true);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final JVWatcher watcher = new JVWatcher(dir.toPath(), JVFormats.defaults(),
+                new File(folder.getRoot(), "live.txt"), options, new PrintStream(log, true, "UTF-8"));
+        watcher.setQuietMillis(100);
+
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    watcher.run();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+
+        try {
+            // the readable file is imported alongside, and the watch goes on
+            waitForLines(physicsOut, 2);
+            SampleFiles.write(dir, "b_jvl.txt", SampleFiles.physics(true, 10));
+            waitForLines(physicsOut, 3);
+
+            Assert.assertTrue(thread.isAlive());
+            String messages = new String(log.toByteArray(), StandardCharsets.UTF_8);
+            Assert.assertTrue(messages.contains("Skipped bad.txt"));
+            Assert.assertFalse(messages.contains("Skipped bad.txt, unknown format"));
+        } finally {
+            watcher.stop();
+            thread.join();
+        }
+    }
+
+    private static void waitForLines(File file, int count) throws Exception {
+        while (!file.exists() || Files.readAllLines(file.toPath(), StandardCharsets.US_ASCII).size() < count)
+            Thread.sleep(50);
+    }
+}
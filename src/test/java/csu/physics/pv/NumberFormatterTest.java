@@ -0,0 +1,69 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.Random;
+
+
+public class NumberFormatterTest {
+
+    @Test
+    public void matchesBigDecimal() {
+
+        NumberFormatter numbers = new NumberFormatter();
+        Random random = new Random(42);
+        double[] edges = {0, -0.0, 0.5, -0.5, 0.125, 2.5, 1e-7, -1e-9, 123456.789, 1e300, 0.0009999};
+
+        for (int i = 0; i < 200000; i++) {
+            int scale = random.nextInt(12);
+            double value = i < edges.length * 12 ? edges[i % edges.length] : randomValue(random, scale);
+            String expected = new BigDecimal(value).setScale(scale, RoundingMode.HALF_EVEN).toString();
+            int length = numbers.format(value, scale);
+            Assert.assertEquals(expected, new String(numbers.chars(), 0, length));
+        }
+    }
+
+    @Test
+    public void matchesBigDecimalForFixedPoint() {
+
+        NumberFormatter numbers = new NumberFormatter();
+        Random random = new Random(11);
+        long[] edges = {0, 1, -1, 5, Long.MAX_VALUE, Long.MIN_VALUE, 999999999999999999L, -100};
+
+        for (int i = 0; i < 200000; i++) {
+            int scale = random.nextInt(24) - 4;
+            long unscaled = i < edges.length * 24 ? edges[i % edges.length] : random.nextLong() >> random.nextInt(64);
+            int length = numbers.format(unscaled, scale);
+            Assert.assertEquals(BigDecimal.valueOf(unscaled, scale).toString(), new String(numbers.chars(), 0, length));
+        }
+    }
+
+    @Test
+    public void matchesFiveSignificantDigits() {
+
+        NumberFormatter numbers = new NumberFormatter();
+        Random random = new Random(7);
+        double[] edges = {0, 1, -1, 9.99995, 99999.5, 0.0001, 0.000099999, 12345.65, 1e-12, 3e20};
+
+        for (int i = 0; i < 200000; i++) {
+            double value = i < edges.length ? edges[i]
+                    : (random.nextDouble() - 0.3) * Math.pow(10, random.nextInt(14) - 7);
+            String expected = String.format(Locale.US, "%.5g", value);
+            int length = numbers.formatSignificant(value);
+            Assert.assertEquals(expected, new String(numbers.chars(), 0, length));
+        }
+    }
+
+    /*
+    A number as an instrument prints it, with the given decimal places, read back as a double.
+     */
+    private static double randomValue(Random random, int scale) {
+        long unscaled = (long) ((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(10)));
+        return random.nextBoolean() ? BigDecimal.valueOf(unscaled, scale).doubleValue()
+                : random.nextGaussian() * Math.pow(10, random.nextInt(8) - 4);
+    }
+}
@@ -0,0 +1,127 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class ParseCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void cachedReadMatchesParse() throws IOException {
+
+        File[] files = {
+                SampleFiles.write(folder.getRoot(), "a_jvl.txt", SampleFiles.physics(true, 30)),
+                SampleFiles.write(folder.getRoot(), "a_jvd.txt", SampleFiles.physics(false, 20)),
+                SampleFiles.write(folder.getRoot(), "b.txt", SampleFiles.engr(25))
+        };
+        File cacheDir = new File(folder.getRoot(), "cache");
+
+        ArrayList<JVData> parsed = new JVReader().read(files, JVFormats.defaults());
+
+        // first read fills the cache, second loads from it
+        for (int run = 0; run < 2; run++) {
+            JVReader reader = new JVReader();
+            reader.setCache(new ParseCache(cacheDir, 1 << 20));
+            ArrayList<JVData> cached = reader.read(files, JVFormats.defaults());
+
+            Assert.assertEquals(3, cacheDir.list().length);
+            Assert.assertEquals(parsed.size(), cached.size());
+            for (int i = 0; i < parsed.size(); i++) {
+                Assert.assertEquals(SampleFiles.dump(parsed.get(i).getCurves()),
+                        SampleFiles.dump(cached.get(i).getCurves()));
+                Assert.assertEquals(parsed.get(i).makeParamsTable(), cached.get(i).makeParamsTable());
+            }
+        }
+    }
+
+    @Test
+    public void sameContentsDifferentName() throws IOException {
+
+        // a renamed light file is a cache hit, but a light file renamed to dark is parsed differently
+        String contents = SampleFiles.physics(true, 30);
+        File cacheDir = new File(folder.getRoot(), "cache");
+        File[] files = {
+                SampleFiles.write(folder.getRoot(), "a_jvl.txt", contents),
+                SampleFiles.write(folder.getRoot(), "b_jvl.txt", contents)
+        };
+
+        JVReader reader = new JVReader();
+        reader.setCache(new ParseCache(cacheDir, 1 << 20));
+        ArrayList<JVData> batches = reader.read(files, JVFormats.defaults());
+
+        Assert.assertEquals(1, cacheDir.list().length);
+        Assert.assertEquals("b_jvl", batches.get(0).makeParamsTable().get(2).split("\t")[0]);
+    }
+
+    @Test
+    public void failedWriteStillImports() throws IOException {
+
+        File file = SampleFiles.write(folder.getRoot(), "a_jvl.txt", SampleFiles.physics(true, 30));
+        File cacheDir = new File(folder.getRoot(), "cache");
+        ParseCache cache = new ParseCache(cacheDir, 1 << 20);
+
+        // a plain file where the cache folder was, so no entry can be written
+        Assert.assertTrue(cacheDir.delete());
+        Assert.assertTrue(cacheDir.createNewFile());
+
+        JVReader reader = new JVReader();
+        reader.setCache(cache);
+        ArrayList<JVData> batches = reader.read(new File[]{file}, JVFormats.defaults());
+
+        Assert.assertEquals(1, batches.size());
+        Assert.assertTrue(reader.getRejectedFiles().isEmpty());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+
+        File cacheDir = new File(folder.getRoot(), "cache");
+        ParseCache cache = new ParseCache(cacheDir, 30000);
+
+        // each entry of a 500 point curve is about 9 kB, so three fit and a fourth evicts
+        File[] files = new File[4];
+        File[] entries = new File[4];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < files.length; i++) {
+            files[i] = SampleFiles.write(folder.getRoot(), "f" + i + ".txt", SampleFiles.engr(500 + i));
+            // reading the oldest entry makes the second oldest the least recently used
+            if (i == 3)
+                read(cache, files[0]);
+            List<File> before = Arrays.asList(cacheDir.listFiles());
+            read(cache, files[i]);
+            for (File entry : cacheDir.listFiles()) {
+                if (!before.contains(entry))
+                    entries[i] = entry;
+            }
+            // well apart, as file times can be as coarse as seconds
+            if (i < 3)
+                Assert.assertTrue(entries[i].setLastModified(now - (3 - i) * 10000));
+        }
+
+        Assert.assertTrue(entries[0].exists());
+        Assert.assertFalse(entries[1].exists());
+        Assert.assertTrue(entries[3].exists());
+
+        long total = 0;
+        for (File entry : cacheDir.listFiles())
+            total += entry.length();
+        Assert.assertTrue(total <= 30000);
+    }
+
+    private static void read(ParseCache cache, File file) throws IOException {
+        JVReader reader = new JVReader();
+        reader.setCache(cache);
+        reader.read(new File[]{file}, JVFormats.defaults());
+    }
+}
@@ -0,0 +1,106 @@
+package csu.physics.pv;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Synthetic J-V files in the layout of the physics lightbox and the ERC software, used by the tests.
+ */
+class SampleFiles {
+
+    /**
+     * Contents of a physics lightbox file. Light files have a 12 line header, dark files a 6 line header.
+     */
+    static String physics(boolean light, int points) {
+
+        StringBuilder sb = new StringBuilder();
+        if (light) {
+            sb.append("Cell\tjvl-test\n");
+            sb.append("Date\t2018-05-01\n");
+            sb.append("Area (cm2)\t0.430\n");
+            sb.append("Temperature (C)\t25.0\n");
+            sb.append("Jsc fit (mA/cm2)\t21.53\n");
+            sb.append("Voc fit (V)\t0.8412\n");
+            sb.append("FF (%)\t76.10\n");
+            sb.append("Efficiency (%)\t13.78\n");
+            sb.append("Jsc (mA/cm2)\t21.50\n");
+            sb.append("Voc (V)\t0.8400\n");
+            sb.append("Rs (Ohm cm2)\t1.2\n");
+        } else {
+            sb.append("Cell\tjvd-test\n");
+            sb.append("Date\t2018-05-01\n");
+            sb.append("Area (cm2)\t0.430\n");
+            sb.append("Temperature (C)\t25.0\n");
+            sb.append("Dark\t1\n");
+        }
+        sb.append("Voltage [V]\tCurrent Density [mA/cm2]\n");
+
+        for (int i = 0; i < points; i++) {
+            double v = -0.2 + 1.2 * i / points;
+            double j = light ? -21.5 + 1.0E-8 * Math.exp(v / 0.04) : 1.0E-8 * Math.exp(v / 0.04);
+            sb.append(String.format(Locale.US, "%.3f", v)).append('\t').append(String.format(Locale.US, "%.5f", j)).append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Contents of an ERC file, current density in A/cm^2.
+     */
+    static String engr(int points) {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Sample\tERC-test\n");
+        sb.append("Date\t2018-05-01\n");
+        sb.append("Operator\tlab\n");
+        sb.append("Light\t1 sun\n");
+        sb.append("Voc (mV)\t841.2\n");
+        sb.append("FF (%)\t76.1\n");
+        sb.append("Jsc (mA/cm^2)\t21.53\n");
+        sb.append("Eff (%)\t13.78\n");
+        sb.append("Area (cm^2)\t0.430\n");
+        sb.append("Pmax (mW/cm^2)\t13.78\n");
+        sb.append("Vmp (mV)\t700.1\n");
+        sb.append("Jmp (mA/cm^2)\t19.68\n");
+        sb.append("V(V)\tJ(A/cm^2)\n");
+
+        for (int i = 0; i < points; i++) {
+            double v = -0.2 + 1.2 * i / points;
+            double j = -0.0215 + 1.0E-11 * Math.exp(v / 0.04);
+            sb.append(String.format(Locale.US, "%.3f", v)).append('\t').append(String.format(Locale.US, "%.7f", j)).append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Writes the given contents to a file in the directory, making the directory if needed.
+     */
+    static File write(File dir, String name, String contents) throws IOException {
+
+        dir.mkdirs();
+        File file = new File(dir, name);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(contents.getBytes(StandardCharsets.US_ASCII));
+        }
+        return file;
+    }
+
+    /**
+     * Dumps every point of a curve store as text, one curve per line, for comparisons.
+     */
+    static String dump(CurveStore curves) {
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < curves.getNumCurves(); i++) {
+            for (int j = 0; j < curves.getNumPoints(i); j++)
+                sb.append(curves.formatVoltage(i, j)).append(',').append(curves.formatCurrent(i, j)).append(';');
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
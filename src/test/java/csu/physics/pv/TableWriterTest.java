@@ -0,0 +1,154 @@
+package csu.physics.pv;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+public class TableWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void tsvKeepsTheTextLayout() throws IOException {
+
+        JVData data = read();
+        String written = write(data, "tsv");
+
+        // the layout as it was built from the tables of text
+        StringBuilder sb = new StringBuilder();
+        CurveStore curves = data.getCurves();
+        for (String name : data.getFileNames()) {
+            String stem = name.substring(0, name.lastIndexOf(".txt"));
+            sb.append(stem).append("_X\t").append(stem).append("_Y\t");
+        }
+        sb.append('\n');
+        for (int i = 0; i < curves.getMaxPoints(); i++) {
+            for (int j = 0; j < curves.getNumCurves(); j++) {
+                if (i < curves.getNumPoints(j))
+                    sb.append(curves.formatVoltage(j, i)).append('\t').append(curves.formatCurrent(j, i)).append('\t');
+                else
+                    sb.append("\t\t");
+            }
+            sb.append('\n');
+        }
+        sb.append("\n\n");
+        for (String line : data.makeParamsTable())
+            sb.append(line).append('\n');
+        sb.append('\n');
+        for (String header : JVAnalyzer.HEADERS)
+            sb.append('\t').append(header);
+        sb.append('\n');
+        double[][] results = new JVAnalyzer().analyze(curves);
+        for (int i = 0; i < results.length; i++) {
+            String name = data.getFileNames()[i];
+            sb.append(name, 0, name.lastIndexOf(".txt")).append('\t');
+            for (double value : results[i]) {
+                if (!Double.isNaN(value))
+                    sb.append(String.format(Locale.US, "%.5g", value));
+                sb.append('\t');
+            }
+            sb.append('\n');
+        }
+
+        Assert.assertEquals(sb.toString(), written);
+    }
+
+    @Test
+    public void csvAndJsonLines() throws IOException {
+
+        JVData data = read();
+
+        String[] csv = write(data, "csv").split("\n", -1);
+        Assert.assertEquals("cell1_jvl_X,cell1_jvl_Y,cell2_jvd_X,cell2_jvd_Y", csv[0]);
+        Assert.assertTrue(csv[21].endsWith(",,"));
+        Assert.assertEquals("", csv[31]);
+        Assert.assertEquals("file,Area [cm^2],Jsc_meas [mA/cm^2],Voc_meas [V],FF [%],Eff [%],Jsc_fit [mA/cm^2],"
+                + "Voc_fit [V]", csv[32]);
+        Assert.assertEquals("cell1_jvl,0.430,21.50,0.8400,76.10,13.78,21.53,0.8412", csv[33]);
+
+        String[] jsonl = write(data, "jsonl").split("\n");
+        Assert.assertTrue(jsonl[0].startsWith("{\"table\":\"curves\",\"cell1_jvl_X\":-0.200,\"cell1_jvl_Y\":"));
+        Assert.assertFalse(jsonl[25].contains("cell2_jvd"));
+        Assert.assertEquals("{\"table\":\"params\",\"file\":\"cell1_jvl\",\"Area [cm^2]\":0.430,"
+                + "\"Jsc_meas [mA/cm^2]\":21.50,\"Voc_meas [V]\":0.8400,\"FF [%]\":76.10,\"Eff [%]\":13.78,"
+                + "\"Jsc_fit [mA/cm^2]\":21.53,\"Voc_fit [V]\":0.8412}", jsonl[30]);
+        Assert.assertTrue(jsonl[31].startsWith("{\"table\":\"analysis\",\"file\":\"cell1_jvl\",\"Jsc [mA/cm^2]\":"));
+        Assert.assertEquals(33, jsonl.length);
+    }
+
+    @Test
+    public void jsonLinesLeavesOutInfinities() throws IOException {
+
+        // a light curve flat around 0 V, whose shunt resistance is infinite
+        StringBuilder sb = new StringBuilder(SampleFiles.physics(true, 0));
+        for (int i = 0; i <= 24; i++)
+            sb.append(String.format(Locale.US, "%.3f\t%.2f\n", -0.5 + 0.125 * i, i < 8 ? -21.5 : -21.5 + 5 * (i - 7)));
+        File file = SampleFiles.write(folder.getRoot(), "flat_jvl.txt", sb.toString());
+        JVData data = new PhysicsData();
+        Assert.assertTrue(new JVReader().read(new File[]{file}, data));
+        Assert.assertEquals(Double.POSITIVE_INFINITY, new JVAnalyzer().analyze(data.getCurves())[0][JVAnalyzer.RSH], 0);
+
+        String[] jsonl = write(data, "jsonl").split("\n");
+        String analysis = jsonl[jsonl.length - 1];
+        Assert.assertTrue(analysis.startsWith("{\"table\":\"analysis\",\"file\":\"flat_jvl\","));
+        Assert.assertTrue(analysis.contains("\"Rs [Ohm cm^2]\":"));
+        Assert.assertFalse(analysis.contains("Rsh"));
+        for (String line : jsonl) {
+            Assert.assertFalse(line, line.contains("Infinity"));
+            Assert.assertTrue(line, JsonReader.parse(line) instanceof Map);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void jsonDocument() throws IOException {
+
+        Map<String, Object> tables = (Map<String, Object>) JsonReader.parse(write(read(), "json"));
+        Assert.assertEquals(Arrays.asList("curves", "params", "analysis"), new ArrayList<>(tables.keySet()));
+
+        List<Map<String, Object>> curves = (List<Map<String, Object>>) tables.get("curves");
+        Assert.assertEquals(30, curves.size());
+        Assert.assertEquals(new BigDecimal("-0.200"), curves.get(0).get("cell1_jvl_X"));
+        Assert.assertFalse(curves.get(25).containsKey("cell2_jvd_X"));
+
+        Map<String, Object> params = ((List<Map<String, Object>>) tables.get("params")).get(0);
+        Assert.assertEquals("cell1_jvl", params.get("file"));
+        Assert.assertEquals(new BigDecimal("0.430"), params.get("Area [cm^2]"));
+    }
+
+    private JVData read() throws IOException {
+        File[] files = {
+                SampleFiles.write(folder.getRoot(), "cell1_jvl.txt", SampleFiles.physics(true, 30)),
+                SampleFiles.write(folder.getRoot(), "cell2_jvd.txt", SampleFiles.physics(false, 20))
+        };
+        JVData data = new PhysicsData();
+        Assert.assertTrue(new JVReader().read(files, data));
+        return data;
+    }
+
+    private static String write(JVData data, String format) throws IOException {
+        ArrayList<Boolean> options = new ArrayList<>();
+        options.add(true);
+        options.add(true);
+        options.add(true);
+        JVWriter writer = new JVWriter(data);
+        writer.setPrintOptions(options);
+        writer.setFormat(format);
+        StringWriter out = new StringWriter();
+        writer.write(out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package csu.physics.pv;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+
+public class StageRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void emitsFlightRecorderEvents() throws IOException {
+
+        File input = SampleFiles.write(folder.getRoot(), "cell_jvl.txt", SampleFiles.physics(true, 25));
+        File dump = new File(folder.getRoot(), "import.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("csu.physics.pv.Stage").withThreshold(java.time.Duration.ZERO);
+            recording.start();
+
+            JVReader reader = new JVReader();
+            reader.read(new File[]{input});
+            JVData data = new PhysicsData(reader.getFileData());
+            data.setFileNames(new String[]{input.getName()});
+            data.isValidData();
+            data.extractData();
+
+            JVData parsed = new PhysicsData();
+            parsed.setFileNames(new String[]{input.getName()});
+            reader.read(new File[]{input}, parsed);
+            ArrayList<Boolean> options = new ArrayList<>();
+            options.add(true);
+            options.add(true);
+            JVWriter writer = new JVWriter(parsed);
+            writer.setPrintOptions(options);
+            Assert.assertTrue(writer.write(new File(folder.getRoot(), "out.txt")));
+
+            recording.stop();
+            recording.dump(dump.toPath());
+        }
+
+        HashSet<String> stages = new HashSet<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump.toPath())) {
+            stages.add(event.getString("stage"));
+            if (event.getString("stage").equals("read"))
+                Assert.assertEquals("cell_jvl.txt", event.getString("file"));
+        }
+
+        for (JVMetrics.Stage stage : JVMetrics.Stage.values())
+            Assert.assertTrue(stage.label, stages.contains(stage.label));
+    }
+}